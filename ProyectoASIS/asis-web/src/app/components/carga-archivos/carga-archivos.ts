@@ -6,6 +6,17 @@ import { AuthService } from '../../services/auth.service';
 import { EventService } from '../../services/event.service';
 import { MapaService } from '../../services/mapa.service';
 
+// Estado de una importación en segundo plano (GET /import-csv/jobs/{id})
+interface TrabajoImportacion {
+  id: number;
+  estado: 'EN_COLA' | 'EN_CURSO' | 'TERMINADO' | 'CANCELADO' | 'ERROR';
+  filasProcesadas: number;
+  filasSinCambios: number;
+  respuestasEscritas: number;
+  segundosRestantes: number | null;
+  error: string | null;
+}
+
 @Component({
   selector: 'app-carga-archivos',
   standalone: true,
@@ -92,46 +103,86 @@ export class CargaArchivosComponent implements OnInit {
     const formData = new FormData();
     formData.append('file', file);
 
-    this.http.post('http://localhost:8080/ProyectoASIS/api/import-csv', formData).subscribe({
-      next: (response) => {
-        this.uploading.set(false);
-        this.uploadMessage.set(`Archivo "${file.name}" importado correctamente.`);
-        this.csvCargadoExitosamente.set(true);
-        
-        // Limpiar el archivo seleccionado
-        this.selectedFile.set(null);
-        
-        // Limpiar el input file
-        const fileInput = document.getElementById('csv-file') as HTMLInputElement;
-        if (fileInput) {
-          fileInput.value = '';
-        }
-
-        // Notificar que se completó la carga del CSV
-        this.eventService.notifyCsvUploaded();
-
-        // Auto-limpiar mensaje después de 5 segundos (el botón permanece habilitado)
-        setTimeout(() => {
-          this.uploadMessage.set('');
-        }, 5000);
+    // El servidor responde apenas recibe el archivo; la importación sigue en segundo plano
+    this.http.post<TrabajoImportacion>('http://localhost:8080/ProyectoASIS/api/import-csv', formData).subscribe({
+      next: (trabajo) => {
+        this.seguirImportacion(trabajo.id, file.name);
       },
-      error: (error) => {
-        this.uploading.set(false);
-        this.csvCargadoExitosamente.set(false);
-        console.error('Error al importar archivo CSV:', error);
-        
-        let errorMessage = 'Error desconocido al importar el archivo.';
-        
-        if (error.status === 400) {
-          errorMessage = 'Error: Formato de archivo inválido o datos incorrectos.';
-        } else if (error.status === 500) {
-          errorMessage = 'Error del servidor al procesar el archivo.';
-        } else if (error.error && typeof error.error === 'string') {
-          errorMessage = `Error: ${error.error}`;
+      error: (error) => this.mostrarErrorCarga(error)
+    });
+  }
+
+  // Consulta el avance cada segundo hasta que la importación termina
+  private seguirImportacion(id: number, nombre: string) {
+    this.http.get<TrabajoImportacion>(`http://localhost:8080/ProyectoASIS/api/import-csv/jobs/${id}`).subscribe({
+      next: (trabajo) => {
+        if (trabajo.estado === 'EN_COLA' || trabajo.estado === 'EN_CURSO') {
+          this.uploadMessage.set(this.mensajeAvance(trabajo, nombre));
+          setTimeout(() => this.seguirImportacion(id, nombre), 1000);
+        } else if (trabajo.estado === 'TERMINADO') {
+          this.importacionTerminada(nombre, trabajo);
+        } else {
+          this.uploading.set(false);
+          this.csvCargadoExitosamente.set(false);
+          this.uploadMessage.set(trabajo.estado === 'CANCELADO'
+            ? 'Error: La importación fue cancelada.'
+            : `Error: ${trabajo.error ?? 'Error del servidor al procesar el archivo.'}`);
         }
-        
-        this.uploadMessage.set(errorMessage);
-      }
+      },
+      error: (error) => this.mostrarErrorCarga(error)
     });
   }
+
+  private mensajeAvance(trabajo: TrabajoImportacion, nombre: string): string {
+    if (trabajo.estado === 'EN_COLA') {
+      return `Archivo "${nombre}" en espera: hay otra importación en curso...`;
+    }
+    const restante = trabajo.segundosRestantes != null ? ` (faltan ~${trabajo.segundosRestantes} s)` : '';
+    return `Importando "${nombre}": ${trabajo.filasProcesadas} filas procesadas${restante}...`;
+  }
+
+  private importacionTerminada(nombre: string, trabajo: TrabajoImportacion) {
+    this.uploading.set(false);
+    // Al reimportar una exportación, las filas que no cambiaron no se vuelven a escribir
+    const sinCambios = trabajo.filasSinCambios > 0 ? ` (${trabajo.filasSinCambios} filas sin cambios)` : '';
+    this.uploadMessage.set(`Archivo "${nombre}" importado correctamente${sinCambios}.`);
+    this.csvCargadoExitosamente.set(true);
+    
+    // Limpiar el archivo seleccionado
+    this.selectedFile.set(null);
+    
+    // Limpiar el input file
+    const fileInput = document.getElementById('csv-file') as HTMLInputElement;
+    if (fileInput) {
+      fileInput.value = '';
+    }
+
+    // Notificar que se completó la carga del CSV
+    this.eventService.notifyCsvUploaded();
+
+    // Auto-limpiar mensaje después de 5 segundos (el botón permanece habilitado)
+    setTimeout(() => {
+      this.uploadMessage.set('');
+    }, 5000);
+  }
+
+  private mostrarErrorCarga(error: any) {
+    this.uploading.set(false);
+    this.csvCargadoExitosamente.set(false);
+    console.error('Error al importar archivo CSV:', error);
+    
+    let errorMessage = 'Error desconocido al importar el archivo.';
+    
+    if (error.status === 400) {
+      errorMessage = 'Error: Formato de archivo inválido o datos incorrectos.';
+    } else if (error.status === 503) {
+      errorMessage = 'Error: Hay demasiadas importaciones en espera, intente más tarde.';
+    } else if (error.status === 500) {
+      errorMessage = 'Error del servidor al procesar el archivo.';
+    } else if (error.error && typeof error.error === 'string') {
+      errorMessage = `Error: ${error.error}`;
+    }
+    
+    this.uploadMessage.set(errorMessage);
+  }
 }
\ No newline at end of file
@@ -17,12 +17,61 @@ export interface PreguntaRespuestaCategoria {
   [key: string]: any; // Para propiedades adicionales
 }
 
+export interface Pagina<T> {
+  elementos: T[];
+  siguiente: string | null;
+  hayMas: boolean;
+}
+
+export interface AgregadoRespuesta {
+  pregunta: string;
+  respuesta: string;
+  categoria: string;
+  cantidad: number;
+  encuestasDistintas: number;
+}
+
+export interface TablaCruzada {
+  preguntaFilas: string;
+  preguntaColumnas: string;
+  filas: string[];
+  columnas: string[];
+  conteos: number[][];
+  total: number;
+}
+
+export interface BucketHistograma {
+  desde: number;
+  hasta: number;
+  cantidad: number;
+}
+
+export interface EstadisticaNumerica {
+  pregunta: string;
+  cantidad: number;
+  minimo: number | null;
+  maximo: number | null;
+  media: number | null;
+  desvio: number | null;
+  percentiles: { [nombre: string]: number };
+  errorRelativoPercentiles: number;
+  anchoHistograma: number | null;
+  histograma: BucketHistograma[];
+  histogramaAproximado: boolean;
+}
+
 export interface FiltroMultiple {
   categoria: string;
   pregunta: string;
   respuesta: string;
 }
 
+export interface FiltroNumerico {
+  pregunta: string;
+  desde?: number;
+  hasta?: number;
+}
+
 export interface Filtros {
   categoria?: string;
   zona?: string;
@@ -40,6 +89,8 @@ export interface Filtros {
   encuestador?: string;
   // NUEVO: Filtros múltiples
   filtrosMultiples?: FiltroMultiple[];
+  // Rangos sobre respuestas numéricas
+  filtrosNumericos?: FiltroNumerico[];
 }
 
 @Injectable({ providedIn: 'root' })
@@ -55,4 +106,32 @@ export class EstadisticasService {
   filtrarPreguntasRespuestas(filtros: Filtros): Observable<PreguntaRespuestaCategoria[]> {
     return this.http.post<PreguntaRespuestaCategoria[]>(this.apiUrl, filtros);
   }
+
+  // Página de filtrar-preguntas-respuestas; pasar el 'siguiente' recibido como cursor de la próxima
+  filtrarPreguntasRespuestasPagina(filtros: Filtros, cursor: string | null = null, limite = 1000): Observable<Pagina<PreguntaRespuestaCategoria>> {
+    let url = `${this.apiUrl}/pagina?limite=${limite}`;
+    if (cursor) url += `&cursor=${encodeURIComponent(cursor)}`;
+    return this.http.post<Pagina<PreguntaRespuestaCategoria>>(url, filtros);
+  }
+
+  // Conteos por (pregunta, respuesta) calculados en el servidor
+  agregarPreguntasRespuestas(filtros: Filtros): Observable<AgregadoRespuesta[]> {
+    return this.http.post<AgregadoRespuesta[]>('/api/respuestas-encuesta/agregado-preguntas-respuestas', filtros);
+  }
+
+  // Tabla de contingencia entre dos preguntas (códigos CSV)
+  obtenerTablaCruzada(preguntaFilas: string, preguntaColumnas: string, filtros: Filtros = {}): Observable<TablaCruzada> {
+    const url = `/api/respuestas-encuesta/crosstab?filas=${encodeURIComponent(preguntaFilas)}&columnas=${encodeURIComponent(preguntaColumnas)}`;
+    return this.http.post<TablaCruzada>(url, filtros);
+  }
+
+  // Resumen, percentiles e histograma de una pregunta numérica
+  obtenerEstadisticasNumericas(pregunta: string, filtros: Filtros = {},
+                               opciones: { ancho?: number; buckets?: number; percentiles?: number[] } = {}): Observable<EstadisticaNumerica> {
+    let url = `/api/respuestas-encuesta/estadisticas-numericas?pregunta=${encodeURIComponent(pregunta)}`;
+    if (opciones.ancho != null) url += `&ancho=${opciones.ancho}`;
+    if (opciones.buckets != null) url += `&buckets=${opciones.buckets}`;
+    if (opciones.percentiles?.length) url += `&percentiles=${opciones.percentiles.join(',')}`;
+    return this.http.post<EstadisticaNumerica>(url, filtros);
+  }
 }
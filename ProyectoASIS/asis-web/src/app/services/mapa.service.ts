@@ -10,6 +10,32 @@ export interface CoordenadaMapaDTO {
   textoPregunta: string;
 }
 
+export interface ClusterMapa {
+  latitud: number;
+  longitud: number;
+  cantidad: number;
+  viviendas: number;
+  viviendaId?: string;
+  desglose?: { [respuesta: string]: number };
+}
+
+// celdas: pares planos [índice, conteo, ...] con índice = fila * resolucion + columna
+export interface TeselaCalor {
+  x: number;
+  y: number;
+  total: number;
+  celdas: number[];
+}
+
+export interface MapaCalor {
+  pregunta: string;
+  valor?: string;
+  zoom: number;
+  resolucion: number;
+  maximo: number;
+  teselas: TeselaCalor[];
+}
+
 export interface Coordenada {
   encuestaId: number;
   latitud: number;
@@ -24,8 +50,39 @@ export class MapaService {
 
   constructor(private http: HttpClient) {}
 
-  obtenerCoordenadasMapa(): Observable<CoordenadaMapaDTO[]> {
-    return this.http.get<CoordenadaMapaDTO[]>(`${this.apiUrl}/respuestas-encuesta/coordenadas-mapa`);
+  // bbox en formato de LatLngBounds.toBBoxString() ("oeste,sur,este,norte"): solo los puntos visibles.
+  // Con filtros (mismo cuerpo que filtrar-preguntas-respuestas) solo vienen las encuestas que los cumplen
+  obtenerCoordenadasMapa(bbox?: string, zoom?: number, filtros?: any): Observable<CoordenadaMapaDTO[]> {
+    const params: { [clave: string]: string } = {};
+    if (bbox) params['bbox'] = bbox;
+    if (zoom != null) params['zoom'] = String(zoom);
+    const url = `${this.apiUrl}/respuestas-encuesta/coordenadas-mapa`;
+    return filtros
+      ? this.http.post<CoordenadaMapaDTO[]>(url, filtros, { params })
+      : this.http.get<CoordenadaMapaDTO[]>(url, { params });
+  }
+
+  // Grupos de viviendas para el zoom actual; desglose = código CSV de una pregunta para contar por respuesta
+  obtenerClustersMapa(zoom: number, bbox?: string, desglose?: string, filtros?: any): Observable<ClusterMapa[]> {
+    const params: { [clave: string]: string } = { zoom: String(zoom) };
+    if (bbox) params['bbox'] = bbox;
+    if (desglose) params['desglose'] = desglose;
+    const url = `${this.apiUrl}/respuestas-encuesta/coordenadas-mapa/clusters`;
+    return filtros
+      ? this.http.post<ClusterMapa[]>(url, filtros, { params })
+      : this.http.get<ClusterMapa[]>(url, { params });
+  }
+
+  // Plantilla {z}/{x}/{y} de los tiles vectoriales (MVT, capa "viviendas") para una capa de tiles del mapa
+  urlTeselasVectoriales(): string {
+    return `${this.apiUrl}/respuestas-encuesta/coordenadas-mapa/teselas/{z}/{x}/{y}.mvt`;
+  }
+
+  // Densidad del indicador (pregunta y, opcionalmente, la respuesta que cuenta) por tile del bbox visible
+  obtenerMapaCalor(pregunta: string, zoom: number, bbox: string, valor?: string, filtros: any = {}): Observable<MapaCalor> {
+    const params: { [clave: string]: string } = { pregunta, zoom: String(zoom), bbox };
+    if (valor) params['valor'] = valor;
+    return this.http.post<MapaCalor>(`${this.apiUrl}/respuestas-encuesta/coordenadas-mapa/calor`, filtros, { params });
   }
 
   verificarSiExistenDatos(): Observable<{existenDatos: boolean, totalRespuestas: number}> {
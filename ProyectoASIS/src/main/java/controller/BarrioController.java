@@ -25,6 +25,7 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import service.VersionDatos;
 import model.Barrio;
 
 @Path("/barrios")
@@ -37,6 +38,9 @@ public class BarrioController {
     @Inject
     private I_BarrioDAO barrioDAO;
 
+    @Inject
+    private VersionDatos versionDatos;
+
     @GET
     @Operation(summary = "Obtener todos los barrios", 
     description = "Retorna la lista completa de barrios en el sistema",
@@ -126,6 +130,7 @@ public class BarrioController {
     public Response crearBarrio(Barrio barrio) {
         try {
             barrioDAO.crear(barrio);
+            versionDatos.incrementar();
             BarrioDTO barrioDTO = DTOMapper.toBarrioDTO(barrio);
             return Response.status(Status.CREATED).entity(barrioDTO).build();
         } catch (Exception e) {
@@ -147,6 +152,7 @@ public class BarrioController {
         try {
             barrio.setId(id);
             barrioDAO.actualizar(barrio);
+            versionDatos.incrementar();
             BarrioDTO barrioDTO = DTOMapper.toBarrioDTO(barrio);
             return Response.ok(barrioDTO).build();
         } catch (Exception e) {
@@ -167,6 +173,7 @@ public class BarrioController {
     public Response eliminarBarrio(@PathParam("id") Long id) {
         try {
             barrioDAO.eliminar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Barrio eliminado correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -186,6 +193,7 @@ public class BarrioController {
     public Response recuperarBarrio(@PathParam("id") Long id) {
         try {
             barrioDAO.recuperar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Barrio recuperado correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -24,6 +24,7 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import service.VersionDatos;
 import model.Campaña;
 
 @Path("/campanias")
@@ -36,6 +37,9 @@ public class CampañaController {
     @Inject
     private I_CampañaDAO campañaDAO;
 
+    @Inject
+    private VersionDatos versionDatos;
+
     @GET
     @Operation(summary = "Obtener todas las campañas", 
     description = "Retorna la lista completa de campañas en el sistema",
@@ -125,6 +129,7 @@ public class CampañaController {
     public Response crearCampaña(Campaña campaña) {
         try {
             campañaDAO.crear(campaña);
+            versionDatos.incrementar();
             return Response.status(Status.CREATED).entity(campaña).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -145,6 +150,7 @@ public class CampañaController {
         try {
             campaña.setId(id);
             campañaDAO.actualizar(campaña);
+            versionDatos.incrementar();
             return Response.ok(campaña).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -164,6 +170,7 @@ public class CampañaController {
     public Response eliminarCampaña(@PathParam("id") Long id) {
         try {
             campañaDAO.eliminar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Campaña eliminada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -183,6 +190,7 @@ public class CampañaController {
     public Response recuperarCampaña(@PathParam("id") Long id) {
         try {
             campañaDAO.recuperar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Campaña recuperada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -25,6 +25,7 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import service.VersionDatos;
 import model.DatosPersonales;
 
 @Path("/personas")
@@ -37,6 +38,9 @@ public class DatosPersonalesController {
     @Inject
     private I_PersonaDAO personaDAO;
 
+    @Inject
+    private VersionDatos versionDatos;
+
     @GET
     @Operation(summary = "Obtener todos los datos personales", 
     description = "Retorna la lista completa de datos personales en el sistema",
@@ -125,6 +129,7 @@ public class DatosPersonalesController {
     public Response crearPersona(DatosPersonales persona) {
         try {
             personaDAO.crear(persona);
+            versionDatos.incrementar();
             DatosPersonalesDTO personaDTO = DTOMapper.toDatosPersonalesDTO(persona);
             return Response.status(Status.CREATED).entity(personaDTO).build();
         } catch (Exception e) {
@@ -146,6 +151,7 @@ public class DatosPersonalesController {
         try {
             persona.setId(id);
             personaDAO.actualizar(persona);
+            versionDatos.incrementar();
             DatosPersonalesDTO personaDTO = DTOMapper.toDatosPersonalesDTO(persona);
             return Response.ok(personaDTO).build();
         } catch (Exception e) {
@@ -166,6 +172,7 @@ public class DatosPersonalesController {
     public Response eliminarPersona(@PathParam("id") Long id) {
         try {
             personaDAO.eliminar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Persona eliminada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -185,6 +192,7 @@ public class DatosPersonalesController {
     public Response recuperarPersona(@PathParam("id") Long id) {
         try {
             personaDAO.recuperar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Persona recuperada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -241,6 +249,8 @@ public class DatosPersonalesController {
             personaExistente.setGenero(datosActualizados.getGenero());
             
             personaDAO.actualizar(personaExistente);
+            
+            versionDatos.incrementar();
             DatosPersonalesDTO personaDTO = DTOMapper.toDatosPersonalesDTO(personaExistente);
             return Response.ok(personaDTO).build();
         } catch (Exception e) {
@@ -10,6 +10,7 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import service.VersionDatos;
 import model.Encuesta;
 
 @Path("/encuestas")
@@ -22,6 +23,9 @@ public class EncuestaController {
     @Inject
     private I_EncuestaDAO encuestaDAO;
 
+    @Inject
+    private VersionDatos versionDatos;
+
     @GET
     public Response obtenerTodasLasEncuestas() {
         try {
@@ -64,6 +68,7 @@ public class EncuestaController {
     public Response crearEncuesta(Encuesta encuesta) {
         try {
             encuestaDAO.crear(encuesta);
+            versionDatos.incrementarRespuestas();
             return Response.status(Status.CREATED).entity(encuesta).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -75,8 +80,17 @@ public class EncuestaController {
     @Path("/{id}")
     public Response actualizarEncuesta(@PathParam("id") Long id, Encuesta encuesta) {
         try {
+            Encuesta existente = encuestaDAO.obtenerPorId(id);
+            if (existente == null) {
+                return Response.status(Status.NOT_FOUND).build();
+            }
             encuesta.setId(id);
+            // La vivienda y los hashes de la importación no se envían al cliente: se conservan los guardados
+            encuesta.setVivienda(existente.getVivienda());
+            encuesta.setHashFilaVivienda(existente.getHashFilaVivienda());
+            encuesta.setHashFilaPersona(existente.getHashFilaPersona());
             encuestaDAO.actualizar(encuesta);
+            versionDatos.incrementarRespuestas();
             return Response.ok(encuesta).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -89,6 +103,7 @@ public class EncuestaController {
     public Response eliminarEncuesta(@PathParam("id") Long id) {
         try {
             encuestaDAO.eliminar(id);
+            versionDatos.incrementarRespuestas();
             return Response.ok().entity("Encuesta eliminada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -101,6 +116,7 @@ public class EncuestaController {
     public Response recuperarEncuesta(@PathParam("id") Long id) {
         try {
             encuestaDAO.recuperar(id);
+            versionDatos.incrementarRespuestas();
             return Response.ok().entity("Encuesta recuperada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
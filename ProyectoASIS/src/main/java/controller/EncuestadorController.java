@@ -23,6 +23,7 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import service.VersionDatos;
 import model.Encuestador;
 
 @Path("/encuestadores")
@@ -35,6 +36,9 @@ public class EncuestadorController {
     @Inject
     private I_EncuestadorDAO encuestadorDAO;
 
+    @Inject
+    private VersionDatos versionDatos;
+
     @GET
     @Operation(summary = "Obtener todos los encuestadores", 
     description = "Retorna la lista completa de encuestadores en el sistema",
@@ -121,6 +125,7 @@ public class EncuestadorController {
     public Response crearEncuestador(Encuestador encuestador) {
         try {
             encuestadorDAO.crear(encuestador);
+            versionDatos.incrementar();
             return Response.status(Status.CREATED).entity(encuestador).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -141,6 +146,7 @@ public class EncuestadorController {
         try {
             encuestador.setId(id);
             encuestadorDAO.actualizar(encuestador);
+            versionDatos.incrementar();
             return Response.ok(encuestador).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -160,6 +166,7 @@ public class EncuestadorController {
     public Response eliminarEncuestador(@PathParam("id") Long id) {
         try {
             encuestadorDAO.eliminar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Encuestador eliminado correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -179,6 +186,7 @@ public class EncuestadorController {
     public Response recuperarEncuestador(@PathParam("id") Long id) {
         try {
             encuestadorDAO.recuperar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Encuestador recuperado correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
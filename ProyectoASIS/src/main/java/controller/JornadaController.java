@@ -25,6 +25,7 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import service.VersionDatos;
 import model.Jornada;
 
 @Path("/jornadas")
@@ -37,6 +38,9 @@ public class JornadaController {
     @Inject
     private I_JornadaDAO jornadaDAO;
 
+    @Inject
+    private VersionDatos versionDatos;
+
     @GET
     @Operation(summary = "Obtener todas las jornadas", 
     description = "Retorna la lista completa de jornadas en el sistema",
@@ -125,6 +129,7 @@ public class JornadaController {
     public Response crearJornada(Jornada jornada) {
         try {
             jornadaDAO.crear(jornada);
+            versionDatos.incrementar();
             // Convertir la jornada creada a DTO para incluir la información completa de la campaña
             JornadaDTO jornadaDTO = DTOMapper.toJornadaDTO(jornada);
             return Response.status(Status.CREATED).entity(jornadaDTO).build();
@@ -147,6 +152,7 @@ public class JornadaController {
         try {
             jornada.setId(id);
             jornadaDAO.actualizar(jornada);
+            versionDatos.incrementar();
             // Convertir la jornada actualizada a DTO para incluir la información completa de la campaña
             JornadaDTO jornadaDTO = DTOMapper.toJornadaDTO(jornada);
             return Response.ok(jornadaDTO).build();
@@ -168,6 +174,7 @@ public class JornadaController {
     public Response eliminarJornada(@PathParam("id") Long id) {
         try {
             jornadaDAO.eliminar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Jornada eliminada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -187,6 +194,7 @@ public class JornadaController {
     public Response recuperarJornada(@PathParam("id") Long id) {
         try {
             jornadaDAO.recuperar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Jornada recuperada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
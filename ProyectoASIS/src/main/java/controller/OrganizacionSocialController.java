@@ -10,6 +10,7 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import service.VersionDatos;
 import model.OrganizacionSocial;
 
 @Path("/organizaciones-sociales")
@@ -22,6 +23,9 @@ public class OrganizacionSocialController {
     @Inject
     private I_OrganizacionSocialDAO organizacionSocialDAO;
 
+    @Inject
+    private VersionDatos versionDatos;
+
     @GET
     public Response obtenerTodasLasOrganizaciones() {
         try {
@@ -64,6 +68,7 @@ public class OrganizacionSocialController {
     public Response crearOrganizacion(OrganizacionSocial organizacion) {
         try {
             organizacionSocialDAO.crear(organizacion);
+            versionDatos.incrementar();
             return Response.status(Status.CREATED).entity(organizacion).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -77,6 +82,7 @@ public class OrganizacionSocialController {
         try {
             organizacion.setId(id);
             organizacionSocialDAO.actualizar(organizacion);
+            versionDatos.incrementar();
             return Response.ok(organizacion).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -89,6 +95,7 @@ public class OrganizacionSocialController {
     public Response eliminarOrganizacion(@PathParam("id") Long id) {
         try {
             organizacionSocialDAO.eliminar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Organización social eliminada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -101,6 +108,7 @@ public class OrganizacionSocialController {
     public Response recuperarOrganizacion(@PathParam("id") Long id) {
         try {
             organizacionSocialDAO.recuperar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Organización social recuperada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
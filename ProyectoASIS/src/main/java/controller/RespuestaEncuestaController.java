@@ -1,27 +1,50 @@
 package controller;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.HashMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.ArrayList;
 
 import dao_interfaces.I_RespuestaEncuestaDAO;
-import dao_interfaces.I_EncuestaDAO;
+import dto.AgregadoRespuestaDTO;
+import dto.ClusterMapaDTO;
 import dto.CoordenadaMapaDTO;
+import dto.EstadisticaNumericaDTO;
+import dto.MapaCalorDTO;
+import dto.MetricasCacheDTO;
+import dto.PaginaDTO;
+import dto.TablaCruzadaDTO;
 import dto.RespuestaEncuestaDTO;
 import dto.DTOMapper;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.StreamingOutput;
 import model.RespuestaEncuesta;
-import model.Encuesta;
+import service.AlcanceFiltros;
+import service.CacheResultados;
+import service.ClusterMapaService;
+import service.CursorPaginacion;
+import service.EstadisticaNumericaService;
+import service.IndiceEspacial;
+import service.MapaCalorService;
+import service.SnapshotRespuestas;
+import service.TablaCruzadaService;
+import service.TeselasVectoriales;
+import service.VersionDatos;
 import dto.PreguntaRespuestaCategoriaDTO;
 
 @Path("/respuestas-encuesta")
@@ -30,17 +53,27 @@ import dto.PreguntaRespuestaCategoriaDTO;
 @Consumes(MediaType.APPLICATION_JSON)
 @Tag(name = "Respuestas Encuestas", description = "Operaciones ABML para la gestión de respuestas encuestas")
 public class RespuestaEncuestaController {
+
+    private static final int LIMITE_MAXIMO_PAGINA = 10_000;
+
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
     @GET
     @Path("/preguntas-por-categoria")
     public Response obtenerPreguntasPorCategoria(@QueryParam("categoria") String categoria) {
         try {
-            List<RespuestaEncuesta> respuestas = respuestaEncuestaDAO.obtenerTodos();
-            var preguntas = respuestas.stream()
-                .map(r -> r.getPregunta())
-                .filter(p -> p != null)
-                .filter(p -> categoria == null || (p.getCategoria() != null && p.getCategoria().name().equalsIgnoreCase(categoria)))
-                .filter(p -> !esPatronIgnorado(p.getTexto())) // Filtrar preguntas con patrón "0.[letra]"
-                .map(p -> p.getTexto())
+            // Recorre solo la tabla de preguntas del snapshot que aparecen en alguna respuesta
+            SnapshotRespuestas.Columnas columnas = snapshotRespuestas.obtener();
+            boolean[] respondida = new boolean[columnas.preguntas().size()];
+            for (int fila = 0; fila < columnas.filas(); fila++) {
+                SnapshotRespuestas.Pregunta p = columnas.pregunta(fila);
+                if (p != null) respondida[p.indice()] = true;
+            }
+            var preguntas = columnas.preguntas().stream()
+                .filter(p -> respondida[p.indice()])
+                .filter(p -> categoria == null || (p.categoria() != null && p.categoria().name().equalsIgnoreCase(categoria)))
+                .filter(p -> !p.ignorada()) // Filtrar preguntas con patrón "0.[letra]"
+                .map(p -> p.texto())
                 .distinct()
                 .toList();
             return Response.ok(preguntas).build();
@@ -50,221 +83,147 @@ public class RespuestaEncuestaController {
         }
     }
 
-    /**
-     * Verifica si una pregunta tiene el patrón "0.[letra]" que debe ser ignorado
-     */
-    private boolean esPatronIgnorado(String texto) {
-        if (texto == null) return false;
-        // Buscar patrón "0." seguido de una letra minúscula al inicio del texto
-        return texto.matches("^0\\.[a-z]\\..*");
-    }
-
     @POST
     @Path("/filtrar-preguntas-respuestas")
     public Response filtrarPreguntasRespuestas(dto.Filtros filtros) {
         try {
-            List<RespuestaEncuesta> respuestas = respuestaEncuestaDAO.obtenerTodos();
-            
-            // Si hay filtro de edad, obtener los encuesta_id que cumplen el rango
-            final List<Long> encuestaIdsFiltrados;
-            if (filtros.getEdadDesde() != null || filtros.getEdadHasta() != null) {
-                encuestaIdsFiltrados = new ArrayList<>();
-                Set<Long> encuestasYaProcesadas = new HashSet<>(); // Para evitar duplicados
-                
-                // Cada encuesta_id representa UNA PERSONA, buscar su edad
-                for (RespuestaEncuesta r : respuestas) {
-                    if (r.getPregunta() != null && "Edad".equals(r.getPregunta().getTexto())) {
-                        Long encuestaId = r.getEncuesta().getId();
-                        
-                        // Si ya procesamos esta encuesta, ignorar edades duplicadas
-                        if (encuestasYaProcesadas.contains(encuestaId)) {
-                            continue;
-                        }
-                        
-                        encuestasYaProcesadas.add(encuestaId);
-                        
-                        try {
-                            Integer edad = Integer.parseInt(r.getValor());
-                            boolean desde = filtros.getEdadDesde() == null || edad >= filtros.getEdadDesde();
-                            boolean hasta = filtros.getEdadHasta() == null || edad <= filtros.getEdadHasta();
-                            boolean cumple = desde && hasta;
-                            
-                            if (cumple) {
-                                encuestaIdsFiltrados.add(encuestaId);
-                            }
-                        } catch (NumberFormatException ex) {
-                            // Ignorar valores de edad no numéricos
-                        }
-                    }
-                }
-            } else {
-                encuestaIdsFiltrados = null;
+            // Todos los criterios se evalúan en la base: solo viajan las filas que cumplen.
+            // Entre importaciones los mismos filtros se repiten: se sirven desde la caché
+            List<PreguntaRespuestaCategoriaDTO> lista = cacheResultados.obtener("filtrar", filtros,
+                d -> 48 + CacheResultados.bytesTexto(d.getPregunta()) + CacheResultados.bytesTexto(d.getRespuesta())
+                    + CacheResultados.bytesTexto(d.getCategoria()),
+                () -> respuestaEncuestaDAO.filtrarPreguntasRespuestas(filtros, alcanceFiltros.encuestasCandidatas(filtros)));
+            return Response.ok(lista).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
+
+    @POST
+    @Path("/filtrar-preguntas-respuestas/pagina")
+    public Response filtrarPreguntasRespuestasPagina(@QueryParam("limite") @DefaultValue("1000") int limite,
+                                                     @QueryParam("cursor") String cursor,
+                                                     dto.Filtros filtros) {
+        if (limite < 1 || limite > LIMITE_MAXIMO_PAGINA) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: 'limite' debe estar entre 1 y " + LIMITE_MAXIMO_PAGINA).build();
+        }
+        try {
+            // Keyset (encuesta, respuesta): cada página arranca donde terminó la anterior, sin OFFSET
+            CursorPaginacion.Posicion desde = CursorPaginacion.decodificar(cursor, filtros);
+            List<PreguntaRespuestaCategoriaDTO> filas = respuestaEncuestaDAO.filtrarPreguntasRespuestasPagina(filtros,
+                alcanceFiltros.encuestasCandidatas(filtros),
+                desde != null ? desde.encuestaId() : null, desde != null ? desde.respuestaId() : null, limite + 1);
+            String siguiente = null;
+            if (filas.size() > limite) {
+                filas = filas.subList(0, limite);
+                PreguntaRespuestaCategoriaDTO ultima = filas.get(limite - 1);
+                siguiente = CursorPaginacion.codificar(
+                    new CursorPaginacion.Posicion(ultima.getEncuestaId(), ultima.getRespuestaId()), filtros);
             }
-            
-            // NUEVO: Filtros múltiples - encontrar encuesta_ids que cumplan TODOS los filtros múltiples
-            final List<Long> encuestaIdsFiltrosMultiples;
-            if (filtros.getFiltrosMultiples() != null && !filtros.getFiltrosMultiples().isEmpty()) {
-                List<Long> tempEncuestaIds = new ArrayList<>();
-                
-                // Filtrar solo filtros válidos (con categoría, pregunta y respuesta)
-                List<dto.FiltroMultiple> filtrosValidos = filtros.getFiltrosMultiples().stream()
-                    .filter(f -> f.getCategoria() != null && !f.getCategoria().trim().isEmpty() &&
-                               f.getPregunta() != null && !f.getPregunta().trim().isEmpty() &&
-                               f.getRespuesta() != null && !f.getRespuesta().trim().isEmpty())
-                    .collect(Collectors.toList());
-                
-                if (!filtrosValidos.isEmpty()) {
-                    // Para cada encuesta, verificar si cumple TODOS los filtros múltiples válidos
-                    Set<Long> todasLasEncuestas = respuestas.stream()
-                        .map(r -> r.getEncuesta().getId())
-                        .collect(Collectors.toSet());
-                    
-                    for (Long encuestaId : todasLasEncuestas) {
-                        boolean cumpleTodosFiltros = true;
-                        
-                        // Verificar cada filtro múltiple válido
-                        for (dto.FiltroMultiple filtro : filtrosValidos) {
-                            boolean cumpleFiltro = false;
-                            
-                            // Manejar casos "TODAS"
-                            if ("TODAS".equalsIgnoreCase(filtro.getCategoria()) && 
-                                "TODAS".equalsIgnoreCase(filtro.getPregunta()) && 
-                                "TODAS".equalsIgnoreCase(filtro.getRespuesta())) {
-                                // Filtro que acepta todas las combinaciones
-                                cumpleFiltro = true;
-                            } else if ("TODAS".equalsIgnoreCase(filtro.getCategoria()) && 
-                                      "TODAS".equalsIgnoreCase(filtro.getPregunta())) {
-                                // Todas las categorías y preguntas, respuesta específica
-                                cumpleFiltro = respuestas.stream()
-                                    .anyMatch(r -> r.getEncuesta().getId().equals(encuestaId) &&
-                                                 r.getPregunta() != null &&
-                                                 r.getValor().equalsIgnoreCase(filtro.getRespuesta()));
-                            } else if ("TODAS".equalsIgnoreCase(filtro.getCategoria()) && 
-                                      "TODAS".equalsIgnoreCase(filtro.getRespuesta())) {
-                                // Todas las categorías y respuestas, pregunta específica
-                                cumpleFiltro = respuestas.stream()
-                                    .anyMatch(r -> r.getEncuesta().getId().equals(encuestaId) &&
-                                                 r.getPregunta() != null &&
-                                                 r.getPregunta().getTexto().equalsIgnoreCase(filtro.getPregunta()));
-                            } else if ("TODAS".equalsIgnoreCase(filtro.getPregunta()) && 
-                                      "TODAS".equalsIgnoreCase(filtro.getRespuesta())) {
-                                // Todas las preguntas y respuestas, categoría específica
-                                cumpleFiltro = respuestas.stream()
-                                    .anyMatch(r -> r.getEncuesta().getId().equals(encuestaId) &&
-                                                 r.getPregunta() != null &&
-                                                 r.getPregunta().getCategoria() != null &&
-                                                 r.getPregunta().getCategoria().name().equalsIgnoreCase(filtro.getCategoria()));
-                            } else if ("TODAS".equalsIgnoreCase(filtro.getCategoria())) {
-                                // Todas las categorías, pregunta y respuesta específicas
-                                cumpleFiltro = respuestas.stream()
-                                    .anyMatch(r -> r.getEncuesta().getId().equals(encuestaId) &&
-                                                 r.getPregunta() != null &&
-                                                 r.getPregunta().getTexto().equalsIgnoreCase(filtro.getPregunta()) &&
-                                                 r.getValor().equalsIgnoreCase(filtro.getRespuesta()));
-                            } else if ("TODAS".equalsIgnoreCase(filtro.getPregunta())) {
-                                // Todas las preguntas, categoría y respuesta específicas
-                                cumpleFiltro = respuestas.stream()
-                                    .anyMatch(r -> r.getEncuesta().getId().equals(encuestaId) &&
-                                                 r.getPregunta() != null &&
-                                                 r.getPregunta().getCategoria() != null &&
-                                                 r.getPregunta().getCategoria().name().equalsIgnoreCase(filtro.getCategoria()) &&
-                                                 r.getValor().equalsIgnoreCase(filtro.getRespuesta()));
-                            } else if ("TODAS".equalsIgnoreCase(filtro.getRespuesta())) {
-                                // Todas las respuestas, categoría y pregunta específicas
-                                cumpleFiltro = respuestas.stream()
-                                    .anyMatch(r -> r.getEncuesta().getId().equals(encuestaId) &&
-                                                 r.getPregunta() != null &&
-                                                 r.getPregunta().getCategoria() != null &&
-                                                 r.getPregunta().getCategoria().name().equalsIgnoreCase(filtro.getCategoria()) &&
-                                                 r.getPregunta().getTexto().equalsIgnoreCase(filtro.getPregunta()));
-                            } else {
-                                // Caso normal: todos los valores específicos
-                                cumpleFiltro = respuestas.stream()
-                                    .anyMatch(r -> r.getEncuesta().getId().equals(encuestaId) &&
-                                                 r.getPregunta() != null &&
-                                                 r.getPregunta().getCategoria() != null &&
-                                                 r.getPregunta().getCategoria().name().equalsIgnoreCase(filtro.getCategoria()) &&
-                                                 r.getPregunta().getTexto().equalsIgnoreCase(filtro.getPregunta()) &&
-                                                 r.getValor().equalsIgnoreCase(filtro.getRespuesta()));
-                            }
-                            
-                            if (!cumpleFiltro) {
-                                cumpleTodosFiltros = false;
-                                break;
-                            }
-                        }
-                        
-                        if (cumpleTodosFiltros) {
-                            tempEncuestaIds.add(encuestaId);
-                        }
+            return Response.ok(new PaginaDTO<>(filas, siguiente)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: " + e.getMessage()).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
+
+    @POST
+    @Path("/filtrar-preguntas-respuestas/stream")
+    public Response filtrarPreguntasRespuestasStream(dto.Filtros filtros) {
+        try {
+            List<Long> encuestas = alcanceFiltros.encuestasCandidatas(filtros);
+            // El arreglo JSON se escribe a medida que llegan las filas del cursor: la memoria
+            // no depende del tamaño del resultado
+            StreamingOutput salida = output -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                try (Stream<PreguntaRespuestaCategoriaDTO> filas = respuestaEncuestaDAO.recorrerPreguntasRespuestas(filtros, encuestas)) {
+                    writer.write('[');
+                    boolean primera = true;
+                    for (Iterator<PreguntaRespuestaCategoriaDTO> it = filas.iterator(); it.hasNext(); ) {
+                        if (!primera) writer.write(',');
+                        // toJson(obj, writer) cerraría el writer: se serializa cada fila por separado
+                        writer.write(JSONB.toJson(it.next()));
+                        primera = false;
                     }
+                    writer.write(']');
                 }
-                encuestaIdsFiltrosMultiples = tempEncuestaIds;
-            } else {
-                encuestaIdsFiltrosMultiples = null;
-            }
-            
-            var lista = respuestas.stream()
-                .filter(r -> r.getPregunta() != null)
-                .filter(r -> !esPatronIgnorado(r.getPregunta().getTexto())) // Filtrar preguntas con patrón "0.[letra]"
-                .filter(r -> filtros.getTipoRespuesta() == null || (r.getPregunta().getTipoRespuesta() != null && r.getPregunta().getTipoRespuesta().name().equalsIgnoreCase(filtros.getTipoRespuesta())))
-                .filter(r -> {
-                    Long encuestaId = r.getEncuesta().getId();
-                    
-                    // Si hay filtro de edad y no cumple, excluir
-                    if (encuestaIdsFiltrados != null && !encuestaIdsFiltrados.contains(encuestaId)) {
-                        return false;
-                    }
-                    
-                    // Si hay filtros múltiples y no cumple, excluir
-                    if (encuestaIdsFiltrosMultiples != null && !encuestaIdsFiltrosMultiples.contains(encuestaId)) {
-                        return false;
-                    }
-                    
-                    // Si SOLO hay filtros múltiples (sin filtros básicos), mostrar solo las respuestas específicas de los filtros múltiples
-                    if (encuestaIdsFiltrosMultiples != null && !encuestaIdsFiltrosMultiples.isEmpty() &&
-                        filtros.getFiltrosMultiples() != null && !filtros.getFiltrosMultiples().isEmpty()) {
-                        
-                        // Verificar si esta respuesta específica coincide con algún filtro múltiple
-                        boolean coincideConFiltroMultiple = filtros.getFiltrosMultiples().stream()
-                            .anyMatch(filtro -> {
-                                // Si todos son "TODAS", incluir todas las respuestas
-                                if ("TODAS".equalsIgnoreCase(filtro.getCategoria()) && 
-                                    "TODAS".equalsIgnoreCase(filtro.getPregunta()) && 
-                                    "TODAS".equalsIgnoreCase(filtro.getRespuesta())) {
-                                    return true;
-                                }
-                                
-                                // Verificar categoria
-                                boolean categoriaMatch = "TODAS".equalsIgnoreCase(filtro.getCategoria()) ||
-                                    (r.getPregunta().getCategoria() != null && 
-                                     r.getPregunta().getCategoria().name().equalsIgnoreCase(filtro.getCategoria()));
-                                
-                                // Verificar pregunta
-                                boolean preguntaMatch = "TODAS".equalsIgnoreCase(filtro.getPregunta()) ||
-                                    r.getPregunta().getTexto().equalsIgnoreCase(filtro.getPregunta());
-                                
-                                // Verificar respuesta
-                                boolean respuestaMatch = "TODAS".equalsIgnoreCase(filtro.getRespuesta()) ||
-                                    r.getValor().equalsIgnoreCase(filtro.getRespuesta());
-                                
-                                return categoriaMatch && preguntaMatch && respuestaMatch;
-                            });
-                        
-                        return coincideConFiltroMultiple;
-                    }
-                    
-                    return true;
-                })
-                .map(r -> new PreguntaRespuestaCategoriaDTO(
-                    r.getPregunta().getTexto(),
-                    r.getValor(),
-                    r.getPregunta().getCategoria() != null ? r.getPregunta().getCategoria().name() : null,
-                    r.getEncuesta().getId()
-                ))
-                .toList();
-                
-            return Response.ok(lista).build();
+                writer.flush();
+            };
+            return Response.ok(salida, MediaType.APPLICATION_JSON).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
+
+    @POST
+    @Path("/agregado-preguntas-respuestas")
+    public Response agregarPreguntasRespuestas(dto.Filtros filtros) {
+        try {
+            // Mismos filtros que filtrar-preguntas-respuestas, pero el conteo por (pregunta, valor)
+            // se hace en la base: la respuesta crece con los valores distintos, no con las filas
+            List<AgregadoRespuestaDTO> agregados = cacheResultados.obtener("agregado", filtros,
+                a -> 64 + CacheResultados.bytesTexto(a.getPregunta()) + CacheResultados.bytesTexto(a.getRespuesta())
+                    + CacheResultados.bytesTexto(a.getCategoria()),
+                () -> respuestaEncuestaDAO.agregarPreguntasRespuestas(filtros, alcanceFiltros.encuestasCandidatas(filtros)));
+            return Response.ok(agregados).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
+
+    @POST
+    @Path("/crosstab")
+    public Response obtenerTablaCruzada(@QueryParam("filas") String preguntaFilas,
+                                        @QueryParam("columnas") String preguntaColumnas,
+                                        dto.Filtros filtros) {
+        if (preguntaFilas == null || preguntaColumnas == null) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: se requieren los parámetros 'filas' y 'columnas' (códigos CSV de pregunta)").build();
+        }
+        try {
+            TablaCruzadaDTO tabla = cacheResultados.obtener("crosstab|" + componenteClave(preguntaFilas) + "|" + componenteClave(preguntaColumnas), filtros,
+                t -> 64L + 16L * t.getFilas().size() * t.getColumnas().size(),
+                () -> List.of(tablaCruzadaService.calcular(preguntaFilas, preguntaColumnas, filtros))).get(0);
+            return Response.ok(tabla).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: " + e.getMessage()).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
+
+    @POST
+    @Path("/estadisticas-numericas")
+    public Response obtenerEstadisticasNumericas(@QueryParam("pregunta") String pregunta,
+                                                 @QueryParam("ancho") Double ancho,
+                                                 @QueryParam("buckets") Integer buckets,
+                                                 @QueryParam("percentiles") String percentiles,
+                                                 dto.Filtros filtros) {
+        if (pregunta == null) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: se requiere el parámetro 'pregunta' (código CSV de una pregunta numérica)").build();
+        }
+        try {
+            // percentiles=5,50,95 (0 a 100); sin el parámetro se usan los por defecto
+            List<Double> pedidos = percentiles == null || percentiles.isBlank() ? null
+                : Arrays.stream(percentiles.split(",")).map(String::trim).map(Double::valueOf).toList();
+            EstadisticaNumericaDTO estadistica = cacheResultados.obtener(
+                "estadisticas-numericas|" + componenteClave(pregunta) + "|" + ancho + "|" + buckets + "|" + pedidos, filtros,
+                e -> 256L + 48L * e.getHistograma().size(),
+                () -> List.of(estadisticaNumericaService.calcular(pregunta, ancho, buckets, pedidos, filtros))).get(0);
+            return Response.ok(estadistica).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: " + e.getMessage()).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
                     .entity("Error: " + e.getMessage()).build();
@@ -273,26 +232,66 @@ public class RespuestaEncuestaController {
 
     @Inject
     private I_RespuestaEncuestaDAO respuestaEncuestaDAO;
-    
+
+    @Inject
+    private SnapshotRespuestas snapshotRespuestas;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    @Inject
+    private TablaCruzadaService tablaCruzadaService;
+
+    @Inject
+    private IndiceEspacial indiceEspacial;
+
+    @Inject
+    private ClusterMapaService clusterMapaService;
+
+    @Inject
+    private MapaCalorService mapaCalorService;
+
+    @Inject
+    private TeselasVectoriales teselasVectoriales;
+
+    @Inject
+    private AlcanceFiltros alcanceFiltros;
+
+    @Inject
+    private EstadisticaNumericaService estadisticaNumericaService;
+
     @Inject
-    private I_EncuestaDAO encuestaDAO;
+    private CacheResultados cacheResultados;
+
+    @GET
+    @Path("/cache-metricas")
+    public Response obtenerMetricasCache() {
+        try {
+            MetricasCacheDTO metricas = cacheResultados.obtenerMetricas();
+            return Response.ok(metricas).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
 
     @GET
     @Path("/preguntas-respuestas-categoria")
     public Response obtenerPreguntasRespuestasPorCategoria(@QueryParam("categoria") String categoria) {
         try {
-            List<RespuestaEncuesta> respuestas = respuestaEncuestaDAO.obtenerTodos();
-            var lista = respuestas.stream()
-                .filter(r -> r.getPregunta() != null)
-                .filter(r -> !esPatronIgnorado(r.getPregunta().getTexto())) // Filtrar preguntas con patrón "0.[letra]"
-                .filter(r -> categoria == null || (r.getPregunta().getCategoria() != null && r.getPregunta().getCategoria().name().equalsIgnoreCase(categoria)))
-                .map(r -> new PreguntaRespuestaCategoriaDTO(
-                    r.getPregunta().getTexto(),
-                    r.getValor(),
-                    r.getPregunta().getCategoria() != null ? r.getPregunta().getCategoria().name() : null,
-                    r.getEncuesta().getId()
-                ))
-                .toList();
+            SnapshotRespuestas.Columnas columnas = snapshotRespuestas.obtener();
+            List<PreguntaRespuestaCategoriaDTO> lista = new ArrayList<>();
+            for (int fila = 0; fila < columnas.filas(); fila++) {
+                SnapshotRespuestas.Pregunta p = columnas.pregunta(fila);
+                if (p == null || p.ignorada()) continue; // Filtrar preguntas con patrón "0.[letra]"
+                if (categoria != null && (p.categoria() == null || !p.categoria().name().equalsIgnoreCase(categoria))) continue;
+                lista.add(new PreguntaRespuestaCategoriaDTO(
+                    p.texto(),
+                    columnas.valor(fila),
+                    p.categoria() != null ? p.categoria().name() : null,
+                    (long) columnas.encuestaId(fila)
+                ));
+            }
             return Response.ok(lista).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -331,149 +330,141 @@ public class RespuestaEncuestaController {
 
     @GET
     @Path("/coordenadas-mapa")
-    public Response obtenerCoordenadasParaMapa() {
+    public Response obtenerCoordenadasParaMapa(@QueryParam("bbox") String bbox, @QueryParam("zoom") Integer zoom) {
+        return coordenadasParaMapa(bbox, zoom, null);
+    }
+
+    @POST
+    @Path("/coordenadas-mapa")
+    public Response obtenerCoordenadasFiltradasParaMapa(@QueryParam("bbox") String bbox, @QueryParam("zoom") Integer zoom,
+                                                        dto.Filtros filtros) {
+        // Mismos filtros que filtrar-preguntas-respuestas: solo las encuestas dentro del alcance
+        return coordenadasParaMapa(bbox, zoom, filtros);
+    }
+
+    private Response coordenadasParaMapa(String bbox, Integer zoom, dto.Filtros filtros) {
         try {
-            // Obtener todas las respuestas de coordenadas (estas están en las encuestas de vivienda)
-            List<RespuestaEncuesta> latitudes = respuestaEncuestaDAO.obtenerRespuestasPorPreguntaCodigo("lat_1_Presione_actualiza");
-            List<RespuestaEncuesta> longitudes = respuestaEncuestaDAO.obtenerRespuestasPorPreguntaCodigo("long_1_Presione_actualiza");
-            
-            System.out.println("Coordenadas de viviendas - Latitudes: " + latitudes.size() + ", Longitudes: " + longitudes.size());
-            
-            // Agrupar coordenadas por encuestaId de vivienda
-            Map<Long, RespuestaEncuesta> latitudesPorEncuesta = latitudes.stream()
-                .collect(Collectors.toMap(
-                    r -> r.getEncuesta().getId(),
-                    r -> r,
-                    (existing, replacement) -> existing
-                ));
-            
-            Map<Long, RespuestaEncuesta> longitudesPorEncuesta = longitudes.stream()
-                .collect(Collectors.toMap(
-                    r -> r.getEncuesta().getId(),
-                    r -> r,
-                    (existing, replacement) -> existing
-                ));
-            
-            // Obtener todas las encuestas para mapear personas a viviendas
-            List<Encuesta> todasLasEncuestas = encuestaDAO.obtenerNoBorrados();
-            System.out.println("Total de encuestas encontradas: " + todasLasEncuestas.size());
-            
-            // Crear mapeo de vivienda a coordenadas
-            Map<String, CoordenadaMapaDTO> coordenadasPorVivienda = new HashMap<>();
-            
-            // Procesar cada encuesta de vivienda que tiene coordenadas
-            for (Long encuestaViviendaId : latitudesPorEncuesta.keySet()) {
-                if (longitudesPorEncuesta.containsKey(encuestaViviendaId)) {
-                    try {
-                        RespuestaEncuesta respuestaLatitud = latitudesPorEncuesta.get(encuestaViviendaId);
-                        RespuestaEncuesta respuestaLongitud = longitudesPorEncuesta.get(encuestaViviendaId);
-                        
-                        String latitudStr = respuestaLatitud.getValor();
-                        String longitudStr = respuestaLongitud.getValor();
-                        
-                        Double latitud = Double.parseDouble(latitudStr);
-                        Double longitud = Double.parseDouble(longitudStr);
-                        
-                        if (latitud >= -90 && latitud <= 90 && longitud >= -180 && longitud <= 180) {
-                            // Extraer el ID de vivienda del idExterno
-                            Encuesta encuestaVivienda = respuestaLatitud.getEncuesta();
-                            String idExterno = encuestaVivienda.getIdExterno();
-                            
-                            // El idExterno podría ser "viviendaX_persona_Y", extraer solo "viviendaX"
-                            String idVivienda = idExterno;
-                            if (idExterno.contains("_persona_")) {
-                                idVivienda = idExterno.split("_persona_")[0];
-                            }
-                            
-                            CoordenadaMapaDTO coordenada = new CoordenadaMapaDTO(
-                                encuestaViviendaId,
-                                respuestaLatitud.getId(),
-                                latitud + "," + longitud,
-                                1L,
-                                "Vivienda " + idVivienda
-                            );
-                            
-                            coordenadasPorVivienda.put(idVivienda, coordenada);
-                        }
-                    } catch (NumberFormatException e) {
-                        System.out.println("Error parseando coordenadas para encuesta " + encuestaViviendaId + ": " + e.getMessage());
-                    }
-                }
-            }
-            
-            System.out.println("Coordenadas mapeadas por vivienda: " + coordenadasPorVivienda.size());
-            
-            // Ahora crear coordenadas para TODAS las encuestas (incluidas las de personas)
-            List<CoordenadaMapaDTO> todasLasCoordenadas = new ArrayList<>();
-            
-            for (Encuesta encuesta : todasLasEncuestas) {
-                String idExterno = encuesta.getIdExterno();
-                if (idExterno == null) continue;
-                
-                // DEBUG específico para encuesta 456
-                if (encuesta.getId() == 456) {
-                    System.out.println("DEBUG ENCUESTA 456:");
-                    System.out.println("  ID: " + encuesta.getId());
-                    System.out.println("  ID Externo: " + idExterno);
-                }
-                
-                // Extraer el ID de vivienda
-                String idVivienda = idExterno;
-                if (idExterno.contains("_persona_")) {
-                    idVivienda = idExterno.split("_persona_")[0];
-                    
-                    if (encuesta.getId() == 456) {
-                        System.out.println("  Es persona, ID Vivienda extraído: " + idVivienda);
-                    }
-                }
-                
-                // Si esta vivienda tiene coordenadas, asignarlas a esta encuesta
-                if (coordenadasPorVivienda.containsKey(idVivienda)) {
-                    CoordenadaMapaDTO coordenadaVivienda = coordenadasPorVivienda.get(idVivienda);
-                    
-                    if (encuesta.getId() == 456) {
-                        System.out.println("  ENCONTRADA coordenada para vivienda " + idVivienda);
-                        System.out.println("  Coordenada: " + coordenadaVivienda.getValor());
-                    }
-                    
-                    // Crear nueva coordenada para esta encuesta específica
-                    CoordenadaMapaDTO coordenadaEncuesta = new CoordenadaMapaDTO(
-                        encuesta.getId(), // ID de la encuesta (persona o vivienda)
-                        coordenadaVivienda.getRespuestaId(),
-                        coordenadaVivienda.getValor(),
-                        coordenadaVivienda.getPreguntaId(),
-                        "Encuesta " + encuesta.getId() + " (Vivienda " + idVivienda + ")"
-                    );
-                    
-                    todasLasCoordenadas.add(coordenadaEncuesta);
-                } else {
-                    if (encuesta.getId() == 456) {
-                        System.out.println("  NO se encontró coordenada para vivienda " + idVivienda);
-                        System.out.println("  Viviendas con coordenadas disponibles: " + coordenadasPorVivienda.keySet().stream().limit(10).toList());
-                    }
+            // bbox = "oeste,sur,este,norte" (formato de LatLngBounds.toBBoxString() de Leaflet);
+            // sin bbox se devuelven todas las viviendas geolocalizadas
+            double[] r = parsearBbox(bbox);
+            List<IndiceEspacial.Vivienda> viviendas = r == null ? indiceEspacial.todas()
+                : indiceEspacial.buscar(r[0], r[1], r[2], r[3], zoom);
+            viviendas = IndiceEspacial.filtrar(viviendas, alcanceFiltros.encuestas(filtros));
+
+            // Una coordenada por encuesta (persona o vivienda), con la ubicación de su vivienda
+            List<CoordenadaMapaDTO> coordenadas = new ArrayList<>();
+            for (IndiceEspacial.Vivienda v : viviendas) {
+                for (long encuestaId : v.encuestas()) {
+                    coordenadas.add(new CoordenadaMapaDTO(encuestaId, null, v.latitud() + "," + v.longitud(), 1L,
+                        "Encuesta " + encuestaId + " (Vivienda " + v.id() + ")"));
                 }
             }
-            
-            System.out.println("Coordenadas totales asignadas a todas las encuestas: " + todasLasCoordenadas.size());
-            
-            return Response.ok(todasLasCoordenadas).build();
-            
+            coordenadas.sort(Comparator.comparing(CoordenadaMapaDTO::getEncuestaId));
+            return Response.ok(coordenadas).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: " + e.getMessage()).build();
         } catch (Exception e) {
-            e.printStackTrace();
             return Response.status(Status.INTERNAL_SERVER_ERROR)
                     .entity("Error: " + e.getMessage()).build();
         }
     }
 
+    @GET
+    @Path("/coordenadas-mapa/clusters")
+    public Response obtenerClustersParaMapa(@QueryParam("zoom") Integer zoom, @QueryParam("bbox") String bbox,
+                                            @QueryParam("desglose") String preguntaDesglose) {
+        return clustersParaMapa(zoom, bbox, preguntaDesglose, null);
+    }
+
+    @POST
+    @Path("/coordenadas-mapa/clusters")
+    public Response obtenerClustersFiltradosParaMapa(@QueryParam("zoom") Integer zoom, @QueryParam("bbox") String bbox,
+                                                     @QueryParam("desglose") String preguntaDesglose,
+                                                     dto.Filtros filtros) {
+        return clustersParaMapa(zoom, bbox, preguntaDesglose, filtros);
+    }
+
+    private Response clustersParaMapa(Integer zoom, String bbox, String preguntaDesglose, dto.Filtros filtros) {
+        if (zoom == null) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: se requiere el parámetro 'zoom'").build();
+        }
+        try {
+            // Como mucho unos cientos de grupos por pedido, cualquiera sea el zoom
+            List<ClusterMapaDTO> clusters = clusterMapaService.agrupar(parsearBbox(bbox), zoom, preguntaDesglose, filtros);
+            return Response.ok(clusters).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: " + e.getMessage()).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
+
+    @POST
+    @Path("/coordenadas-mapa/calor")
+    public Response obtenerMapaCalor(@QueryParam("pregunta") String pregunta, @QueryParam("valor") String valor,
+                                     @QueryParam("zoom") Integer zoom, @QueryParam("bbox") String bbox,
+                                     dto.Filtros filtros) {
+        if (pregunta == null || zoom == null || bbox == null || bbox.isBlank()) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: se requieren los parámetros 'pregunta', 'zoom' y 'bbox'").build();
+        }
+        try {
+            // Una grilla de densidad por tile del bbox, cacheada por (indicador, tile, filtros) hasta la próxima importación
+            MapaCalorDTO mapa = mapaCalorService.calcular(pregunta, valor, parsearBbox(bbox), zoom, filtros);
+            return Response.ok(mapa).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: " + e.getMessage()).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
+
+    @GET
+    @Path("/coordenadas-mapa/teselas/{z}/{x}/{y}.mvt")
+    @Produces("application/vnd.mapbox-vector-tile")
+    public Response obtenerTeselaVectorial(@PathParam("z") int z, @PathParam("x") int x, @PathParam("y") int y) {
+        try {
+            // Capa "viviendas" en formato Mapbox Vector Tile, servida desde la caché en disco si ya se generó
+            return Response.ok(teselasVectoriales.obtener(z, x, y)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Error: " + e.getMessage()).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
+
+    /**
+     * @return oeste, sur, este, norte; o null si no se envió bbox
+     * @throws IllegalArgumentException si no tiene cuatro números
+     */
+    private static double[] parsearBbox(String bbox) {
+        if (bbox == null || bbox.isBlank()) {
+            return null;
+        }
+        double[] r = Arrays.stream(bbox.split(",")).map(String::trim).mapToDouble(Double::parseDouble).toArray();
+        if (r.length != 4) {
+            throw new IllegalArgumentException("bbox debe tener 4 valores: oeste,sur,este,norte");
+        }
+        return r;
+    }
+
     @GET
     @Path("/existe-datos")
     public Response verificarSiExistenDatos() {
         try {
-            List<RespuestaEncuesta> respuestas = respuestaEncuestaDAO.obtenerNoBorrados();
-            boolean existenDatos = !respuestas.isEmpty();
+            int totalRespuestas = snapshotRespuestas.obtener().cantidadNoEliminadas();
+            boolean existenDatos = totalRespuestas > 0;
             
             return Response.ok()
-                .entity("{\"existenDatos\": " + existenDatos + ", \"totalRespuestas\": " + respuestas.size() + "}")
+                .entity("{\"existenDatos\": " + existenDatos + ", \"totalRespuestas\": " + totalRespuestas + "}")
                 .build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -512,6 +503,7 @@ public class RespuestaEncuestaController {
     public Response crearRespuesta(RespuestaEncuesta respuesta) {
         try {
             respuestaEncuestaDAO.crear(respuesta);
+            versionDatos.incrementarRespuestas();
             return Response.status(Status.CREATED).entity(respuesta).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -525,6 +517,7 @@ public class RespuestaEncuestaController {
         try {
             respuesta.setId(id);
             respuestaEncuestaDAO.actualizar(respuesta);
+            versionDatos.incrementarRespuestas();
             return Response.ok(respuesta).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -537,6 +530,7 @@ public class RespuestaEncuestaController {
     public Response eliminarRespuesta(@PathParam("id") Long id) {
         try {
             respuestaEncuestaDAO.eliminar(id);
+            versionDatos.incrementarRespuestas();
             return Response.ok().entity("Respuesta eliminada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -549,10 +543,16 @@ public class RespuestaEncuestaController {
     public Response recuperarRespuesta(@PathParam("id") Long id) {
         try {
             respuestaEncuestaDAO.recuperar(id);
+            versionDatos.incrementarRespuestas();
             return Response.ok().entity("Respuesta recuperada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
                     .entity("Error: " + e.getMessage()).build();
         }
     }
-}
\ No newline at end of file
+
+    // Longitud como prefijo en las claves de la caché: ningún código de pregunta puede imitar el separador
+    private static String componenteClave(String valor) {
+        return valor.length() + ":" + valor;
+    }
+}
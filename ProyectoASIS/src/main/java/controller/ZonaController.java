@@ -4,6 +4,7 @@ package controller;
 import java.util.List;
 
 import dao_interfaces.I_ZonaDAO;
+import dto.AsignacionZonasDTO;
 import dto.DTOMapper;
 import dto.ZonaDTO;
 import io.swagger.v3.oas.annotations.Operation;
@@ -25,6 +26,8 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import service.AsignacionZonas;
+import service.VersionDatos;
 import model.Zona;
 
 @Path("/zonas")
@@ -37,6 +40,12 @@ public class ZonaController {
     @Inject
     private I_ZonaDAO zonaDAO;
 
+    @Inject
+    private VersionDatos versionDatos;
+
+    @Inject
+    private AsignacionZonas asignacionZonas;
+
     @GET
     @Operation(summary = "Obtener todas las zonas", 
     description = "Retorna la lista completa de zonas en el sistema",
@@ -125,6 +134,7 @@ public class ZonaController {
     public Response crearZona(Zona zona) {
         try {
             zonaDAO.crear(zona);
+            versionDatos.incrementar();
             ZonaDTO zonaDTO = DTOMapper.toZonaDTO(zona);
             return Response.status(Status.CREATED).entity(zonaDTO).build();
         } catch (Exception e) {
@@ -146,6 +156,7 @@ public class ZonaController {
         try {
             zona.setId(id);
             zonaDAO.actualizar(zona);
+            versionDatos.incrementar();
             ZonaDTO zonaDTO = DTOMapper.toZonaDTO(zona);
             return Response.ok(zonaDTO).build();
         } catch (Exception e) {
@@ -166,6 +177,7 @@ public class ZonaController {
     public Response eliminarZona(@PathParam("id") Long id) {
         try {
             zonaDAO.eliminar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Zona eliminada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -185,10 +197,31 @@ public class ZonaController {
     public Response recuperarZona(@PathParam("id") Long id) {
         try {
             zonaDAO.recuperar(id);
+            versionDatos.incrementar();
             return Response.ok().entity("Zona recuperada correctamente").build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
                     .entity("Error: " + e.getMessage()).build();
         }
     }
-}
\ No newline at end of file
+
+    @POST
+    @Path("/reasignar-viviendas")
+    @Operation(summary = "Reasignar viviendas a zonas y barrios",
+    description = "Ubica todas las viviendas con coordenadas dentro de los polígonos de zonas y barrios " +
+                  "(geolocalizacion en WKT, GeoJSON o lista de pares \"lat, lng; lat, lng; ...\") y actualiza " +
+                  "la zona de sus encuestas. Usar después de redibujar zonas o barrios.",
+    responses = {
+        @ApiResponse(responseCode = "200", description = "Reasignación completada"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public Response reasignarViviendas() {
+        try {
+            AsignacionZonasDTO resultado = asignacionZonas.reasignarTodas();
+            return Response.ok(resultado).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error: " + e.getMessage()).build();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package dao_impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import dto.FiltroMultiple;
+import dto.FiltroNumerico;
+import dto.Filtros;
+import jakarta.persistence.Query;
+import model.TipoCategoria;
+import model.TipoRespuesta;
+
+/**
+ * Traduce un {@link Filtros} a la cláusula FROM/WHERE de una única consulta JPQL
+ * sobre RespuestaEncuesta (alias r, pregunta p, encuesta e).
+ *
+ * Las dimensiones de la encuesta (zona, barrio, campaña...) y los filtros múltiples llegan
+ * ya resueltos en memoria como conjunto de ids y se aplican con IN sobre la clave primaria;
+ * de los filtros múltiples solo queda en la consulta qué filas devolver. El conjunto puede tener
+ * decenas de miles de ids, así que quien consulta lo parte con {@link #lotes(Collection)}
+ * y hace una consulta por lote: MySQL no acepta más de 65.535 parámetros por sentencia.
+ *
+ * Los demás filtros por encuesta (edad, rangos numéricos) se expresan como
+ * subconsultas EXISTS correlacionadas sobre la encuesta, de modo que MySQL resuelve el
+ * filtrado con semi-joins y solo devuelve las filas que cumplen. Las respuestas eliminadas
+ * lógicamente no se devuelven ni cuentan para ningún filtro. Los rangos usan la
+ * columna tipada valor_numerico (índice por pregunta + valor).
+ */
+final class ConsultaFiltros {
+
+	// Columna del CSV de personas con la edad (texto "4. Edad")
+	static final String PREGUNTA_CSV_EDAD = "8_3_Edad";
+	// Ids de encuesta por consulta
+	static final int TAMANIO_LOTE = 1_000;
+
+	private final StringBuilder where = new StringBuilder();
+	private final Map<String, Object> parametros = new HashMap<>();
+	private boolean vacia;
+
+	private ConsultaFiltros() {
+	}
+
+	static ConsultaFiltros desde(Filtros filtros, Collection<Long> encuestas) {
+		ConsultaFiltros consulta = new ConsultaFiltros();
+		consulta.where.append("r.fechaEliminacion IS NULL AND ");
+		// Ignorar preguntas con patrón "0.[letra]." (datos de control de la vivienda)
+		consulta.where.append("(p.texto IS NULL OR p.texto NOT LIKE '0._.%')");
+		consulta.agregarEncuestas(encuestas);
+		if (filtros != null) {
+			consulta.agregarTipoRespuesta(filtros.getTipoRespuesta());
+			consulta.agregarEdad(filtros.getEdadDesde(), filtros.getEdadHasta());
+			consulta.agregarFiltrosNumericos(filtros.getFiltrosNumericos());
+			consulta.agregarFiltrosMultiples(filtros.getFiltrosMultiples(), encuestas != null);
+		}
+		return consulta;
+	}
+
+	/**
+	 * Parte las encuestas en lotes de {@link #TAMANIO_LOTE} ids, en orden ascendente: los
+	 * resultados ordenados por encuesta se pueden concatenar lote tras lote.
+	 * @return un único lote null si encuestas es null (sin restricción por dimensión),
+	 *         ninguno si está vacía
+	 */
+	static List<List<Long>> lotes(Collection<Long> encuestas) {
+		if (encuestas == null) {
+			return Arrays.asList((List<Long>) null);
+		}
+		List<Long> ids = new ArrayList<>(encuestas);
+		ids.sort(null);
+		List<List<Long>> lotes = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i += TAMANIO_LOTE) {
+			lotes.add(ids.subList(i, Math.min(ids.size(), i + TAMANIO_LOTE)));
+		}
+		return lotes;
+	}
+
+	/**
+	 * @return true si los filtros no pueden coincidir con ninguna respuesta
+	 *         (la consulta no necesita ejecutarse)
+	 */
+	boolean esVacia() {
+		return vacia;
+	}
+
+	String getFrom() {
+		return "FROM RespuestaEncuesta r INNER JOIN r.preguntaEncuesta p INNER JOIN r.encuesta e ";
+	}
+
+	String getWhere() {
+		return "WHERE " + where + " ";
+	}
+
+	void aplicarParametros(Query query) {
+		parametros.forEach(query::setParameter);
+	}
+
+	private void agregarEncuestas(Collection<Long> encuestas) {
+		if (encuestas == null) return;
+		if (encuestas.isEmpty()) {
+			vacia = true;
+			return;
+		}
+		where.append(" AND e.id IN :encuestas");
+		parametros.put("encuestas", encuestas);
+	}
+
+	private void agregarTipoRespuesta(String tipoRespuesta) {
+		if (tipoRespuesta == null) return;
+		TipoRespuesta tipo = enumOrNull(TipoRespuesta.class, tipoRespuesta);
+		if (tipo == null) {
+			vacia = true;
+			return;
+		}
+		where.append(" AND p.tipoRespuesta = :tipoRespuesta");
+		parametros.put("tipoRespuesta", tipo);
+	}
+
+	private void agregarEdad(Integer edadDesde, Integer edadHasta) {
+		if (edadDesde == null && edadHasta == null) return;
+		parametros.put("preguntaEdad", PREGUNTA_CSV_EDAD);
+		agregarRango("ea", "pa.preguntaCsv = :preguntaEdad",
+			edadDesde != null ? edadDesde.doubleValue() : null,
+			edadHasta != null ? edadHasta.doubleValue() : null);
+	}
+
+	private void agregarFiltrosNumericos(List<FiltroNumerico> filtrosNumericos) {
+		if (filtrosNumericos == null) return;
+		List<FiltroNumerico> validos = filtrosNumericos.stream()
+			.filter(FiltroNumerico::esValido)
+			.toList();
+		for (int i = 0; i < validos.size(); i++) {
+			FiltroNumerico filtro = validos.get(i);
+			parametros.put("preguntaNumerica" + i, filtro.getPregunta().toLowerCase(Locale.ROOT));
+			parametros.put("tipoNumerico", TipoRespuesta.NUMERO);
+			agregarRango("n" + i, "LOWER(pa.texto) = :preguntaNumerica" + i + " AND pa.tipoRespuesta = :tipoNumerico",
+				filtro.getDesde(), filtro.getHasta());
+		}
+	}
+
+	/**
+	 * La encuesta debe tener una respuesta a la pregunta indicada (alias pa/ra) cuyo
+	 * valor numérico esté dentro del rango; los extremos null no restringen.
+	 */
+	private void agregarRango(String sufijo, String condicionPregunta, Double desde, Double hasta) {
+		where.append(" AND EXISTS (SELECT ra.id FROM RespuestaEncuesta ra INNER JOIN ra.preguntaEncuesta pa " +
+					 "WHERE ra.encuesta = e AND ra.fechaEliminacion IS NULL AND ").append(condicionPregunta);
+		if (desde != null) {
+			where.append(" AND ra.valorNumerico >= :desde_").append(sufijo);
+			parametros.put("desde_" + sufijo, desde);
+		}
+		if (hasta != null) {
+			where.append(" AND ra.valorNumerico <= :hasta_").append(sufijo);
+			parametros.put("hasta_" + sufijo, hasta);
+		}
+		where.append(")");
+	}
+
+	/**
+	 * @param resueltos true si las encuestas ya vienen filtradas por los filtros múltiples;
+	 *        si no, cada filtro se exige con una subconsulta EXISTS
+	 */
+	private void agregarFiltrosMultiples(List<FiltroMultiple> filtrosMultiples, boolean resueltos) {
+		if (filtrosMultiples == null || filtrosMultiples.isEmpty()) return;
+
+		List<FiltroMultiple> validos = filtrosMultiples.stream()
+			.filter(FiltroMultiple::esValido)
+			.toList();
+		if (validos.isEmpty()) {
+			// Hay filtros pero ninguno completo: no coincide ninguna encuesta
+			vacia = true;
+			return;
+		}
+
+		List<String> coincidenciasFila = new ArrayList<>();
+		for (int i = 0; i < validos.size(); i++) {
+			FiltroMultiple filtro = validos.get(i);
+			List<String> condicionesSub = condiciones(filtro, i, "r" + i, "p" + i);
+			if (condicionesSub == null) {
+				vacia = true;
+				return;
+			}
+			// La encuesta debe tener al menos una respuesta que cumpla cada filtro
+			if (!resueltos && !condicionesSub.isEmpty()) {
+				where.append(" AND EXISTS (SELECT r").append(i).append(".id FROM RespuestaEncuesta r").append(i)
+					 .append(" INNER JOIN r").append(i).append(".preguntaEncuesta p").append(i)
+					 .append(" WHERE r").append(i).append(".encuesta = e AND r").append(i).append(".fechaEliminacion IS NULL AND ")
+					 .append(String.join(" AND ", condicionesSub)).append(")");
+			}
+			// Y solo se devuelven las respuestas que coinciden con alguno de los filtros
+			List<String> condicionesFila = condiciones(filtro, i, "r", "p");
+			coincidenciasFila.add(condicionesFila.isEmpty() ? "1 = 1" : "(" + String.join(" AND ", condicionesFila) + ")");
+		}
+		where.append(" AND (").append(String.join(" OR ", coincidenciasFila)).append(")");
+	}
+
+	/**
+	 * Condiciones de un filtro múltiple sobre los alias dados; "TODAS" no restringe.
+	 * @return null si el filtro nombra una categoría inexistente
+	 */
+	private List<String> condiciones(FiltroMultiple filtro, int i, String aliasRespuesta, String aliasPregunta) {
+		List<String> condiciones = new ArrayList<>();
+		if (!FiltroMultiple.TODAS.equalsIgnoreCase(filtro.getCategoria())) {
+			TipoCategoria categoria = enumOrNull(TipoCategoria.class, filtro.getCategoria());
+			if (categoria == null) return null;
+			condiciones.add(aliasPregunta + ".categoria = :categoria" + i);
+			parametros.put("categoria" + i, categoria);
+		}
+		if (!FiltroMultiple.TODAS.equalsIgnoreCase(filtro.getPregunta())) {
+			condiciones.add("LOWER(" + aliasPregunta + ".texto) = :pregunta" + i);
+			parametros.put("pregunta" + i, filtro.getPregunta().toLowerCase(Locale.ROOT));
+		}
+		if (!FiltroMultiple.TODAS.equalsIgnoreCase(filtro.getRespuesta())) {
+			condiciones.add("LOWER(" + aliasRespuesta + ".valor) = :respuesta" + i);
+			parametros.put("respuesta" + i, filtro.getRespuesta().toLowerCase(Locale.ROOT));
+		}
+		return condiciones;
+	}
+
+	private static <E extends Enum<E>> E enumOrNull(Class<E> tipo, String nombre) {
+		try {
+			return Enum.valueOf(tipo, nombre.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
@@ -1,5 +1,9 @@
 package dao_impl;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import dao_interfaces.I_EncuestaDAO;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.persistence.NoResultException;
@@ -31,5 +35,22 @@ public class EncuestaDAO_IMPL extends GenericDAO_IMPL<Encuesta, Long> implements
 			return null;
 		}
 	}
+
+	@Override
+	public Map<String, Encuesta> findByIdsExternos(Collection<String> idsExternos) {
+		Map<String, Encuesta> encuestas = new HashMap<>();
+		if (idsExternos == null || idsExternos.isEmpty()) {
+			return encuestas;
+		}
+		// zona y jornada son EAGER: se traen en la misma consulta y no una por encuesta
+		em.createQuery(
+			"SELECT e FROM Encuesta e LEFT JOIN FETCH e.zona LEFT JOIN FETCH e.jornada " +
+			"WHERE e.idExterno IN :idsExternos AND e.fechaEliminacion IS NULL ORDER BY e.id",
+			Encuesta.class)
+			.setParameter("idsExternos", idsExternos)
+			.getResultList()
+			.forEach(e -> encuestas.putIfAbsent(e.getIdExterno(), e));
+		return encuestas;
+	}
 	
 }
@@ -23,15 +23,7 @@ public abstract class GenericDAO_IMPL<T extends EliminableLogico, ID> implements
 	}
 	
     public void crear(T entidad) {
-        EntityTransaction tx = em.getTransaction();
-        try {
-            tx.begin();
-            em.persist(entidad);
-            tx.commit();
-        } catch (RuntimeException e) {
-            if (tx.isActive()) tx.rollback();
-            throw e;
-        }
+        enTransaccion(() -> em.persist(entidad));
     }
 
 	@Override
@@ -54,44 +46,45 @@ public abstract class GenericDAO_IMPL<T extends EliminableLogico, ID> implements
 	
 	@Override
     public void actualizar(T entidad) {
-        EntityTransaction tx = em.getTransaction();
-        try {
-            tx.begin();
-            em.merge(entidad);
-            tx.commit();
-        } catch (RuntimeException e) {
-            if (tx.isActive()) tx.rollback();
-            throw e;
-        }
+        enTransaccion(() -> em.merge(entidad));
     }
 
 	@Override
     public void eliminar(Long id) {
-        EntityTransaction tx = em.getTransaction();
-        try {
-            tx.begin();
+        enTransaccion(() -> {
             T entidad = em.find(clasePersistente, id);
             if (entidad != null) {
                 entidad.setFechaEliminacion(LocalDateTime.now());
                 em.merge(entidad);
             }
-            tx.commit();
-        } catch (RuntimeException e) {
-            if (tx.isActive()) tx.rollback();
-            throw e;
-        }
+        });
     }
 
 	@Override
     public void recuperar(Long id) {
-        EntityTransaction tx = em.getTransaction();
-        try {
-            tx.begin();
+        enTransaccion(() -> {
             T entidad = em.find(clasePersistente, id);
             if (entidad != null) {
                 entidad.setFechaEliminacion(null);
                 em.merge(entidad);
             }
+        });
+    }
+
+    /**
+     * Ejecuta la operación en su propia transacción, o dentro de la que ya está activa en
+     * el EntityManager (por ejemplo, la de una importación): en ese caso quien la abrió
+     * decide cuándo confirmar o deshacer.
+     */
+    protected void enTransaccion(Runnable operacion) {
+        EntityTransaction tx = em.getTransaction();
+        if (tx.isActive()) {
+            operacion.run();
+            return;
+        }
+        try {
+            tx.begin();
+            operacion.run();
             tx.commit();
         } catch (RuntimeException e) {
             if (tx.isActive()) tx.rollback();
@@ -1,5 +1,8 @@
 package dao_impl;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import dao_interfaces.I_PreguntaEncuestaDAO;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.persistence.NoResultException;
@@ -24,5 +27,16 @@ public class PreguntaEncuestaDAO_IMPL extends GenericDAO_IMPL<PreguntaEncuesta,
             return null;
         }
     }
+
+	@Override
+	public Map<String, PreguntaEncuesta> obtenerPorPreguntaCsv() {
+		Map<String, PreguntaEncuesta> preguntas = new HashMap<>();
+		em.createQuery("SELECT p FROM PreguntaEncuesta p ORDER BY p.id", PreguntaEncuesta.class)
+			.getResultList()
+			.forEach(p -> {
+				if (p.getPreguntaCsv() != null) preguntas.putIfAbsent(p.getPreguntaCsv(), p);
+			});
+		return preguntas;
+	}
 	
 }
@@ -1,18 +1,69 @@
 package dao_impl;
 
 import dao_interfaces.I_RespuestaEncuestaDAO;
+import dto.AgregadoRespuestaDTO;
+import dto.Filtros;
+import dto.PreguntaRespuestaCategoriaDTO;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 import model.RespuestaEncuesta;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @RequestScoped
 public class RespuestaEncuestaDAO_IMPL extends GenericDAO_IMPL<RespuestaEncuesta, Long> implements I_RespuestaEncuestaDAO{
 	
+	// Filas por viaje a la base al recorrer resultados grandes
+	private static final int TAMANIO_FETCH = 500;
+	// Con este fetch size, Connector/J entrega las filas de a una a medida que llegan, sin
+	// cargar todo el resultado ni pasar la conexión a sentencias preparadas en el servidor
+	private static final int FETCH_STREAMING_MYSQL = Integer.MIN_VALUE;
+	// Lote JDBC si persistence.xml no define hibernate.jdbc.batch_size
+	private static final int TAMANIO_LOTE_JDBC = 50;
+	
 	public RespuestaEncuestaDAO_IMPL() {
 		super(RespuestaEncuesta.class);
 	}
 
+	@Override
+	public void crearEnLote(List<RespuestaEncuesta> respuestas) {
+		int tamanioLote = tamanioLoteJdbc();
+		enTransaccion(() -> {
+			for (int i = 0; i < respuestas.size(); i++) {
+				em.persist(respuestas.get(i));
+				if ((i + 1) % tamanioLote == 0 || i == respuestas.size() - 1) {
+					// Un lote JDBC por flush; lo ya enviado deja de ocupar el contexto de persistencia
+					em.flush();
+					respuestas.subList(i - i % tamanioLote, i + 1).forEach(em::detach);
+				}
+			}
+		});
+	}
+
+	private boolean esMySql() {
+		Object url = em.getEntityManagerFactory().getProperties().get("hibernate.connection.url");
+		return url != null && url.toString().startsWith("jdbc:mysql:");
+	}
+
+	private int tamanioLoteJdbc() {
+		Object configurado = em.getEntityManagerFactory().getProperties().get("hibernate.jdbc.batch_size");
+		try {
+			int tamanio = configurado != null ? Integer.parseInt(configurado.toString().trim()) : TAMANIO_LOTE_JDBC;
+			return tamanio > 0 ? tamanio : TAMANIO_LOTE_JDBC;
+		} catch (NumberFormatException e) {
+			return TAMANIO_LOTE_JDBC;
+		}
+	}
+
 	@Override
 	public List<RespuestaEncuesta> obtenerNoBorrados() {
 		String jpql = "SELECT r FROM RespuestaEncuesta r WHERE r.fechaEliminacion IS NULL";
@@ -77,4 +128,164 @@ public class RespuestaEncuestaDAO_IMPL extends GenericDAO_IMPL<RespuestaEncuesta
 		List<RespuestaEncuesta> resultados = query.getResultList();
 		return resultados.isEmpty() ? null : resultados.get(0);
 	}
+
+	@Override
+	public List<RespuestaEncuesta> obtenerPorEncuestasYPreguntas(Collection<Long> encuestas, Collection<Long> preguntas) {
+		if (encuestas == null || encuestas.isEmpty() || preguntas == null || preguntas.isEmpty()) {
+			return List.of();
+		}
+		// pregunta y encuesta son EAGER: se traen en la misma consulta y no una por respuesta
+		return em.createQuery(
+			"SELECT r FROM RespuestaEncuesta r JOIN FETCH r.preguntaEncuesta JOIN FETCH r.encuesta " +
+			"WHERE r.encuesta.id IN :encuestas AND r.preguntaEncuesta.id IN :preguntas " +
+			"AND r.fechaEliminacion IS NULL ORDER BY r.id",
+			RespuestaEncuesta.class)
+			.setParameter("encuestas", encuestas)
+			.setParameter("preguntas", preguntas)
+			.getResultList();
+	}
+
+	@Override
+	public List<PreguntaRespuestaCategoriaDTO> filtrarPreguntasRespuestas(Filtros filtros, Collection<Long> encuestas) {
+		List<List<Long>> lotes = ConsultaFiltros.lotes(encuestas);
+		List<PreguntaRespuestaCategoriaDTO> filas = new ArrayList<>();
+		for (List<Long> lote : lotes) {
+			ConsultaFiltros consulta = ConsultaFiltros.desde(filtros, lote);
+			if (consulta.esVacia()) {
+				return List.of();
+			}
+			
+			String jpql = "SELECT new dto.PreguntaRespuestaCategoriaDTO(p.texto, r.valor, p.categoria, e.id, r.id) " +
+						  consulta.getFrom() +
+						  consulta.getWhere() +
+						  "ORDER BY r.id";
+			
+			TypedQuery<PreguntaRespuestaCategoriaDTO> query = em.createQuery(jpql, PreguntaRespuestaCategoriaDTO.class);
+			consulta.aplicarParametros(query);
+			filas.addAll(query.getResultList());
+		}
+		if (lotes.size() > 1) {
+			// Cada lote viene ordenado por respuesta, pero los lotes se reparten por encuesta
+			filas.sort(Comparator.comparing(PreguntaRespuestaCategoriaDTO::getRespuestaId));
+		}
+		return filas;
+	}
+
+	@Override
+	public List<PreguntaRespuestaCategoriaDTO> filtrarPreguntasRespuestasPagina(Filtros filtros, Collection<Long> encuestas,
+			Long despuesEncuesta, Long despuesRespuesta, int limite) {
+		List<PreguntaRespuestaCategoriaDTO> filas = new ArrayList<>();
+		// Los lotes están en orden de encuesta: la página sigue en el lote de la última fila entregada
+		for (List<Long> lote : ConsultaFiltros.lotes(encuestas)) {
+			if (filas.size() >= limite) break;
+			if (lote != null && despuesEncuesta != null && lote.get(lote.size() - 1) < despuesEncuesta) continue;
+			ConsultaFiltros consulta = ConsultaFiltros.desde(filtros, lote);
+			if (consulta.esVacia()) {
+				return List.of();
+			}
+			
+			String jpql = "SELECT new dto.PreguntaRespuestaCategoriaDTO(p.texto, r.valor, p.categoria, e.id, r.id) " +
+						  consulta.getFrom() +
+						  consulta.getWhere() +
+						  (despuesEncuesta != null ? "AND (e.id > :despuesEncuesta OR (e.id = :despuesEncuesta AND r.id > :despuesRespuesta)) " : "") +
+						  "ORDER BY e.id, r.id";
+			
+			TypedQuery<PreguntaRespuestaCategoriaDTO> query = em.createQuery(jpql, PreguntaRespuestaCategoriaDTO.class);
+			consulta.aplicarParametros(query);
+			if (despuesEncuesta != null) {
+				query.setParameter("despuesEncuesta", despuesEncuesta);
+				query.setParameter("despuesRespuesta", despuesRespuesta);
+			}
+			filas.addAll(query.setMaxResults(limite - filas.size()).getResultList());
+		}
+		return filas;
+	}
+
+	@Override
+	public Stream<PreguntaRespuestaCategoriaDTO> recorrerPreguntasRespuestas(Filtros filtros, Collection<Long> encuestas) {
+		List<ConsultaFiltros> consultas = new ArrayList<>();
+		for (List<Long> lote : ConsultaFiltros.lotes(encuestas)) {
+			ConsultaFiltros consulta = ConsultaFiltros.desde(filtros, lote);
+			if (consulta.esVacia()) {
+				return Stream.empty();
+			}
+			consultas.add(consulta);
+		}
+		// Un lote se lee entero y se cierra antes de abrir el siguiente: en MySQL solo puede
+		// haber un resultado en streaming abierto por conexión
+		return consultas.stream().flatMap(this::recorrerLote);
+	}
+
+	private Stream<PreguntaRespuestaCategoriaDTO> recorrerLote(ConsultaFiltros consulta) {
+		String jpql = "SELECT new dto.PreguntaRespuestaCategoriaDTO(p.texto, r.valor, p.categoria, e.id) " +
+					  consulta.getFrom() +
+					  consulta.getWhere() +
+					  "ORDER BY e.id, r.id";
+		
+		TypedQuery<PreguntaRespuestaCategoriaDTO> query = em.createQuery(jpql, PreguntaRespuestaCategoriaDTO.class);
+		consulta.aplicarParametros(query);
+		// Streaming solo para esta consulta (sentencia de solo lectura, hacia adelante)
+		query.setHint("org.hibernate.fetchSize", esMySql() ? FETCH_STREAMING_MYSQL : TAMANIO_FETCH);
+		query.setHint("org.hibernate.readOnly", true);
+		return query.getResultStream();
+	}
+
+	@Override
+	public List<AgregadoRespuestaDTO> agregarPreguntasRespuestas(Filtros filtros, Collection<Long> encuestas) {
+		List<List<Long>> lotes = ConsultaFiltros.lotes(encuestas);
+		// Los lotes no comparten encuestas: las cantidades de cada (pregunta, valor) se suman
+		Map<List<String>, AgregadoRespuestaDTO> agregados = new LinkedHashMap<>();
+		for (List<Long> lote : lotes) {
+			ConsultaFiltros consulta = ConsultaFiltros.desde(filtros, lote);
+			if (consulta.esVacia()) {
+				return List.of();
+			}
+			
+			String jpql = "SELECT new dto.AgregadoRespuestaDTO(p.texto, r.valor, p.categoria, COUNT(r.id), COUNT(DISTINCT e.id)) " +
+						  consulta.getFrom() +
+						  consulta.getWhere() +
+						  "GROUP BY p.texto, r.valor, p.categoria " +
+						  "ORDER BY p.texto, r.valor";
+			
+			TypedQuery<AgregadoRespuestaDTO> query = em.createQuery(jpql, AgregadoRespuestaDTO.class);
+			consulta.aplicarParametros(query);
+			for (AgregadoRespuestaDTO fila : query.getResultList()) {
+				agregados.merge(Arrays.asList(fila.getPregunta(), fila.getRespuesta(), fila.getCategoria()), fila, (a, b) -> {
+					a.setCantidad(a.getCantidad() + b.getCantidad());
+					a.setEncuestasDistintas(a.getEncuestasDistintas() + b.getEncuestasDistintas());
+					return a;
+				});
+			}
+		}
+		List<AgregadoRespuestaDTO> filas = new ArrayList<>(agregados.values());
+		if (lotes.size() > 1) {
+			// Mismo orden que la base: sin distinguir mayúsculas ni acentos, null primero
+			Collator collator = Collator.getInstance(Locale.ROOT);
+			collator.setStrength(Collator.PRIMARY);
+			Comparator<String> texto = Comparator.nullsFirst(collator::compare);
+			filas.sort(Comparator.comparing(AgregadoRespuestaDTO::getPregunta, texto)
+				.thenComparing(AgregadoRespuestaDTO::getRespuesta, texto));
+		}
+		return filas;
+	}
+
+	@Override
+	public List<Long> obtenerEncuestasFiltradas(Filtros filtros, Collection<Long> encuestas) {
+		List<Long> filtradas = new ArrayList<>();
+		for (List<Long> lote : ConsultaFiltros.lotes(encuestas)) {
+			ConsultaFiltros consulta = ConsultaFiltros.desde(filtros, lote);
+			if (consulta.esVacia()) {
+				return List.of();
+			}
+			
+			String jpql = "SELECT DISTINCT e.id " +
+						  consulta.getFrom() +
+						  consulta.getWhere();
+			
+			TypedQuery<Long> query = em.createQuery(jpql, Long.class);
+			consulta.aplicarParametros(query);
+			filtradas.addAll(query.getResultList());
+		}
+		return filtradas;
+	}
 }
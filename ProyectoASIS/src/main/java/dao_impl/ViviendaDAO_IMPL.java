@@ -0,0 +1,49 @@
+package dao_impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import dao_interfaces.I_ViviendaDAO;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.persistence.NoResultException;
+import jakarta.persistence.TypedQuery;
+import model.Vivienda;
+
+@RequestScoped
+public class ViviendaDAO_IMPL extends GenericDAO_IMPL<Vivienda, Long> implements I_ViviendaDAO {
+
+	public ViviendaDAO_IMPL() {
+		super(Vivienda.class);
+	}
+	
+	@Override
+	public Vivienda findByIdExterno(String idExterno) {
+		if (idExterno == null || idExterno.trim().isEmpty()) {
+			return null;
+		}
+		
+		try {
+			TypedQuery<Vivienda> query = em.createQuery(
+				"SELECT v FROM Vivienda v WHERE v.idExterno = :idExterno", Vivienda.class);
+			query.setParameter("idExterno", idExterno.trim());
+			return query.getSingleResult();
+		} catch (NoResultException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public Map<String, Vivienda> findByIdsExternos(Collection<String> idsExternos) {
+		Map<String, Vivienda> viviendas = new HashMap<>();
+		if (idsExternos == null || idsExternos.isEmpty()) {
+			return viviendas;
+		}
+		em.createQuery(
+			"SELECT v FROM Vivienda v WHERE v.idExterno IN :idsExternos ORDER BY v.id", Vivienda.class)
+			.setParameter("idsExternos", idsExternos)
+			.getResultList()
+			.forEach(v -> viviendas.putIfAbsent(v.getIdExterno(), v));
+		return viviendas;
+	}
+}
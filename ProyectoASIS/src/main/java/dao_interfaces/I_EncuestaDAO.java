@@ -1,6 +1,8 @@
 package dao_interfaces;
 
 
+import java.util.Collection;
+import java.util.Map;
 import model.Encuesta;
 
 public interface I_EncuestaDAO extends I_GenericDAO<Encuesta, Long> {
@@ -12,4 +14,10 @@ public interface I_EncuestaDAO extends I_GenericDAO<Encuesta, Long> {
      */
     Encuesta findByIdExterno(String idExterno);
 
+    /**
+     * Busca de una vez (con IN) las encuestas no eliminadas de varios identificadores externos
+     * @return idExterno -> encuesta, solo con los que existen; si hay repetidos, la de menor id
+     */
+    Map<String, Encuesta> findByIdsExternos(Collection<String> idsExternos);
+
 }
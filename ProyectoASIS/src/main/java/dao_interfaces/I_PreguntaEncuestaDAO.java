@@ -1,7 +1,14 @@
 package dao_interfaces;
 
+import java.util.Map;
 import model.PreguntaEncuesta;
 
 public interface I_PreguntaEncuestaDAO extends I_GenericDAO<PreguntaEncuesta, Long> {
     PreguntaEncuesta findByPreguntaCsv(String preguntaCsv);
+
+    /**
+     * Catálogo completo de preguntas en una sola consulta
+     * @return preguntaCsv -> pregunta; si hay repetidas, la de menor id
+     */
+    Map<String, PreguntaEncuesta> obtenerPorPreguntaCsv();
 }
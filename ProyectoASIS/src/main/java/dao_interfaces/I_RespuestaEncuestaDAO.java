@@ -1,6 +1,11 @@
 package dao_interfaces;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+import dto.AgregadoRespuestaDTO;
+import dto.Filtros;
+import dto.PreguntaRespuestaCategoriaDTO;
 import model.RespuestaEncuesta;
 
 public interface I_RespuestaEncuestaDAO extends I_GenericDAO<RespuestaEncuesta, Long>{
@@ -9,4 +14,52 @@ public interface I_RespuestaEncuestaDAO extends I_GenericDAO<RespuestaEncuesta,
     List<RespuestaEncuesta> obtenerRespuestasPorPreguntaCodigo(String preguntaCodigo);
     RespuestaEncuesta obtenerRespuestaPorEncuestaYPregunta(Long encuestaId, Long preguntaId);
     RespuestaEncuesta obtenerRespuestaPorEncuestaYPreguntaCsv(Long encuestaId, String preguntaCsv);
+
+    /**
+     * Persiste todas las respuestas en una transacción (la activa, si la hay), con los
+     * INSERT agrupados en lotes JDBC de hibernate.jdbc.batch_size. Cada lote se envía a la
+     * base y sus respuestas quedan desasociadas del EntityManager, para que no crezca.
+     */
+    void crearEnLote(List<RespuestaEncuesta> respuestas);
+
+    /**
+     * Respuestas no eliminadas de varias encuestas, limitadas a esas preguntas, en una sola consulta (con IN)
+     * @return ordenadas por id
+     */
+    List<RespuestaEncuesta> obtenerPorEncuestasYPreguntas(Collection<Long> encuestas, Collection<Long> preguntas);
+
+    /**
+     * Resuelve todos los criterios de {@link Filtros} en una única consulta (con subconsultas
+     * EXISTS por filtro) y devuelve directamente la proyección de las respuestas que cumplen.
+     * @param encuestas ids de encuesta ya resueltos por las dimensiones (zona, barrio, etc.) y
+     *        los filtros múltiples, o null si ninguno restringe (los filtros múltiples se
+     *        evalúan entonces con EXISTS); si son muchos se hace una consulta por cada lote de ids
+     */
+    List<PreguntaRespuestaCategoriaDTO> filtrarPreguntasRespuestas(Filtros filtros, Collection<Long> encuestas);
+
+    /**
+     * Página de {@link #filtrarPreguntasRespuestas(Filtros, Collection)} ordenada por (encuesta, respuesta),
+     * empezando después de la posición dada (keyset): el costo no crece con el número de página.
+     * @param despuesEncuesta id de encuesta de la última fila ya entregada, o null para la primera página
+     * @param despuesRespuesta id de respuesta de la última fila ya entregada
+     */
+    List<PreguntaRespuestaCategoriaDTO> filtrarPreguntasRespuestasPagina(Filtros filtros, Collection<Long> encuestas,
+            Long despuesEncuesta, Long despuesRespuesta, int limite);
+
+    /**
+     * Mismo resultado que {@link #filtrarPreguntasRespuestas(Filtros, Collection)} como stream sobre un
+     * cursor de la base, sin cargar todas las filas en memoria. Quien lo usa debe cerrarlo.
+     */
+    Stream<PreguntaRespuestaCategoriaDTO> recorrerPreguntasRespuestas(Filtros filtros, Collection<Long> encuestas);
+
+    /**
+     * Mismo alcance que {@link #filtrarPreguntasRespuestas(Filtros, Collection)}, pero agrupado en la base
+     * por (pregunta, valor): devuelve la cantidad de respuestas y de encuestas distintas de cada uno.
+     */
+    List<AgregadoRespuestaDTO> agregarPreguntasRespuestas(Filtros filtros, Collection<Long> encuestas);
+
+    /**
+     * Ids de las encuestas con al menos una respuesta dentro del alcance de los filtros.
+     */
+    List<Long> obtenerEncuestasFiltradas(Filtros filtros, Collection<Long> encuestas);
 }
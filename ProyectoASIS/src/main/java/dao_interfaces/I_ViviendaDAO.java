@@ -0,0 +1,20 @@
+package dao_interfaces;
+
+import java.util.Collection;
+import java.util.Map;
+import model.Vivienda;
+
+public interface I_ViviendaDAO extends I_GenericDAO<Vivienda, Long> {
+
+    /**
+     * Busca una vivienda por su identificador en el CSV
+     * @return la vivienda si existe, null si no existe
+     */
+    Vivienda findByIdExterno(String idExterno);
+
+    /**
+     * Busca de una vez (con IN) las viviendas de varios identificadores del CSV
+     * @return idExterno -> vivienda, solo con los que existen; si hay repetidos, la de menor id
+     */
+    Map<String, Vivienda> findByIdsExternos(Collection<String> idsExternos);
+}
@@ -0,0 +1,78 @@
+package dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import model.TipoCategoria;
+
+@Schema(description = "Conteo de una respuesta (pregunta + valor) dentro del alcance de los filtros")
+public class AgregadoRespuestaDTO {
+
+    @Schema(description = "Texto de la pregunta", example = "16. ¿Tiene alguna cobertura de salud?")
+    private String pregunta;
+
+    @Schema(description = "Valor de la respuesta", example = "Sistema Publico de Salud")
+    private String respuesta;
+
+    @Schema(description = "Categoría de la pregunta", example = "SALUD")
+    private String categoria;
+
+    @Schema(description = "Cantidad de respuestas con este valor", example = "42")
+    private Long cantidad;
+
+    @Schema(description = "Cantidad de encuestas distintas con este valor", example = "40")
+    private Long encuestasDistintas;
+
+    public AgregadoRespuestaDTO() {}
+
+    public AgregadoRespuestaDTO(String pregunta, String respuesta, String categoria, Long cantidad, Long encuestasDistintas) {
+        this.pregunta = pregunta;
+        this.respuesta = respuesta;
+        this.categoria = categoria;
+        this.cantidad = cantidad;
+        this.encuestasDistintas = encuestasDistintas;
+    }
+
+    // Usado por las proyecciones JPQL "SELECT new ..." (la categoría llega como enum)
+    public AgregadoRespuestaDTO(String pregunta, String respuesta, TipoCategoria categoria, Long cantidad, Long encuestasDistintas) {
+        this(pregunta, respuesta, categoria != null ? categoria.name() : null, cantidad, encuestasDistintas);
+    }
+
+    public String getPregunta() {
+        return pregunta;
+    }
+
+    public void setPregunta(String pregunta) {
+        this.pregunta = pregunta;
+    }
+
+    public String getRespuesta() {
+        return respuesta;
+    }
+
+    public void setRespuesta(String respuesta) {
+        this.respuesta = respuesta;
+    }
+
+    public String getCategoria() {
+        return categoria;
+    }
+
+    public void setCategoria(String categoria) {
+        this.categoria = categoria;
+    }
+
+    public Long getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(Long cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public Long getEncuestasDistintas() {
+        return encuestasDistintas;
+    }
+
+    public void setEncuestasDistintas(Long encuestasDistintas) {
+        this.encuestasDistintas = encuestasDistintas;
+    }
+}
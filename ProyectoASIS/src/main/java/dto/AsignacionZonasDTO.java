@@ -0,0 +1,69 @@
+package dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Resultado de asignar viviendas geolocalizadas a zonas y barrios por sus polígonos")
+public class AsignacionZonasDTO {
+
+    @Schema(description = "Viviendas con coordenadas procesadas", example = "69")
+    private int viviendas;
+
+    @Schema(description = "Viviendas ubicadas dentro del polígono de alguna zona", example = "64")
+    private int conZona;
+
+    @Schema(description = "Viviendas con barrio asignado (por polígono del barrio o por su zona)", example = "66")
+    private int conBarrio;
+
+    @Schema(description = "Viviendas cuya zona o barrio cambió", example = "12")
+    private int viviendasModificadas;
+
+    @Schema(description = "Encuestas cuya zona se actualizó", example = "40")
+    private int encuestasActualizadas;
+
+    @Schema(description = "Zonas con un polígono válido en geolocalizacion", example = "8")
+    private int poligonosZona;
+
+    @Schema(description = "Barrios con un polígono válido en geolocalizacion", example = "3")
+    private int poligonosBarrio;
+
+    @Schema(description = "Duración de la asignación en milisegundos", example = "85")
+    private long milisegundos;
+
+    public AsignacionZonasDTO() {}
+
+    public AsignacionZonasDTO(int viviendas, int conZona, int conBarrio, int viviendasModificadas,
+                              int encuestasActualizadas, int poligonosZona, int poligonosBarrio, long milisegundos) {
+        this.viviendas = viviendas;
+        this.conZona = conZona;
+        this.conBarrio = conBarrio;
+        this.viviendasModificadas = viviendasModificadas;
+        this.encuestasActualizadas = encuestasActualizadas;
+        this.poligonosZona = poligonosZona;
+        this.poligonosBarrio = poligonosBarrio;
+        this.milisegundos = milisegundos;
+    }
+
+    public int getViviendas() { return viviendas; }
+    public void setViviendas(int viviendas) { this.viviendas = viviendas; }
+
+    public int getConZona() { return conZona; }
+    public void setConZona(int conZona) { this.conZona = conZona; }
+
+    public int getConBarrio() { return conBarrio; }
+    public void setConBarrio(int conBarrio) { this.conBarrio = conBarrio; }
+
+    public int getViviendasModificadas() { return viviendasModificadas; }
+    public void setViviendasModificadas(int viviendasModificadas) { this.viviendasModificadas = viviendasModificadas; }
+
+    public int getEncuestasActualizadas() { return encuestasActualizadas; }
+    public void setEncuestasActualizadas(int encuestasActualizadas) { this.encuestasActualizadas = encuestasActualizadas; }
+
+    public int getPoligonosZona() { return poligonosZona; }
+    public void setPoligonosZona(int poligonosZona) { this.poligonosZona = poligonosZona; }
+
+    public int getPoligonosBarrio() { return poligonosBarrio; }
+    public void setPoligonosBarrio(int poligonosBarrio) { this.poligonosBarrio = poligonosBarrio; }
+
+    public long getMilisegundos() { return milisegundos; }
+    public void setMilisegundos(long milisegundos) { this.milisegundos = milisegundos; }
+}
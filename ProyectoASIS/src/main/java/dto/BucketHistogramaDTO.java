@@ -0,0 +1,33 @@
+package dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Intervalo [desde, hasta) de un histograma con su cantidad de casos")
+public class BucketHistogramaDTO {
+
+    @Schema(description = "Límite inferior (incluido)", example = "20.0")
+    private double desde;
+
+    @Schema(description = "Límite superior (excluido)", example = "30.0")
+    private double hasta;
+
+    @Schema(description = "Cantidad de valores en el intervalo", example = "14")
+    private long cantidad;
+
+    public BucketHistogramaDTO() {}
+
+    public BucketHistogramaDTO(double desde, double hasta, long cantidad) {
+        this.desde = desde;
+        this.hasta = hasta;
+        this.cantidad = cantidad;
+    }
+
+    public double getDesde() { return desde; }
+    public void setDesde(double desde) { this.desde = desde; }
+
+    public double getHasta() { return hasta; }
+    public void setHasta(double hasta) { this.hasta = hasta; }
+
+    public long getCantidad() { return cantidad; }
+    public void setCantidad(long cantidad) { this.cantidad = cantidad; }
+}
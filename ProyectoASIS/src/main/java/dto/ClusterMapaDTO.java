@@ -0,0 +1,57 @@
+package dto;
+
+import java.util.Map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Grupo de viviendas cercanas para mostrar en el mapa como un único marcador")
+public class ClusterMapaDTO {
+
+    @Schema(description = "Latitud del centroide (ponderado por encuestas)", example = "-34.9215")
+    private double latitud;
+
+    @Schema(description = "Longitud del centroide (ponderado por encuestas)", example = "-57.9545")
+    private double longitud;
+
+    @Schema(description = "Cantidad de encuestas (personas) del grupo", example = "42")
+    private long cantidad;
+
+    @Schema(description = "Cantidad de viviendas del grupo", example = "12")
+    private int viviendas;
+
+    @Schema(description = "Identificador de la vivienda si el grupo tiene una sola", example = "3f2a9c10")
+    private String viviendaId;
+
+    @Schema(description = "Encuestas por respuesta a la pregunta de desglose (solo si se pidió)")
+    private Map<String, Long> desglose;
+
+    public ClusterMapaDTO() {}
+
+    public ClusterMapaDTO(double latitud, double longitud, long cantidad, int viviendas, String viviendaId,
+                          Map<String, Long> desglose) {
+        this.latitud = latitud;
+        this.longitud = longitud;
+        this.cantidad = cantidad;
+        this.viviendas = viviendas;
+        this.viviendaId = viviendaId;
+        this.desglose = desglose;
+    }
+
+    public double getLatitud() { return latitud; }
+    public void setLatitud(double latitud) { this.latitud = latitud; }
+
+    public double getLongitud() { return longitud; }
+    public void setLongitud(double longitud) { this.longitud = longitud; }
+
+    public long getCantidad() { return cantidad; }
+    public void setCantidad(long cantidad) { this.cantidad = cantidad; }
+
+    public int getViviendas() { return viviendas; }
+    public void setViviendas(int viviendas) { this.viviendas = viviendas; }
+
+    public String getViviendaId() { return viviendaId; }
+    public void setViviendaId(String viviendaId) { this.viviendaId = viviendaId; }
+
+    public Map<String, Long> getDesglose() { return desglose; }
+    public void setDesglose(Map<String, Long> desglose) { this.desglose = desglose; }
+}
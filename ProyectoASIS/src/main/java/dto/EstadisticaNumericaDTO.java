@@ -0,0 +1,78 @@
+package dto;
+
+import java.util.List;
+import java.util.Map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Estadísticas descriptivas e histograma de una pregunta numérica")
+public class EstadisticaNumericaDTO {
+
+    @Schema(description = "Código CSV de la pregunta", example = "8_3_Edad")
+    private String pregunta;
+
+    @Schema(description = "Cantidad de respuestas numéricas consideradas", example = "130")
+    private long cantidad;
+
+    @Schema(description = "Valor mínimo (null si no hay respuestas)", example = "1.0")
+    private Double minimo;
+
+    @Schema(description = "Valor máximo (null si no hay respuestas)", example = "87.0")
+    private Double maximo;
+
+    @Schema(description = "Media aritmética", example = "34.2")
+    private Double media;
+
+    @Schema(description = "Desvío estándar muestral (null con menos de dos respuestas)", example = "19.8")
+    private Double desvio;
+
+    @Schema(description = "Percentiles pedidos, por nombre (p50 = mediana)", example = "{\"p25\": 18.0, \"p50\": 31.0}")
+    private Map<String, Double> percentiles;
+
+    @Schema(description = "Error relativo máximo de los percentiles", example = "0.01")
+    private double errorRelativoPercentiles;
+
+    @Schema(description = "Ancho de los intervalos del histograma", example = "10.0")
+    private Double anchoHistograma;
+
+    @Schema(description = "Histograma: intervalos contiguos entre el mínimo y el máximo")
+    private List<BucketHistogramaDTO> histograma;
+
+    @Schema(description = "true si el histograma se derivó del sketch de cuantiles (ancho automático) y sus cantidades son aproximadas")
+    private boolean histogramaAproximado;
+
+    public EstadisticaNumericaDTO() {}
+
+    public String getPregunta() { return pregunta; }
+    public void setPregunta(String pregunta) { this.pregunta = pregunta; }
+
+    public long getCantidad() { return cantidad; }
+    public void setCantidad(long cantidad) { this.cantidad = cantidad; }
+
+    public Double getMinimo() { return minimo; }
+    public void setMinimo(Double minimo) { this.minimo = minimo; }
+
+    public Double getMaximo() { return maximo; }
+    public void setMaximo(Double maximo) { this.maximo = maximo; }
+
+    public Double getMedia() { return media; }
+    public void setMedia(Double media) { this.media = media; }
+
+    public Double getDesvio() { return desvio; }
+    public void setDesvio(Double desvio) { this.desvio = desvio; }
+
+    public Map<String, Double> getPercentiles() { return percentiles; }
+    public void setPercentiles(Map<String, Double> percentiles) { this.percentiles = percentiles; }
+
+    public double getErrorRelativoPercentiles() { return errorRelativoPercentiles; }
+    public void setErrorRelativoPercentiles(double errorRelativoPercentiles) { this.errorRelativoPercentiles = errorRelativoPercentiles; }
+
+    public Double getAnchoHistograma() { return anchoHistograma; }
+    public void setAnchoHistograma(Double anchoHistograma) { this.anchoHistograma = anchoHistograma; }
+
+    public List<BucketHistogramaDTO> getHistograma() { return histograma; }
+    public void setHistograma(List<BucketHistogramaDTO> histograma) { this.histograma = histograma; }
+
+    public boolean isHistogramaAproximado() { return histogramaAproximado; }
+    public void setHistogramaAproximado(boolean histogramaAproximado) { this.histogramaAproximado = histogramaAproximado; }
+}
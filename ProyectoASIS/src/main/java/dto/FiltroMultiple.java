@@ -4,6 +4,9 @@ package dto;
  * DTO para manejar filtros múltiples con categoría, pregunta y respuesta
  */
 public class FiltroMultiple {
+    // Comodín que acepta cualquier categoría, pregunta o respuesta
+    public static final String TODAS = "TODAS";
+
     private String categoria;
     private String pregunta;
     private String respuesta;
@@ -24,4 +27,13 @@ public class FiltroMultiple {
     
     public String getRespuesta() { return respuesta; }
     public void setRespuesta(String respuesta) { this.respuesta = respuesta; }
+
+    /**
+     * Un filtro es válido si tiene categoría, pregunta y respuesta no vacías
+     */
+    public boolean esValido() {
+        return categoria != null && !categoria.trim().isEmpty() &&
+               pregunta != null && !pregunta.trim().isEmpty() &&
+               respuesta != null && !respuesta.trim().isEmpty();
+    }
 }
@@ -0,0 +1,35 @@
+package dto;
+
+/**
+ * DTO para filtrar encuestas por el rango de una respuesta numérica
+ * (preguntas con tipoRespuesta NUMERO)
+ */
+public class FiltroNumerico {
+    private String pregunta;
+    private Double desde;
+    private Double hasta;
+
+    public FiltroNumerico() {}
+
+    public FiltroNumerico(String pregunta, Double desde, Double hasta) {
+        this.pregunta = pregunta;
+        this.desde = desde;
+        this.hasta = hasta;
+    }
+
+    public String getPregunta() { return pregunta; }
+    public void setPregunta(String pregunta) { this.pregunta = pregunta; }
+
+    public Double getDesde() { return desde; }
+    public void setDesde(Double desde) { this.desde = desde; }
+
+    public Double getHasta() { return hasta; }
+    public void setHasta(Double hasta) { this.hasta = hasta; }
+
+    /**
+     * Un filtro es válido si nombra una pregunta y al menos uno de los extremos
+     */
+    public boolean esValido() {
+        return pregunta != null && !pregunta.trim().isEmpty() && (desde != null || hasta != null);
+    }
+}
@@ -68,4 +68,9 @@ public class Filtros {
     private List<FiltroMultiple> filtrosMultiples;
     public List<FiltroMultiple> getFiltrosMultiples() { return filtrosMultiples; }
     public void setFiltrosMultiples(List<FiltroMultiple> filtrosMultiples) { this.filtrosMultiples = filtrosMultiples; }
+
+    // Rangos sobre respuestas numéricas (además de edadDesde/edadHasta)
+    private List<FiltroNumerico> filtrosNumericos;
+    public List<FiltroNumerico> getFiltrosNumericos() { return filtrosNumericos; }
+    public void setFiltrosNumericos(List<FiltroNumerico> filtrosNumericos) { this.filtrosNumericos = filtrosNumericos; }
 }
@@ -0,0 +1,56 @@
+package dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Mapa de calor de un indicador: grillas de densidad de resolución fija por tile")
+public class MapaCalorDTO {
+
+    @Schema(description = "Código CSV de la pregunta del indicador", example = "38_26_Tiene_acceso_a")
+    private String pregunta;
+
+    @Schema(description = "Respuesta que cuenta para el indicador; null = cualquier respuesta", example = "No")
+    private String valor;
+
+    @Schema(description = "Zoom de los tiles", example = "13")
+    private int zoom;
+
+    @Schema(description = "Celdas por lado de cada tile", example = "64")
+    private int resolucion;
+
+    @Schema(description = "Mayor conteo de una celda entre los tiles devueltos (para normalizar la escala)", example = "6")
+    private int maximo;
+
+    @Schema(description = "Tiles del bbox con al menos una celda no vacía")
+    private List<TeselaCalorDTO> teselas;
+
+    public MapaCalorDTO() {}
+
+    public MapaCalorDTO(String pregunta, String valor, int zoom, int resolucion, int maximo, List<TeselaCalorDTO> teselas) {
+        this.pregunta = pregunta;
+        this.valor = valor;
+        this.zoom = zoom;
+        this.resolucion = resolucion;
+        this.maximo = maximo;
+        this.teselas = teselas;
+    }
+
+    public String getPregunta() { return pregunta; }
+    public void setPregunta(String pregunta) { this.pregunta = pregunta; }
+
+    public String getValor() { return valor; }
+    public void setValor(String valor) { this.valor = valor; }
+
+    public int getZoom() { return zoom; }
+    public void setZoom(int zoom) { this.zoom = zoom; }
+
+    public int getResolucion() { return resolucion; }
+    public void setResolucion(int resolucion) { this.resolucion = resolucion; }
+
+    public int getMaximo() { return maximo; }
+    public void setMaximo(int maximo) { this.maximo = maximo; }
+
+    public List<TeselaCalorDTO> getTeselas() { return teselas; }
+    public void setTeselas(List<TeselaCalorDTO> teselas) { this.teselas = teselas; }
+}
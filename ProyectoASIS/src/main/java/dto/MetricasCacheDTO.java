@@ -0,0 +1,75 @@
+package dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Métricas de la caché de resultados de filtros y agregados")
+public class MetricasCacheDTO {
+
+    @Schema(description = "Consultas respondidas desde la caché", example = "120")
+    private long aciertos;
+
+    @Schema(description = "Consultas que tuvieron que calcularse", example = "15")
+    private long fallos;
+
+    @Schema(description = "Entradas desalojadas por falta de espacio (LRU)", example = "3")
+    private long desalojos;
+
+    @Schema(description = "Entradas descartadas por cambio de versión de los datos", example = "8")
+    private long invalidaciones;
+
+    @Schema(description = "Entradas vigentes", example = "12")
+    private int entradas;
+
+    @Schema(description = "Memoria estimada ocupada por las entradas, en bytes", example = "524288")
+    private long bytesUsados;
+
+    @Schema(description = "Memoria máxima estimada de la caché, en bytes", example = "67108864")
+    private long bytesMaximos;
+
+    @Schema(description = "Versión actual de los datos", example = "4")
+    private long versionDatos;
+
+    public MetricasCacheDTO() {}
+
+    public MetricasCacheDTO(long aciertos, long fallos, long desalojos, long invalidaciones,
+                            int entradas, long bytesUsados, long bytesMaximos, long versionDatos) {
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.desalojos = desalojos;
+        this.invalidaciones = invalidaciones;
+        this.entradas = entradas;
+        this.bytesUsados = bytesUsados;
+        this.bytesMaximos = bytesMaximos;
+        this.versionDatos = versionDatos;
+    }
+
+    @Schema(description = "Proporción de aciertos sobre el total de consultas", example = "0.89")
+    public double getTasaAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : (double) aciertos / total;
+    }
+
+    public long getAciertos() { return aciertos; }
+    public void setAciertos(long aciertos) { this.aciertos = aciertos; }
+
+    public long getFallos() { return fallos; }
+    public void setFallos(long fallos) { this.fallos = fallos; }
+
+    public long getDesalojos() { return desalojos; }
+    public void setDesalojos(long desalojos) { this.desalojos = desalojos; }
+
+    public long getInvalidaciones() { return invalidaciones; }
+    public void setInvalidaciones(long invalidaciones) { this.invalidaciones = invalidaciones; }
+
+    public int getEntradas() { return entradas; }
+    public void setEntradas(int entradas) { this.entradas = entradas; }
+
+    public long getBytesUsados() { return bytesUsados; }
+    public void setBytesUsados(long bytesUsados) { this.bytesUsados = bytesUsados; }
+
+    public long getBytesMaximos() { return bytesMaximos; }
+    public void setBytesMaximos(long bytesMaximos) { this.bytesMaximos = bytesMaximos; }
+
+    public long getVersionDatos() { return versionDatos; }
+    public void setVersionDatos(long versionDatos) { this.versionDatos = versionDatos; }
+}
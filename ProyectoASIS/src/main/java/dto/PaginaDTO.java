@@ -0,0 +1,35 @@
+package dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Página de resultados con cursor de continuación")
+public class PaginaDTO<T> {
+
+    @Schema(description = "Elementos de la página")
+    private List<T> elementos;
+
+    @Schema(description = "Cursor opaco para pedir la página siguiente (null si no hay más)", example = "MToxMjoxNTM6YWJj")
+    private String siguiente;
+
+    @Schema(description = "Indica si quedan elementos después de esta página", example = "true")
+    private boolean hayMas;
+
+    public PaginaDTO() {}
+
+    public PaginaDTO(List<T> elementos, String siguiente) {
+        this.elementos = elementos;
+        this.siguiente = siguiente;
+        this.hayMas = siguiente != null;
+    }
+
+    public List<T> getElementos() { return elementos; }
+    public void setElementos(List<T> elementos) { this.elementos = elementos; }
+
+    public String getSiguiente() { return siguiente; }
+    public void setSiguiente(String siguiente) { this.siguiente = siguiente; }
+
+    public boolean isHayMas() { return hayMas; }
+    public void setHayMas(boolean hayMas) { this.hayMas = hayMas; }
+}
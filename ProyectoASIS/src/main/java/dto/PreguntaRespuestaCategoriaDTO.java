@@ -1,10 +1,16 @@
 package dto;
 
+import jakarta.json.bind.annotation.JsonbTransient;
+import model.TipoCategoria;
+
 public class PreguntaRespuestaCategoriaDTO {
     private String pregunta;
     private String respuesta;
     private String categoria;
     private Long encuestaId;
+    // Solo para armar el cursor de paginación; no se serializa
+    @JsonbTransient
+    private Long respuestaId;
 
     public PreguntaRespuestaCategoriaDTO() {}
 
@@ -21,6 +27,17 @@ public class PreguntaRespuestaCategoriaDTO {
         this.encuestaId = encuestaId;
     }
 
+    // Usado por las proyecciones JPQL "SELECT new ..." (la categoría llega como enum)
+    public PreguntaRespuestaCategoriaDTO(String pregunta, String respuesta, TipoCategoria categoria, Long encuestaId) {
+        this(pregunta, respuesta, categoria != null ? categoria.name() : null, encuestaId);
+    }
+
+    // Proyección paginada: incluye el id de la respuesta para el cursor
+    public PreguntaRespuestaCategoriaDTO(String pregunta, String respuesta, TipoCategoria categoria, Long encuestaId, Long respuestaId) {
+        this(pregunta, respuesta, categoria, encuestaId);
+        this.respuestaId = respuestaId;
+    }
+
     public String getPregunta() {
         return pregunta;
     }
@@ -52,4 +69,13 @@ public class PreguntaRespuestaCategoriaDTO {
     public void setEncuestaId(Long encuestaId) {
         this.encuestaId = encuestaId;
     }
+
+    @JsonbTransient
+    public Long getRespuestaId() {
+        return respuestaId;
+    }
+
+    public void setRespuestaId(Long respuestaId) {
+        this.respuestaId = respuestaId;
+    }
 }
@@ -0,0 +1,57 @@
+package dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Tabla de contingencia entre las respuestas de dos preguntas")
+public class TablaCruzadaDTO {
+
+    @Schema(description = "Código CSV de la pregunta de las filas", example = "22_15_Tiene_alguna_d")
+    private String preguntaFilas;
+
+    @Schema(description = "Código CSV de la pregunta de las columnas", example = "13_7_Para_mayores_de")
+    private String preguntaColumnas;
+
+    @Schema(description = "Valores de respuesta de la pregunta de las filas")
+    private List<String> filas;
+
+    @Schema(description = "Valores de respuesta de la pregunta de las columnas")
+    private List<String> columnas;
+
+    @Schema(description = "Conteos: conteos[i][j] = casos con la respuesta filas[i] y columnas[j]")
+    private List<List<Long>> conteos;
+
+    @Schema(description = "Total de casos contados", example = "120")
+    private long total;
+
+    public TablaCruzadaDTO() {}
+
+    public TablaCruzadaDTO(String preguntaFilas, String preguntaColumnas, List<String> filas, List<String> columnas,
+                           List<List<Long>> conteos, long total) {
+        this.preguntaFilas = preguntaFilas;
+        this.preguntaColumnas = preguntaColumnas;
+        this.filas = filas;
+        this.columnas = columnas;
+        this.conteos = conteos;
+        this.total = total;
+    }
+
+    public String getPreguntaFilas() { return preguntaFilas; }
+    public void setPreguntaFilas(String preguntaFilas) { this.preguntaFilas = preguntaFilas; }
+
+    public String getPreguntaColumnas() { return preguntaColumnas; }
+    public void setPreguntaColumnas(String preguntaColumnas) { this.preguntaColumnas = preguntaColumnas; }
+
+    public List<String> getFilas() { return filas; }
+    public void setFilas(List<String> filas) { this.filas = filas; }
+
+    public List<String> getColumnas() { return columnas; }
+    public void setColumnas(List<String> columnas) { this.columnas = columnas; }
+
+    public List<List<Long>> getConteos() { return conteos; }
+    public void setConteos(List<List<Long>> conteos) { this.conteos = conteos; }
+
+    public long getTotal() { return total; }
+    public void setTotal(long total) { this.total = total; }
+}
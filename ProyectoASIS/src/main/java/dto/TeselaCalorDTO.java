@@ -0,0 +1,42 @@
+package dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Grilla de densidad de un tile del mapa (esquema XYZ de Web Mercator)")
+public class TeselaCalorDTO {
+
+    @Schema(description = "Columna del tile en el zoom pedido", example = "2780")
+    private int x;
+
+    @Schema(description = "Fila del tile en el zoom pedido", example = "4946")
+    private int y;
+
+    @Schema(description = "Suma de los conteos de todas las celdas del tile", example = "37")
+    private long total;
+
+    @Schema(description = "Celdas no vacías como pares planos [índice, conteo, índice, conteo, ...], " +
+                          "con índice = fila * resolucion + columna (fila 0 al norte, columna 0 al oeste)",
+            example = "[130, 2, 131, 1, 1987, 4]")
+    private int[] celdas;
+
+    public TeselaCalorDTO() {}
+
+    public TeselaCalorDTO(int x, int y, long total, int[] celdas) {
+        this.x = x;
+        this.y = y;
+        this.total = total;
+        this.celdas = celdas;
+    }
+
+    public int getX() { return x; }
+    public void setX(int x) { this.x = x; }
+
+    public int getY() { return y; }
+    public void setY(int y) { this.y = y; }
+
+    public long getTotal() { return total; }
+    public void setTotal(long total) { this.total = total; }
+
+    public int[] getCeldas() { return celdas; }
+    public void setCeldas(int[] celdas) { this.celdas = celdas; }
+}
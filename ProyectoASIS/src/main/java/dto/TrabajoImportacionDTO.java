@@ -0,0 +1,112 @@
+package dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Estado y avance de una importación de CSV en segundo plano")
+public class TrabajoImportacionDTO {
+
+    @Schema(description = "Identificador del trabajo", example = "3")
+    private long id;
+
+    @Schema(description = "Nombre del archivo subido", example = "form-1.csv")
+    private String archivo;
+
+    @Schema(description = "EN_COLA, EN_CURSO, TERMINADO, CANCELADO o ERROR", example = "EN_CURSO")
+    private String estado;
+
+    @Schema(description = "true: un error o la cancelación deshacen todo el archivo; false: se conservan los lotes confirmados", example = "true")
+    private boolean todoONada;
+
+    @Schema(description = "Filas del CSV ya parseadas (el lector va adelantado a la base)", example = "1000")
+    private long filasParseadas;
+
+    @Schema(description = "Filas del CSV ya procesadas por la importación", example = "600")
+    private long filasProcesadas;
+
+    @Schema(description = "Filas procesadas iguales a las de la última importación, que no se volvieron a escribir", example = "570")
+    private long filasSinCambios;
+
+    @Schema(description = "Respuestas enviadas a la base: agregadas, modificadas o eliminadas (en modo todo o nada se confirman al final)", example = "26500")
+    private long respuestasEscritas;
+
+    @Schema(description = "Bytes del archivo leídos", example = "560000")
+    private long bytesLeidos;
+
+    @Schema(description = "Tamaño del archivo en bytes", example = "982130")
+    private long bytesTotales;
+
+    @Schema(description = "Segundos desde que empezó la importación (0 si está en cola)", example = "2.4")
+    private double segundos;
+
+    @Schema(description = "Filas procesadas por segundo desde que empezó", example = "250.0")
+    private double filasPorSegundo;
+
+    @Schema(description = "Segundos estimados para terminar; null si no está en curso o todavía no hay con qué estimar", example = "2")
+    private Long segundosRestantes;
+
+    @Schema(description = "Mensaje del error, si terminó con ERROR")
+    private String error;
+
+    public TrabajoImportacionDTO() {}
+
+    public TrabajoImportacionDTO(long id, String archivo, String estado, boolean todoONada, long filasParseadas,
+                                 long filasProcesadas, long filasSinCambios, long respuestasEscritas, long bytesLeidos, long bytesTotales, double segundos,
+                                 double filasPorSegundo, Long segundosRestantes, String error) {
+        this.id = id;
+        this.archivo = archivo;
+        this.estado = estado;
+        this.todoONada = todoONada;
+        this.filasParseadas = filasParseadas;
+        this.filasProcesadas = filasProcesadas;
+        this.filasSinCambios = filasSinCambios;
+        this.respuestasEscritas = respuestasEscritas;
+        this.bytesLeidos = bytesLeidos;
+        this.bytesTotales = bytesTotales;
+        this.segundos = segundos;
+        this.filasPorSegundo = filasPorSegundo;
+        this.segundosRestantes = segundosRestantes;
+        this.error = error;
+    }
+
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    public String getArchivo() { return archivo; }
+    public void setArchivo(String archivo) { this.archivo = archivo; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public boolean isTodoONada() { return todoONada; }
+    public void setTodoONada(boolean todoONada) { this.todoONada = todoONada; }
+
+    public long getFilasParseadas() { return filasParseadas; }
+    public void setFilasParseadas(long filasParseadas) { this.filasParseadas = filasParseadas; }
+
+    public long getFilasProcesadas() { return filasProcesadas; }
+    public void setFilasProcesadas(long filasProcesadas) { this.filasProcesadas = filasProcesadas; }
+
+    public long getFilasSinCambios() { return filasSinCambios; }
+    public void setFilasSinCambios(long filasSinCambios) { this.filasSinCambios = filasSinCambios; }
+
+    public long getRespuestasEscritas() { return respuestasEscritas; }
+    public void setRespuestasEscritas(long respuestasEscritas) { this.respuestasEscritas = respuestasEscritas; }
+
+    public long getBytesLeidos() { return bytesLeidos; }
+    public void setBytesLeidos(long bytesLeidos) { this.bytesLeidos = bytesLeidos; }
+
+    public long getBytesTotales() { return bytesTotales; }
+    public void setBytesTotales(long bytesTotales) { this.bytesTotales = bytesTotales; }
+
+    public double getSegundos() { return segundos; }
+    public void setSegundos(double segundos) { this.segundos = segundos; }
+
+    public double getFilasPorSegundo() { return filasPorSegundo; }
+    public void setFilasPorSegundo(double filasPorSegundo) { this.filasPorSegundo = filasPorSegundo; }
+
+    public Long getSegundosRestantes() { return segundosRestantes; }
+    public void setSegundosRestantes(Long segundosRestantes) { this.segundosRestantes = segundosRestantes; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
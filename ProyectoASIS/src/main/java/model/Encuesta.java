@@ -4,12 +4,14 @@ import java.util.Date;
 import java.util.List;
 
 import dao_interfaces.EliminableLogico;
+import jakarta.json.bind.annotation.JsonbTransient;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
@@ -22,7 +24,10 @@ import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 
 @Entity
-@Table(name = "ENCUESTAS")
+@Table(name = "ENCUESTAS", indexes = {
+	// Personas de una vivienda: búsqueda directa por la clave foránea
+	@Index(name = "idx_encuesta_vivienda", columnList = "vivienda_id")
+})
 public class Encuesta implements EliminableLogico{
 
 	@Id
@@ -36,6 +41,14 @@ public class Encuesta implements EliminableLogico{
     @Column(name = "id_externo", length = 255)
     private String idExterno; // Campo para almacenar el identificador del CSV
     
+    // SHA-256 de la última fila importada para esta encuesta, por archivo: una fila con el
+    // mismo hash no se vuelve a escribir al reimportar
+    @Column(name = "hash_fila_vivienda", length = 64)
+    private String hashFilaVivienda;
+    
+    @Column(name = "hash_fila_persona", length = 64)
+    private String hashFilaPersona;
+    
     @Column(name = "fecha_creacion", nullable = false, updatable = false, columnDefinition = "TIMESTAMP(0)")
 	private LocalDateTime fechaCreacion;
 	
@@ -53,6 +66,11 @@ public class Encuesta implements EliminableLogico{
     @JoinColumn(name = "jornada_id")
     private Jornada jornada;
     
+    // Vivienda (hogar) a la que pertenece la persona encuestada
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "vivienda_id")
+    private Vivienda vivienda;
+    
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "persona_encuesta", joinColumns = @JoinColumn(name = "persona_id"), inverseJoinColumns = @JoinColumn (name = "encuesta_id"))
     private List<PersonaEncuestada> personasEncuestadas;
@@ -107,6 +125,24 @@ public class Encuesta implements EliminableLogico{
 		this.idExterno = idExterno;
 	}
 
+	@JsonbTransient
+	public String getHashFilaVivienda() {
+		return hashFilaVivienda;
+	}
+
+	public void setHashFilaVivienda(String hashFilaVivienda) {
+		this.hashFilaVivienda = hashFilaVivienda;
+	}
+
+	@JsonbTransient
+	public String getHashFilaPersona() {
+		return hashFilaPersona;
+	}
+
+	public void setHashFilaPersona(String hashFilaPersona) {
+		this.hashFilaPersona = hashFilaPersona;
+	}
+
 	public Zona getZona() {
 		return zona;
 	}
@@ -115,6 +151,20 @@ public class Encuesta implements EliminableLogico{
 		this.zona = zona;
 	}
 
+	@JsonbTransient
+	public Vivienda getVivienda() {
+		return vivienda;
+	}
+
+	public void setVivienda(Vivienda vivienda) {
+		this.vivienda = vivienda;
+	}
+
+	// Solo el id: serializar la vivienda completa inicializaría el proxy perezoso
+	public Long getViviendaId() {
+		return vivienda != null ? vivienda.getId() : null;
+	}
+
 	public Jornada getJornada() {
 		return jornada;
 	}
@@ -0,0 +1,46 @@
+package model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Estado persistente de las migraciones de datos que corren al iniciar la aplicación:
+ * un valor numérico por migración (por ejemplo, hasta qué id ya se procesó).
+ */
+@Entity
+@Table(name = "ESTADO_MIGRACIONES")
+public class EstadoMigracion {
+
+	@Id
+	@Column(name = "migracion", length = 100)
+	private String migracion;
+
+	@Column(name = "valor", nullable = false)
+	private Long valor;
+
+	public EstadoMigracion() {
+	}
+
+	public EstadoMigracion(String migracion, Long valor) {
+		this.migracion = migracion;
+		this.valor = valor;
+	}
+
+	public String getMigracion() {
+		return migracion;
+	}
+
+	public void setMigracion(String migracion) {
+		this.migracion = migracion;
+	}
+
+	public Long getValor() {
+		return valor;
+	}
+
+	public void setValor(Long valor) {
+		this.valor = valor;
+	}
+}
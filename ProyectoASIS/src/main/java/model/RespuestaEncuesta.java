@@ -1,21 +1,70 @@
 package model;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import jakarta.json.bind.annotation.JsonbTransient;
 import dao_interfaces.EliminableLogico;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "RESPUESTAS_ENCUESTA")
+@Table(name = "RESPUESTAS_ENCUESTA", indexes = {
+	// Los filtros por rango (edad, etc.) se resuelven como range scans por pregunta
+	@Index(name = "idx_respuesta_pregunta_numero", columnList = "preguntaEncuesta_id, valor_numerico"),
+	@Index(name = "idx_respuesta_pregunta_fecha", columnList = "preguntaEncuesta_id, valor_fecha"),
+	@Index(name = "idx_respuesta_pregunta_opcion", columnList = "preguntaEncuesta_id, valor_opcion")
+})
 public class RespuestaEncuesta implements EliminableLogico{
 	
+	// Número al inicio del texto: "25", "-34.913179", "2 (dos)", "1,5"
+	private static final Pattern PATRON_NUMERO = Pattern.compile("^\\s*(-?\\d+(?:[.,]\\d+)?)(?:\\s|\\(|$)");
+	private static final DateTimeFormatter FECHA_CSV = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+	private static final int LARGO_OPCION = 255;
+	
+	// Ids reservados por viaje a la tabla de generadores
+	public static final int IDS_POR_RESERVA = 500;
+	public static final String TABLA_GENERADOR = "generador_ids";
+	public static final String SEGMENTO_GENERADOR = "respuestas_encuesta";
+	
+	// Generador por tabla (MySQL no tiene secuencias) con reserva de ids: a diferencia de
+	// IDENTITY, Hibernate no necesita un INSERT por fila para conocer el id y puede
+	// agrupar los INSERT en lotes JDBC (hibernate.jdbc.batch_size)
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "idsRespuestasEncuesta")
+	@TableGenerator(name = "idsRespuestasEncuesta", table = TABLA_GENERADOR,
+		pkColumnName = "segmento", valueColumnName = "proximo_valor",
+		pkColumnValue = SEGMENTO_GENERADOR, allocationSize = IDS_POR_RESERVA)
 	private Long id;
 	
 	@Column(name = "valor_respuesta", columnDefinition = "TEXT")
 	private String valor;
 	
+	// Valores tipados según PreguntaEncuesta.tipoRespuesta; se derivan de "valor" al guardar
+	@Column(name = "valor_numerico")
+	private Double valorNumerico;
+	
+	@Column(name = "valor_fecha")
+	private LocalDate valorFecha;
+	
+	@Column(name = "valor_opcion", length = LARGO_OPCION)
+	private String valorOpcion;
+	
+	// Valor y tipo con los que se calcularon los valores tipados: si no cambiaron, no se
+	// vuelven a interpretar al guardar (la importación los calcula antes, en paralelo)
+	@Transient
+	private boolean tipado;
+	
+	@Transient
+	private String valorTipado;
+	
+	@Transient
+	private TipoRespuesta tipoTipado;
+	
 	@Column(name = "fecha_creacion", nullable = false, updatable = false, columnDefinition = "TIMESTAMP(0)")
 	private LocalDateTime fechaCreacion;
 	
@@ -49,13 +98,55 @@ public class RespuestaEncuesta implements EliminableLogico{
 	protected void onCreate() {
 		this.fechaCreacion = LocalDateTime.now();
 		this.fechaEditado = LocalDateTime.now();
+		actualizarValoresTipados();
 	}
 	
 	@PreUpdate
     protected void onUpdate() {
         this.fechaEditado = LocalDateTime.now();
+        actualizarValoresTipados();
     }
 
+	/**
+	 * Recalcula las columnas tipadas a partir del valor textual y del tipo de la pregunta.
+	 * Los valores que no se pueden interpretar quedan en null.
+	 */
+	public void actualizarValoresTipados() {
+		TipoRespuesta tipo = preguntaEncuesta != null ? preguntaEncuesta.getTipoRespuesta() : null;
+		if (tipado && tipo == tipoTipado && Objects.equals(valor, valorTipado)) {
+			return;
+		}
+		this.valorNumerico = tipo == TipoRespuesta.NUMERO ? aNumero(valor) : null;
+		this.valorFecha = tipo == TipoRespuesta.FECHA ? aFecha(valor) : null;
+		this.valorOpcion = tipo == TipoRespuesta.OPCION_MULTIPLE ? aOpcion(valor) : null;
+		this.tipado = true;
+		this.valorTipado = valor;
+		this.tipoTipado = tipo;
+	}
+
+	public static Double aNumero(String valor) {
+		if (valor == null) return null;
+		Matcher m = PATRON_NUMERO.matcher(valor);
+		if (!m.find()) return null;
+		return Double.valueOf(m.group(1).replace(',', '.'));
+	}
+
+	public static LocalDate aFecha(String valor) {
+		if (valor == null || valor.isBlank()) return null;
+		String texto = valor.trim();
+		try {
+			return texto.contains("/") ? LocalDate.parse(texto, FECHA_CSV) : LocalDate.parse(texto);
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	public static String aOpcion(String valor) {
+		if (valor == null || valor.isBlank()) return null;
+		String texto = valor.trim();
+		return texto.length() > LARGO_OPCION ? texto.substring(0, LARGO_OPCION) : texto;
+	}
+
 	public Long getId() {
 		return id;
 	}
@@ -89,6 +180,18 @@ public class RespuestaEncuesta implements EliminableLogico{
 		this.valor = valor;
 	}
 
+	public Double getValorNumerico() {
+		return valorNumerico;
+	}
+
+	public LocalDate getValorFecha() {
+		return valorFecha;
+	}
+
+	public String getValorOpcion() {
+		return valorOpcion;
+	}
+
 	public Long getPreguntaId() {
 		return preguntaEncuesta != null ? preguntaEncuesta.getId() : null;
 	}
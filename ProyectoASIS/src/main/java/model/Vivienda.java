@@ -0,0 +1,183 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import dao_interfaces.EliminableLogico;
+import jakarta.json.bind.annotation.JsonbTransient;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+@Entity
+@Table(name = "VIVIENDAS", indexes = {
+	@Index(name = "idx_vivienda_id_externo", columnList = "id_externo", unique = true),
+	// Búsquedas por rectángulo (mapa, cercanía): range scan por latitud y filtro por longitud en el índice
+	@Index(name = "idx_vivienda_ubicacion", columnList = "latitud, longitud")
+})
+public class Vivienda implements EliminableLogico {
+	
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+	
+	// Identificador de la vivienda en el CSV (primera columna); prefijo del idExterno de sus encuestas
+	@Column(name = "id_externo", length = 255, nullable = false)
+	private String idExterno;
+	
+	// Coordenadas validadas al importar; null si no se relevaron o no son válidas
+	@Column(name = "latitud")
+	private Double latitud;
+	
+	@Column(name = "longitud")
+	private Double longitud;
+	
+	// Encuesta donde se respondió el formulario de la vivienda
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "encuesta_hogar_id")
+	private Encuesta encuestaHogar;
+	
+	// Zona y barrio cuyos polígonos contienen la ubicación; los asigna AsignacionZonas
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "zona_id")
+	private Zona zona;
+	
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "barrio_id")
+	private Barrio barrio;
+	
+	@OneToMany(mappedBy = "vivienda", fetch = FetchType.LAZY)
+	private List<Encuesta> encuestas = new ArrayList<>();
+	
+	@Column(name = "fecha_creacion", nullable = false, updatable = false, columnDefinition = "TIMESTAMP(0)")
+	private LocalDateTime fechaCreacion;
+	
+	@Column(name = "fecha_editado", columnDefinition = "TIMESTAMP(0)")
+	private LocalDateTime fechaEditado;
+	
+	@Column(name = "fecha_eliminacion", columnDefinition = "TIMESTAMP(0)")
+	private LocalDateTime fechaEliminacion;
+	
+	public Vivienda() {
+		super();
+	}
+	
+	public Vivienda(String idExterno) {
+		super();
+		this.idExterno = idExterno;
+	}
+	
+	@PrePersist
+	protected void onCreate() {
+		this.fechaCreacion = LocalDateTime.now();
+		this.fechaEditado = LocalDateTime.now();
+	}
+	
+	@PreUpdate
+	protected void onUpdate() {
+		this.fechaEditado = LocalDateTime.now();
+	}
+	
+	/**
+	 * Coordenadas dentro del rango geográfico y distintas de (0, 0), el valor que deja el GPS
+	 * cuando no obtuvo ubicación.
+	 */
+	public static boolean coordenadasValidas(Double latitud, Double longitud) {
+		if (latitud == null || longitud == null || latitud.isNaN() || longitud.isNaN()) return false;
+		if (latitud == 0 && longitud == 0) return false;
+		return latitud >= -90 && latitud <= 90 && longitud >= -180 && longitud <= 180;
+	}
+	
+	/**
+	 * Guarda las coordenadas si son válidas; si no, las deja en null.
+	 */
+	public void setUbicacion(Double latitud, Double longitud) {
+		boolean validas = coordenadasValidas(latitud, longitud);
+		this.latitud = validas ? latitud : null;
+		this.longitud = validas ? longitud : null;
+	}
+	
+	public Long getId() {
+		return id;
+	}
+	
+	public void setId(Long id) {
+		this.id = id;
+	}
+	
+	public String getIdExterno() {
+		return idExterno;
+	}
+	
+	public void setIdExterno(String idExterno) {
+		this.idExterno = idExterno;
+	}
+	
+	public Double getLatitud() {
+		return latitud;
+	}
+	
+	public Double getLongitud() {
+		return longitud;
+	}
+	
+	@JsonbTransient
+	public Encuesta getEncuestaHogar() {
+		return encuestaHogar;
+	}
+	
+	public void setEncuestaHogar(Encuesta encuestaHogar) {
+		this.encuestaHogar = encuestaHogar;
+	}
+	
+	@JsonbTransient
+	public Zona getZona() {
+		return zona;
+	}
+	
+	public void setZona(Zona zona) {
+		this.zona = zona;
+	}
+	
+	@JsonbTransient
+	public Barrio getBarrio() {
+		return barrio;
+	}
+	
+	public void setBarrio(Barrio barrio) {
+		this.barrio = barrio;
+	}
+	
+	@JsonbTransient
+	public List<Encuesta> getEncuestas() {
+		return encuestas;
+	}
+	
+	public LocalDateTime getFechaCreacion() {
+		return fechaCreacion;
+	}
+	
+	public LocalDateTime getFechaEditado() {
+		return fechaEditado;
+	}
+	
+	public LocalDateTime getFechaEliminacion() {
+		return fechaEliminacion;
+	}
+	
+	@Override
+	public void setFechaEliminacion(LocalDateTime fechaEliminacion) {
+		this.fechaEliminacion = fechaEliminacion;
+	}
+}
@@ -40,7 +40,8 @@ public class Zona implements Serializable, EliminableLogico{
 	@Column(name = "nombre_zona")
 	private String nombre;
 	
-	@Column(name = "geolocalizacion")
+	// Punto "lat, lng" o polígono (WKT, GeoJSON o lista de pares); ver service.Poligono
+	@Column(name = "geolocalizacion", columnDefinition = "TEXT")
     private String geolocalizacion;
     
     @Column(name = "fecha_creacion", nullable = false, updatable = false, columnDefinition = "TIMESTAMP(0)")
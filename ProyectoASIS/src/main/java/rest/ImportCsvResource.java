@@ -1,40 +1,107 @@
 package rest;
 
+import dto.TrabajoImportacionDTO;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
 import org.glassfish.jersey.media.multipart.*;
-import service.ImportCsvService;
+import service.TrabajosImportacion;
 
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.RejectedExecutionException;
 
 @jakarta.ws.rs.Path("/import-csv")
 public class ImportCsvResource {
 
     @Inject
-    private ImportCsvService importCsvService;
+    private TrabajosImportacion trabajosImportacion;
 
+    @Context
+    private UriInfo uriInfo;
+
+    /**
+     * Recibe el archivo y lo deja en la cola de importaciones: responde 202 con el trabajo,
+     * cuyo avance se consulta en /import-csv/jobs/{id}.
+     */
     @POST
     @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
     public Response uploadCsv(@FormDataParam("file") InputStream uploadedInputStream,
-                             @FormDataParam("file") FormDataContentDisposition fileDetail) {
+                             @FormDataParam("file") FormDataContentDisposition fileDetail,
+                             @QueryParam("todoONada") @DefaultValue("true") boolean todoONada,
+                             @QueryParam("charset") @DefaultValue("UTF-8") String charset) {
+        Path tempFile = null;
         try {
-            // Guardar temporalmente el archivo
-            Path tempFile = Files.createTempFile("import_", ".csv");
-            Files.copy(uploadedInputStream, tempFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            Charset codificacion = Charset.forName(charset);
 
-            // Llamar al servicio de importación
-            importCsvService.importar(tempFile.toString());
+            // La importación termina después de responder: el archivo se guarda hasta que le toque
+            tempFile = Files.createTempFile("import_", ".csv");
+            Files.copy(uploadedInputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
 
-            // Borrar el archivo temporal
-            Files.deleteIfExists(tempFile);
+            // todo o nada, o confirmando por lotes de filas
+            String nombre = fileDetail != null ? fileDetail.getFileName() : null;
+            TrabajoImportacionDTO trabajo = trabajosImportacion.encolar(tempFile, nombre, codificacion, todoONada);
 
-            return Response.ok().build();
+            return Response.accepted(trabajo)
+                .location(uriInfo.getAbsolutePathBuilder().path("jobs").path(String.valueOf(trabajo.getId())).build())
+                .build();
+        } catch (IllegalArgumentException e) {
+            // Charset desconocido
+            borrar(tempFile);
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error al importar el archivo: " + e.getMessage()).build();
+        } catch (RejectedExecutionException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity("Error al importar el archivo: hay demasiadas importaciones en cola, intente más tarde").build();
         } catch (Exception e) {
+            borrar(tempFile);
             return Response.serverError().entity("Error al importar el archivo: " + e.getMessage()).build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Estado de una importación: filas leídas, respuestas escritas, velocidad, tiempo
+     * restante estimado y error si lo hubo.
+     */
+    @GET
+    @jakarta.ws.rs.Path("/jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response consultarTrabajo(@PathParam("id") long id) {
+        TrabajoImportacionDTO trabajo = trabajosImportacion.consultar(id);
+        if (trabajo == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(trabajo).build();
+    }
+
+    /**
+     * Cancela una importación en cola o en curso. La cancelación se aplica antes del
+     * próximo lote de filas: en modo todo o nada no queda nada importado; por lotes se conservan los lotes
+     * ya confirmados.
+     */
+    @DELETE
+    @jakarta.ws.rs.Path("/jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cancelarTrabajo(@PathParam("id") long id) {
+        TrabajoImportacionDTO trabajo = trabajosImportacion.cancelar(id);
+        if (trabajo == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.accepted(trabajo).build();
+    }
+
+    private static void borrar(Path archivo) {
+        if (archivo == null) return;
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (Exception e) {
+            // Queda en el directorio temporal
+        }
+    }
+}
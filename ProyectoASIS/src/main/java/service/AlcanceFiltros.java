@@ -0,0 +1,106 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import dao_interfaces.I_RespuestaEncuestaDAO;
+import dto.Filtros;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Traduce un {@link Filtros} al conjunto de encuestas dentro de su alcance, para los
+ * cálculos que recorren el {@link SnapshotRespuestas} o el {@link IndiceEspacial} en
+ * memoria (tablas cruzadas, estadísticas numéricas, mapa).
+ *
+ * También resuelve en memoria las encuestas candidatas que se pasan a las consultas de
+ * respuestas: dimensiones ({@link IndiceDimensiones}) y filtros múltiples ({@link IndiceRespuestas}).
+ */
+@RequestScoped
+public class AlcanceFiltros {
+
+    @Inject
+    private IndiceDimensiones indiceDimensiones;
+
+    @Inject
+    private IndiceRespuestas indiceRespuestas;
+
+    @Inject
+    private I_RespuestaEncuestaDAO respuestaEncuestaDAO;
+
+    @Inject
+    private CacheResultados cacheResultados;
+
+    /**
+     * El bitmap se comparte a través de la caché: no debe modificarse.
+     * @return null si no hay filtros (todas las encuestas), o las encuestas dentro del alcance
+     */
+    public RoaringBitmap encuestas(Filtros filtros) {
+        // Un cuerpo sin criterios tampoco restringe: así entran las encuestas que aún no tienen respuestas
+        if (filtros == null || sinCriterios(filtros)) {
+            return null;
+        }
+        // Los mismos filtros se repiten en pedidos seguidos (mover el mapa, cambiar de pregunta)
+        return cacheResultados.obtener("alcance", filtros, RoaringBitmap::getLongSizeInBytes,
+            () -> List.of(calcular(filtros))).get(0);
+    }
+
+    /**
+     * Encuestas que cumplen las dimensiones y los filtros múltiples, como lista de ids para
+     * las consultas de {@link I_RespuestaEncuestaDAO}; el resto de los criterios los evalúa la base.
+     * @return null si ninguno de los dos restringe
+     */
+    public List<Long> encuestasCandidatas(Filtros filtros) {
+        if (filtros == null) {
+            return null;
+        }
+        RoaringBitmap porDimension = indiceDimensiones.resolver(filtros);
+        RoaringBitmap porRespuestas = indiceRespuestas.resolverFiltrosMultiples(filtros.getFiltrosMultiples());
+        RoaringBitmap candidatas = porDimension == null ? porRespuestas
+            : porRespuestas == null ? porDimension
+            : RoaringBitmap.and(porDimension, porRespuestas);
+        if (candidatas == null) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>(candidatas.getCardinality());
+        candidatas.forEach((int id) -> ids.add((long) id));
+        return ids;
+    }
+
+    private RoaringBitmap calcular(Filtros filtros) {
+        RoaringBitmap encuestas = new RoaringBitmap();
+        for (Long id : respuestaEncuestaDAO.obtenerEncuestasFiltradas(filtros, encuestasCandidatas(filtros))) {
+            encuestas.add(Math.toIntExact(id));
+        }
+        return encuestas;
+    }
+
+    private static boolean sinCriterios(Filtros f) {
+        return Stream.of(f.getPregunta(), f.getCategoria(), f.getZona(), f.getBarrio(), f.getCampania(),
+                f.getFechaDesde(), f.getFechaHasta(), f.getSexo(), f.getEdadDesde(), f.getEdadHasta(),
+                f.getOrganizacionSocial(), f.getTipoRespuesta(), f.getPerfil(), f.getJornada(), f.getEncuestador())
+                .allMatch(Objects::isNull)
+            && (f.getFiltrosMultiples() == null || f.getFiltrosMultiples().isEmpty())
+            && (f.getFiltrosNumericos() == null || f.getFiltrosNumericos().isEmpty());
+    }
+
+    /**
+     * Viviendas con al menos una persona dentro del alcance.
+     * @return null si encuestas es null (sin restricción)
+     */
+    public static RoaringBitmap viviendas(SnapshotRespuestas.Columnas columnas, RoaringBitmap encuestas) {
+        if (encuestas == null) {
+            return null;
+        }
+        RoaringBitmap viviendas = new RoaringBitmap();
+        for (int encuestaId : encuestas) {
+            int vivienda = columnas.vivienda(encuestaId);
+            if (vivienda >= 0) viviendas.add(vivienda);
+        }
+        return viviendas;
+    }
+}
@@ -0,0 +1,193 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+import config.JPAProducer;
+import dto.AsignacionZonasDTO;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.Query;
+import model.Barrio;
+import model.Zona;
+
+/**
+ * Asigna a cada vivienda geolocalizada la zona y el barrio cuyos polígonos contienen
+ * sus coordenadas (ver {@link IndiceZonas}), y propaga la zona a las encuestas de la
+ * vivienda (Encuesta.zona, que usan los filtros y estadísticas por zona).
+ *
+ * La ubicación de los puntos se reparte entre todos los núcleos; la escritura son
+ * UPDATE masivos agrupados por resultado, en lotes de ids. En las encuestas solo se
+ * reemplaza una zona vacía o la que había puesto la asignación anterior, así no se
+ * pisa una zona cargada a mano.
+ */
+@ApplicationScoped
+public class AsignacionZonas {
+
+    private static final int TAMANIO_LOTE = 1_000;
+
+    @Inject
+    private JPAProducer jpaProducer;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    @Inject
+    private IndiceZonas indiceZonas;
+
+    private record Cambio(Long anterior, Long nueva) {
+    }
+
+    /**
+     * Asigna solo las viviendas indicadas (las recién importadas).
+     */
+    public AsignacionZonasDTO asignar(Collection<Long> viviendas) {
+        return procesar(new ArrayList<>(viviendas));
+    }
+
+    /**
+     * Vuelve a ubicar todas las viviendas con coordenadas, por ejemplo después de
+     * redibujar las zonas.
+     */
+    public AsignacionZonasDTO reasignarTodas() {
+        return procesar(null);
+    }
+
+    /**
+     * @param ids viviendas a procesar; null = todas
+     */
+    private synchronized AsignacionZonasDTO procesar(List<Long> ids) {
+        long inicio = System.currentTimeMillis();
+        int poligonosZona = indiceZonas.poligonosZona();
+        int poligonosBarrio = indiceZonas.poligonosBarrio();
+
+        EntityManager em = jpaProducer.createEntityManager();
+        int modificadas = 0;
+        int encuestas = 0;
+        int conZona = 0;
+        int conBarrio = 0;
+        int n;
+        try {
+            List<Object[]> filas = cargar(em, ids);
+            n = filas.size();
+            // Sin ningún polígono cargado no hay nada que decidir: no se borran asignaciones previas
+            if (n == 0 || (poligonosZona == 0 && poligonosBarrio == 0)) {
+                return new AsignacionZonasDTO(n, 0, 0, 0, 0, poligonosZona, poligonosBarrio, System.currentTimeMillis() - inicio);
+            }
+
+            IndiceZonas.Ubicacion[] ubicaciones = new IndiceZonas.Ubicacion[n];
+            IntStream.range(0, n).parallel().forEach(i ->
+                ubicaciones[i] = indiceZonas.ubicar((Double) filas.get(i)[1], (Double) filas.get(i)[2]));
+
+            Map<IndiceZonas.Ubicacion, List<Long>> viviendasPorUbicacion = new HashMap<>();
+            Map<Cambio, List<Long>> viviendasPorCambio = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                Object[] fila = filas.get(i);
+                IndiceZonas.Ubicacion ubicacion = ubicaciones[i];
+                if (ubicacion.zonaId() != null) conZona++;
+                if (ubicacion.barrioId() != null) conBarrio++;
+                Long viviendaId = (Long) fila[0];
+                Long zonaAnterior = (Long) fila[3];
+                if (!Objects.equals(zonaAnterior, ubicacion.zonaId()) || !Objects.equals(fila[4], ubicacion.barrioId())) {
+                    viviendasPorUbicacion.computeIfAbsent(ubicacion, k -> new ArrayList<>()).add(viviendaId);
+                }
+                if (zonaAnterior != null || ubicacion.zonaId() != null) {
+                    viviendasPorCambio.computeIfAbsent(new Cambio(zonaAnterior, ubicacion.zonaId()), k -> new ArrayList<>()).add(viviendaId);
+                }
+            }
+
+            EntityTransaction tx = em.getTransaction();
+            try {
+                tx.begin();
+                for (Map.Entry<IndiceZonas.Ubicacion, List<Long>> entrada : viviendasPorUbicacion.entrySet()) {
+                    modificadas += actualizarViviendas(em, entrada.getKey(), entrada.getValue());
+                }
+                for (Map.Entry<Cambio, List<Long>> entrada : viviendasPorCambio.entrySet()) {
+                    encuestas += actualizarEncuestas(em, entrada.getKey(), entrada.getValue());
+                }
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (tx.isActive()) tx.rollback();
+                throw e;
+            }
+        } finally {
+            em.close();
+        }
+
+        if (modificadas > 0 || encuestas > 0) {
+            versionDatos.incrementar();
+        }
+        return new AsignacionZonasDTO(n, conZona, conBarrio, modificadas, encuestas, poligonosZona, poligonosBarrio,
+            System.currentTimeMillis() - inicio);
+    }
+
+    // id, latitud, longitud, zona actual y barrio actual de cada vivienda con coordenadas
+    private static List<Object[]> cargar(EntityManager em, List<Long> ids) {
+        String jpql = "SELECT v.id, v.latitud, v.longitud, z.id, b.id FROM Vivienda v LEFT JOIN v.zona z LEFT JOIN v.barrio b " +
+            "WHERE v.latitud IS NOT NULL AND v.longitud IS NOT NULL AND v.fechaEliminacion IS NULL";
+        if (ids == null) {
+            return em.createQuery(jpql, Object[].class).getResultList();
+        }
+        List<Object[]> filas = new ArrayList<>(ids.size());
+        for (List<Long> lote : lotes(ids)) {
+            filas.addAll(em.createQuery(jpql + " AND v.id IN :ids", Object[].class)
+                .setParameter("ids", lote)
+                .getResultList());
+        }
+        return filas;
+    }
+
+    // UPDATE directo: no dispara @PreUpdate, así que no altera fecha_editado
+    private static int actualizarViviendas(EntityManager em, IndiceZonas.Ubicacion ubicacion, List<Long> viviendas) {
+        String jpql = "UPDATE Vivienda v SET v.zona = " + (ubicacion.zonaId() != null ? ":zona" : "NULL") +
+            ", v.barrio = " + (ubicacion.barrioId() != null ? ":barrio" : "NULL") + " WHERE v.id IN :viviendas";
+        int actualizadas = 0;
+        for (List<Long> lote : lotes(viviendas)) {
+            Query query = em.createQuery(jpql).setParameter("viviendas", lote);
+            if (ubicacion.zonaId() != null) query.setParameter("zona", em.getReference(Zona.class, ubicacion.zonaId()));
+            if (ubicacion.barrioId() != null) query.setParameter("barrio", em.getReference(Barrio.class, ubicacion.barrioId()));
+            actualizadas += query.executeUpdate();
+        }
+        return actualizadas;
+    }
+
+    /**
+     * Pone la nueva zona en las encuestas de las viviendas que no tienen zona o que
+     * tienen la anterior asignada por polígono.
+     */
+    private static int actualizarEncuestas(EntityManager em, Cambio cambio, List<Long> viviendas) {
+        String condicion;
+        if (cambio.anterior() == null || cambio.anterior().equals(cambio.nueva())) {
+            condicion = "e.zona IS NULL";
+        } else if (cambio.nueva() == null) {
+            condicion = "e.zona.id = :anterior";
+        } else {
+            condicion = "(e.zona IS NULL OR e.zona.id = :anterior)";
+        }
+        String jpql = "UPDATE Encuesta e SET e.zona = " + (cambio.nueva() != null ? ":zona" : "NULL") +
+            " WHERE e.vivienda.id IN :viviendas AND " + condicion;
+        int actualizadas = 0;
+        for (List<Long> lote : lotes(viviendas)) {
+            Query query = em.createQuery(jpql).setParameter("viviendas", lote);
+            if (cambio.nueva() != null) query.setParameter("zona", em.getReference(Zona.class, cambio.nueva()));
+            if (condicion.contains(":anterior")) query.setParameter("anterior", cambio.anterior());
+            actualizadas += query.executeUpdate();
+        }
+        return actualizadas;
+    }
+
+    private static List<List<Long>> lotes(List<Long> ids) {
+        List<List<Long>> lotes = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += TAMANIO_LOTE) {
+            lotes.add(ids.subList(i, Math.min(ids.size(), i + TAMANIO_LOTE)));
+        }
+        return lotes;
+    }
+}
@@ -0,0 +1,244 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import dto.FiltroMultiple;
+import dto.Filtros;
+import dto.MetricasCacheDTO;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Caché de resultados de consultas con filtros (filtrar / agregado de respuestas).
+ *
+ * La clave es la operación más un hash SHA-256 de la forma canónica de {@link Filtros},
+ * así dos pedidos equivalentes (mismo contenido, distinto orden o mayúsculas en los
+ * filtros múltiples) comparten la entrada. Cada entrada guarda la {@link VersionDatos}
+ * con la que se calculó y se descarta si no coincide con la vigente. Como el
+ * {@link SnapshotRespuestas} se reconstruye después del cambio, al publicarse uno nuevo
+ * también se descarta todo lo calculado con el anterior. El tamaño total se
+ * acota por una estimación en bytes y se desalojan primero las menos usadas (LRU).
+ */
+@ApplicationScoped
+public class CacheResultados {
+
+    // Tope de memoria estimada para todas las entradas
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+    // Sobrecosto aproximado de cada entrada (clave, nodo del mapa, lista)
+    private static final long BYTES_ENTRADA = 256;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    private record Clave(String operacion, String hash) {}
+
+    private record Entrada(long version, List<?> valor, long bytes) {}
+
+    // accessOrder = true: el orden de iteración va del menos al más recientemente usado
+    private final LinkedHashMap<Clave, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesUsados;
+    // Se incrementa con cada snapshot publicado
+    private long generacionSnapshot;
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    /**
+     * Devuelve el resultado cacheado para (operación, filtros) o lo calcula y lo guarda.
+     * @param tamanioElemento estimación en bytes de cada elemento del resultado
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> obtener(String operacion, Filtros filtros, ToLongFunction<T> tamanioElemento,
+                               Supplier<List<T>> calcular) {
+        Clave clave = new Clave(operacion, hash(filtros));
+        long version = versionDatos.actual();
+        long generacion;
+
+        synchronized (this) {
+            generacion = generacionSnapshot;
+            Entrada entrada = entradas.get(clave);
+            if (entrada != null) {
+                if (entrada.version() == version) {
+                    aciertos.incrementAndGet();
+                    return (List<T>) entrada.valor();
+                }
+                quitar(clave, entrada);
+                invalidaciones.incrementAndGet();
+            }
+        }
+        fallos.incrementAndGet();
+
+        // Se calcula fuera del lock: consultas distintas no se bloquean entre sí
+        List<T> valor = List.copyOf(calcular.get());
+        long bytes = BYTES_ENTRADA;
+        for (T elemento : valor) {
+            bytes += tamanioElemento.applyAsLong(elemento);
+        }
+        if (bytes > MAX_BYTES) {
+            return valor;
+        }
+
+        synchronized (this) {
+            // Si los datos cambiaron mientras se calculaba, el resultado ya nace viejo
+            if (version != versionDatos.actual() || generacion != generacionSnapshot) {
+                return valor;
+            }
+            Entrada anterior = entradas.put(clave, new Entrada(version, valor, bytes));
+            if (anterior != null) {
+                bytesUsados -= anterior.bytes();
+            }
+            bytesUsados += bytes;
+            desalojarExcedente();
+        }
+        return valor;
+    }
+
+    /**
+     * Descarta todas las entradas de versiones anteriores apenas cambian los datos.
+     */
+    public synchronized void alCambiarDatos(@Observes VersionDatos.CambioDatos cambio) {
+        Iterator<Map.Entry<Clave, Entrada>> it = entradas.entrySet().iterator();
+        while (it.hasNext()) {
+            Entrada entrada = it.next().getValue();
+            if (entrada.version() != cambio.version()) {
+                bytesUsados -= entrada.bytes();
+                it.remove();
+                invalidaciones.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Descarta todas las entradas al publicarse un snapshot nuevo: pueden haberse calculado
+     * con el anterior después del último cambio de versión.
+     */
+    public synchronized void alActualizarSnapshot(@Observes SnapshotRespuestas.Actualizado actualizado) {
+        generacionSnapshot++;
+        invalidaciones.addAndGet(entradas.size());
+        entradas.clear();
+        bytesUsados = 0;
+    }
+
+    public synchronized MetricasCacheDTO obtenerMetricas() {
+        return new MetricasCacheDTO(aciertos.get(), fallos.get(), desalojos.get(), invalidaciones.get(),
+            entradas.size(), bytesUsados, MAX_BYTES, versionDatos.actual());
+    }
+
+    /**
+     * Estimación del espacio que ocupa un String en el heap (cabecera + arreglo de bytes).
+     */
+    public static long bytesTexto(String texto) {
+        return texto == null ? 0 : 40 + texto.length();
+    }
+
+    private void desalojarExcedente() {
+        Iterator<Map.Entry<Clave, Entrada>> it = entradas.entrySet().iterator();
+        while (bytesUsados > MAX_BYTES && it.hasNext()) {
+            bytesUsados -= it.next().getValue().bytes();
+            it.remove();
+            desalojos.incrementAndGet();
+        }
+    }
+
+    private void quitar(Clave clave, Entrada entrada) {
+        entradas.remove(clave);
+        bytesUsados -= entrada.bytes();
+    }
+
+    /**
+     * Hash SHA-256 (hex) de la forma canónica de los filtros.
+     */
+    static String hash(Filtros filtros) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] digest = sha.digest(canonico(filtros).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Serializa los filtros en un orden fijo de campos. Las listas se ordenan porque se
+     * combinan con AND, donde el orden no altera el resultado, y sus textos pasan a
+     * minúsculas porque esas comparaciones no distinguen mayúsculas. Los demás campos se
+     * toman tal cual: "" y null no siempre significan lo mismo.
+     */
+    static String canonico(Filtros filtros) {
+        if (filtros == null) {
+            return "{}";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        campo(sb, "pregunta", filtros.getPregunta());
+        campo(sb, "categoria", filtros.getCategoria());
+        campo(sb, "zona", filtros.getZona());
+        campo(sb, "barrio", filtros.getBarrio());
+        campo(sb, "campania", filtros.getCampania());
+        campo(sb, "fechaDesde", filtros.getFechaDesde() != null ? filtros.getFechaDesde().getTime() : null);
+        campo(sb, "fechaHasta", filtros.getFechaHasta() != null ? filtros.getFechaHasta().getTime() : null);
+        campo(sb, "sexo", filtros.getSexo());
+        campo(sb, "edadDesde", filtros.getEdadDesde());
+        campo(sb, "edadHasta", filtros.getEdadHasta());
+        campo(sb, "organizacionSocial", filtros.getOrganizacionSocial());
+        campo(sb, "tipoRespuesta", filtros.getTipoRespuesta());
+        campo(sb, "perfil", filtros.getPerfil());
+        campo(sb, "jornada", filtros.getJornada());
+        campo(sb, "encuestador", filtros.getEncuestador());
+
+        if (filtros.getFiltrosMultiples() != null) {
+            List<String> multiples = filtros.getFiltrosMultiples().stream()
+                .filter(Objects::nonNull)
+                .map(f -> componente(normalizar(f.getCategoria())) + componente(normalizar(f.getPregunta())) + componente(normalizar(f.getRespuesta())))
+                .sorted()
+                .distinct()
+                .toList();
+            sb.append("multiples=").append(multiples).append(';');
+        }
+        if (filtros.getFiltrosNumericos() != null) {
+            List<String> numericos = filtros.getFiltrosNumericos().stream()
+                .filter(Objects::nonNull)
+                .map(f -> componente(normalizar(f.getPregunta())) + componente(f.getDesde()) + componente(f.getHasta()))
+                .sorted()
+                .distinct()
+                .toList();
+            sb.append("numericos=").append(numericos).append(';');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void campo(StringBuilder sb, String nombre, Object valor) {
+        if (valor != null) {
+            // Longitud como prefijo: ningún valor puede imitar el separador
+            String texto = valor.toString();
+            sb.append(nombre).append('=').append(texto.length()).append(':').append(texto).append(';');
+        }
+    }
+
+    private static String componente(Object valor) {
+        if (valor == null) return "-;";
+        String texto = valor.toString();
+        return texto.length() + ":" + texto + ";";
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null) return null;
+        // "TODAS" es un comodín: se unifica su escritura
+        if (FiltroMultiple.TODAS.equalsIgnoreCase(texto)) return FiltroMultiple.TODAS;
+        return texto.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,104 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import dto.ClusterMapaDTO;
+import dto.Filtros;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Agrupamiento de viviendas para el mapa según el zoom, sobre la grilla jerárquica del
+ * {@link IndiceEspacial}. Con filtros, solo cuentan las encuestas dentro de su alcance.
+ * Opcionalmente desglosa cada grupo por las respuestas de una pregunta, tomadas del
+ * {@link SnapshotRespuestas}.
+ */
+@RequestScoped
+public class ClusterMapaService {
+
+    // Tope de marcadores por pedido: el mapa sigue fluido con unos cientos
+    public static final int MAX_CLUSTERS = 300;
+
+    static final String SIN_RESPUESTA = "Sin respuesta";
+
+    @Inject
+    private IndiceEspacial indiceEspacial;
+
+    @Inject
+    private SnapshotRespuestas snapshotRespuestas;
+
+    @Inject
+    private AlcanceFiltros alcanceFiltros;
+
+    /**
+     * @param rectangulo oeste, sur, este, norte; o null para todas las viviendas
+     * @param preguntaDesglose código CSV de la pregunta para desglosar cada grupo, o null
+     * @param filtros alcance opcional (mismos criterios que filtrar-preguntas-respuestas)
+     * @throws IllegalArgumentException si la pregunta de desglose no existe
+     */
+    public List<ClusterMapaDTO> agrupar(double[] rectangulo, int zoom, String preguntaDesglose, Filtros filtros) {
+        Map<Long, List<String>> respuestas = preguntaDesglose != null ? respuestasPorEncuesta(preguntaDesglose) : null;
+        RoaringBitmap encuestas = alcanceFiltros.encuestas(filtros);
+        List<IndiceEspacial.Grupo> grupos = rectangulo == null
+            ? indiceEspacial.agrupar(null, null, null, null, zoom, MAX_CLUSTERS, encuestas)
+            : indiceEspacial.agrupar(rectangulo[0], rectangulo[1], rectangulo[2], rectangulo[3], zoom, MAX_CLUSTERS, encuestas);
+
+        List<ClusterMapaDTO> clusters = new ArrayList<>(grupos.size());
+        for (IndiceEspacial.Grupo grupo : grupos) {
+            Map<String, Long> desglose = null;
+            if (respuestas != null) {
+                desglose = new TreeMap<>();
+                for (IndiceEspacial.Vivienda v : grupo.viviendas()) {
+                    for (long encuestaId : v.encuestas()) {
+                        for (String valor : respuestas.getOrDefault(encuestaId, List.of(SIN_RESPUESTA))) {
+                            desglose.merge(valor, 1L, Long::sum);
+                        }
+                    }
+                }
+            }
+            String viviendaId = grupo.viviendas().size() == 1 ? grupo.viviendas().get(0).id() : null;
+            clusters.add(new ClusterMapaDTO(grupo.latitud(), grupo.longitud(), grupo.encuestas(), grupo.viviendas().size(),
+                viviendaId, desglose));
+        }
+        return clusters;
+    }
+
+    /**
+     * Respuestas de cada encuesta a la pregunta; las de vivienda se asignan a todas sus personas.
+     */
+    private Map<Long, List<String>> respuestasPorEncuesta(String preguntaCsv) {
+        SnapshotRespuestas.Columnas columnas = snapshotRespuestas.obtener();
+        SnapshotRespuestas.Pregunta pregunta = columnas.preguntas().stream()
+            .filter(p -> preguntaCsv.equals(p.preguntaCsv()))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Pregunta inexistente: " + preguntaCsv));
+
+        Map<Integer, List<String>> porUnidad = new HashMap<>();
+        for (int fila = 0; fila < columnas.filas(); fila++) {
+            if (columnas.pregunta(fila) != pregunta || columnas.eliminada(fila) || columnas.codigoValor(fila) < 0) continue;
+            int encuestaId = columnas.encuestaId(fila);
+            int unidad = pregunta.deVivienda() ? columnas.vivienda(encuestaId) : encuestaId;
+            if (unidad >= 0) porUnidad.computeIfAbsent(unidad, u -> new ArrayList<>()).add(columnas.valor(fila));
+        }
+        if (!pregunta.deVivienda()) {
+            Map<Long, List<String>> respuestas = new HashMap<>();
+            porUnidad.forEach((encuestaId, valores) -> respuestas.put((long) encuestaId, valores));
+            return respuestas;
+        }
+        // Pregunta de vivienda: se resuelve por encuesta a través de su vivienda
+        Map<Long, List<String>> respuestas = new HashMap<>();
+        for (IndiceEspacial.Vivienda v : indiceEspacial.todas()) {
+            for (long encuestaId : v.encuestas()) {
+                List<String> valores = porUnidad.get(columnas.vivienda(Math.toIntExact(encuestaId)));
+                if (valores != null) respuestas.put(encuestaId, valores);
+            }
+        }
+        return respuestas;
+    }
+}
@@ -0,0 +1,142 @@
+package service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Codifica una capa de puntos como Mapbox Vector Tile (especificación 2.1): un mensaje
+ * protobuf Tile con una sola Layer. Cubre solo lo que usa el mapa (geometrías POINT con
+ * atributos de texto o enteros no negativos), así no hace falta sumar protobuf al proyecto.
+ *
+ * Las coordenadas de cada punto van en unidades del tile: 0..{@link #EXTENSION} de oeste a
+ * este y de norte a sur; pueden caer un poco afuera (margen del tile).
+ */
+final class CodificadorMvt {
+
+    static final int EXTENSION = 4096;
+
+    // Campos de los mensajes del .proto de vector_tile
+    private static final int TILE_LAYERS = 3;
+    private static final int LAYER_NAME = 1;
+    private static final int LAYER_FEATURES = 2;
+    private static final int LAYER_KEYS = 3;
+    private static final int LAYER_VALUES = 4;
+    private static final int LAYER_EXTENT = 5;
+    private static final int LAYER_VERSION = 15;
+    private static final int FEATURE_TAGS = 2;
+    private static final int FEATURE_TYPE = 3;
+    private static final int FEATURE_GEOMETRY = 4;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_UINT = 5;
+    private static final int GEOMETRIA_PUNTO = 1;
+    // Comando MoveTo (id 1) con un solo par de coordenadas
+    private static final int MOVE_TO_UNO = (1 << 3) | 1;
+
+    private static final int TIPO_VARINT = 0;
+    private static final int TIPO_LONGITUD = 2;
+
+    private final String capa;
+    private final Protobuf features = new Protobuf();
+    // Claves y valores se guardan una vez por capa; cada feature los referencia por índice
+    private final Map<String, Integer> claves = new LinkedHashMap<>();
+    private final Map<Object, Integer> valores = new LinkedHashMap<>();
+    private int cantidad;
+
+    CodificadorMvt(String capa) {
+        this.capa = capa;
+    }
+
+    /**
+     * @param atributos nombre -> String o Long (no negativo); los null se omiten
+     */
+    void agregarPunto(int x, int y, Map<String, Object> atributos) {
+        Protobuf tags = new Protobuf();
+        for (Map.Entry<String, Object> atributo : atributos.entrySet()) {
+            if (atributo.getValue() == null) continue;
+            tags.varint(claves.computeIfAbsent(atributo.getKey(), k -> claves.size()));
+            tags.varint(valores.computeIfAbsent(atributo.getValue(), k -> valores.size()));
+        }
+        Protobuf geometria = new Protobuf();
+        geometria.varint(MOVE_TO_UNO);
+        geometria.varint(zigzag(x));
+        geometria.varint(zigzag(y));
+
+        Protobuf feature = new Protobuf();
+        feature.mensaje(FEATURE_TAGS, tags);
+        feature.campo(FEATURE_TYPE, TIPO_VARINT).varint(GEOMETRIA_PUNTO);
+        feature.mensaje(FEATURE_GEOMETRY, geometria);
+        features.mensaje(LAYER_FEATURES, feature);
+        cantidad++;
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    /**
+     * @return el tile codificado; sin puntos es un arreglo vacío, que también es un tile válido
+     */
+    byte[] codificar() {
+        if (cantidad == 0) {
+            return new byte[0];
+        }
+        Protobuf layer = new Protobuf();
+        layer.campo(LAYER_VERSION, TIPO_VARINT).varint(2);
+        layer.texto(LAYER_NAME, capa);
+        layer.bytes.writeBytes(features.bytes.toByteArray());
+        for (String clave : claves.keySet()) {
+            layer.texto(LAYER_KEYS, clave);
+        }
+        for (Object valor : valores.keySet()) {
+            Protobuf value = new Protobuf();
+            if (valor instanceof String texto) {
+                value.texto(VALUE_STRING, texto);
+            } else {
+                value.campo(VALUE_UINT, TIPO_VARINT).varint(((Number) valor).longValue());
+            }
+            layer.mensaje(LAYER_VALUES, value);
+        }
+        layer.campo(LAYER_EXTENT, TIPO_VARINT).varint(EXTENSION);
+
+        Protobuf tile = new Protobuf();
+        tile.mensaje(TILE_LAYERS, layer);
+        return tile.bytes.toByteArray();
+    }
+
+    private static long zigzag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    /**
+     * Escritura mínima de protobuf: varints y campos delimitados por longitud.
+     */
+    private static final class Protobuf {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Protobuf campo(int numero, int tipo) {
+            return varint(((long) numero << 3) | tipo);
+        }
+
+        Protobuf varint(long valor) {
+            while ((valor & ~0x7FL) != 0) {
+                bytes.write((int) ((valor & 0x7F) | 0x80));
+                valor >>>= 7;
+            }
+            bytes.write((int) valor);
+            return this;
+        }
+
+        void texto(int numero, String texto) {
+            byte[] utf8 = texto.getBytes(StandardCharsets.UTF_8);
+            campo(numero, TIPO_LONGITUD).varint(utf8.length);
+            bytes.writeBytes(utf8);
+        }
+
+        void mensaje(int numero, Protobuf mensaje) {
+            campo(numero, TIPO_LONGITUD).varint(mensaje.bytes.size());
+            bytes.writeBytes(mensaje.bytes.toByteArray());
+        }
+    }
+}
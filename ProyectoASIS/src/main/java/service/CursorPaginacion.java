@@ -0,0 +1,59 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import dto.Filtros;
+
+/**
+ * Cursor opaco para paginar por keyset (encuestaId, respuestaId).
+ *
+ * El token lleva la última posición entregada y un prefijo del hash de los filtros con
+ * los que se generó, para rechazar un cursor reutilizado con otros filtros. Para el
+ * cliente es un texto base64 sin significado: solo lo devuelve tal cual.
+ */
+public final class CursorPaginacion {
+
+    private static final String VERSION = "1";
+    private static final int LARGO_HASH = 16;
+
+    public record Posicion(long encuestaId, long respuestaId) {}
+
+    private CursorPaginacion() {}
+
+    public static String codificar(Posicion posicion, Filtros filtros) {
+        String texto = VERSION + ":" + posicion.encuestaId() + ":" + posicion.respuestaId() + ":" + hashFiltros(filtros);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return la posición, o null si el cursor es null o vacío (primera página)
+     * @throws IllegalArgumentException si el cursor no es válido o no corresponde a estos filtros
+     */
+    public static Posicion decodificar(String cursor, Filtros filtros) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String[] partes;
+        try {
+            partes = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        if (partes.length != 4 || !VERSION.equals(partes[0])) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        if (!partes[3].equals(hashFiltros(filtros))) {
+            throw new IllegalArgumentException("El cursor no corresponde a los filtros enviados");
+        }
+        try {
+            return new Posicion(Long.parseLong(partes[1]), Long.parseLong(partes[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+
+    private static String hashFiltros(Filtros filtros) {
+        return CacheResultados.hash(filtros).substring(0, LARGO_HASH);
+    }
+}
@@ -0,0 +1,194 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import dto.BucketHistogramaDTO;
+import dto.EstadisticaNumericaDTO;
+import dto.Filtros;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import model.TipoRespuesta;
+
+/**
+ * Estadísticas de una pregunta NUMERO calculadas en una sola pasada sobre la columna
+ * numérica del {@link SnapshotRespuestas}.
+ *
+ * Las filas se reparten en particiones que se resumen en paralelo ({@link ResumenNumerico})
+ * y se combinan al final; los percentiles salen de un {@link SketchCuantiles}, que no
+ * necesita guardar los valores ni ordenarlos.
+ */
+@RequestScoped
+public class EstadisticaNumericaService {
+
+    public static final List<Double> PERCENTILES_POR_DEFECTO = List.of(5.0, 25.0, 50.0, 75.0, 95.0);
+
+    // Filas por partición del recorrido paralelo
+    private static final int FILAS_POR_PARTICION = 16_384;
+    // Tope de intervalos del histograma, para que un ancho muy chico no genere respuestas enormes
+    private static final int MAX_BUCKETS = 1_000;
+
+    @Inject
+    private SnapshotRespuestas snapshotRespuestas;
+
+    @Inject
+    private AlcanceFiltros alcanceFiltros;
+
+    /**
+     * @param preguntaCsv código CSV de una pregunta de tipo NUMERO
+     * @param ancho ancho fijo de los intervalos del histograma (histograma exacto), o null
+     * @param buckets cantidad de intervalos deseada si no hay ancho; con ambos null el
+     *        ancho se elige por Freedman-Diaconis (o Sturges si el rango intercuartil es 0)
+     * @param percentiles percentiles pedidos (0 a 100), o null para los por defecto
+     * @throws IllegalArgumentException si la pregunta no existe, no es numérica o los parámetros no son válidos
+     */
+    public EstadisticaNumericaDTO calcular(String preguntaCsv, Double ancho, Integer buckets, List<Double> percentiles,
+                                           Filtros filtros) {
+        if (ancho != null && !(ancho > 0)) {
+            throw new IllegalArgumentException("El ancho debe ser mayor que 0");
+        }
+        if (buckets != null && (buckets < 1 || buckets > MAX_BUCKETS)) {
+            throw new IllegalArgumentException("La cantidad de intervalos debe estar entre 1 y " + MAX_BUCKETS);
+        }
+        List<Double> pedidos = percentiles == null || percentiles.isEmpty() ? PERCENTILES_POR_DEFECTO : percentiles;
+        for (Double p : pedidos) {
+            if (p == null || p < 0 || p > 100) {
+                throw new IllegalArgumentException("Los percentiles deben estar entre 0 y 100");
+            }
+        }
+
+        SnapshotRespuestas.Columnas columnas = snapshotRespuestas.obtener();
+        SnapshotRespuestas.Pregunta pregunta = columnas.preguntas().stream()
+            .filter(p -> p.preguntaCsv() != null && p.preguntaCsv().equals(preguntaCsv))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Pregunta inexistente: " + preguntaCsv));
+        if (pregunta.tipoRespuesta() != TipoRespuesta.NUMERO) {
+            throw new IllegalArgumentException("La pregunta " + preguntaCsv + " no es de tipo NUMERO");
+        }
+
+        RoaringBitmap encuestas = alcanceFiltros.encuestas(filtros);
+        RoaringBitmap viviendas = pregunta.deVivienda() ? AlcanceFiltros.viviendas(columnas, encuestas) : null;
+
+        int particiones = Math.max(1, (columnas.filas() + FILAS_POR_PARTICION - 1) / FILAS_POR_PARTICION);
+        ResumenNumerico resumen = IntStream.range(0, particiones).parallel()
+            .mapToObj(n -> resumir(columnas, pregunta, encuestas, viviendas, ancho,
+                n * FILAS_POR_PARTICION, Math.min(columnas.filas(), (n + 1) * FILAS_POR_PARTICION)))
+            .reduce(ResumenNumerico::combinar)
+            .orElseGet(() -> new ResumenNumerico(ancho, 0));
+
+        EstadisticaNumericaDTO dto = new EstadisticaNumericaDTO();
+        dto.setPregunta(preguntaCsv);
+        dto.setCantidad(resumen.getCantidad());
+        dto.setErrorRelativoPercentiles(SketchCuantiles.ALFA_POR_DEFECTO);
+        Map<String, Double> valores = new LinkedHashMap<>();
+        if (resumen.getCantidad() == 0) {
+            dto.setPercentiles(valores);
+            dto.setHistograma(List.of());
+            return dto;
+        }
+        dto.setMinimo(resumen.getMinimo());
+        dto.setMaximo(resumen.getMaximo());
+        dto.setMedia(resumen.getMedia());
+        dto.setDesvio(resumen.getCantidad() < 2 ? null : resumen.getDesvio());
+        for (Double p : pedidos) {
+            valores.put(nombrePercentil(p), resumen.cuantil(p / 100));
+        }
+        dto.setPercentiles(valores);
+
+        if (ancho != null) {
+            dto.setAnchoHistograma(ancho);
+            dto.setHistograma(histogramaExacto(resumen));
+        } else {
+            double anchoAuto = anchoAutomatico(resumen, buckets);
+            dto.setAnchoHistograma(anchoAuto);
+            dto.setHistograma(histogramaDelSketch(resumen, anchoAuto));
+            dto.setHistogramaAproximado(true);
+        }
+        return dto;
+    }
+
+    private static ResumenNumerico resumir(SnapshotRespuestas.Columnas columnas, SnapshotRespuestas.Pregunta pregunta,
+                                           RoaringBitmap encuestas, RoaringBitmap viviendas, Double ancho,
+                                           int desde, int hasta) {
+        // Origen 0: los intervalos de ancho fijo quedan alineados en todas las particiones
+        ResumenNumerico resumen = new ResumenNumerico(ancho, 0);
+        for (int fila = desde; fila < hasta; fila++) {
+            if (columnas.pregunta(fila) != pregunta || columnas.eliminada(fila)) continue;
+            double numero = columnas.numero(fila);
+            if (Double.isNaN(numero)) continue;
+            int encuestaId = columnas.encuestaId(fila);
+            if (pregunta.deVivienda()) {
+                if (viviendas != null && !viviendas.contains(columnas.vivienda(encuestaId))) continue;
+            } else if (encuestas != null && !encuestas.contains(encuestaId)) {
+                continue;
+            }
+            resumen.agregar(numero);
+        }
+        return resumen;
+    }
+
+    private static List<BucketHistogramaDTO> histogramaExacto(ResumenNumerico resumen) {
+        double ancho = resumen.getAncho();
+        long primero = (long) Math.floor(resumen.getMinimo() / ancho);
+        long ultimo = (long) Math.floor(resumen.getMaximo() / ancho);
+        if (ultimo - primero + 1 > MAX_BUCKETS) {
+            throw new IllegalArgumentException("El ancho " + ancho + " genera más de " + MAX_BUCKETS + " intervalos");
+        }
+        List<BucketHistogramaDTO> histograma = new ArrayList<>();
+        for (long i = primero; i <= ultimo; i++) {
+            histograma.add(new BucketHistogramaDTO(i * ancho, (i + 1) * ancho, resumen.getHistograma().getOrDefault(i, 0L)));
+        }
+        return histograma;
+    }
+
+    /**
+     * Freedman-Diaconis (2 * IQR / n^(1/3)); si el rango intercuartil es 0 o se pidió una
+     * cantidad de intervalos, se divide el rango en esa cantidad (Sturges por defecto).
+     */
+    private static double anchoAutomatico(ResumenNumerico resumen, Integer buckets) {
+        double rango = resumen.getMaximo() - resumen.getMinimo();
+        if (rango == 0) {
+            return 1;
+        }
+        if (buckets == null) {
+            double iqr = resumen.cuantil(0.75) - resumen.cuantil(0.25);
+            if (iqr > 0) {
+                double ancho = 2 * iqr / Math.cbrt(resumen.getCantidad());
+                if (rango / ancho <= MAX_BUCKETS) return ancho;
+            }
+            buckets = (int) Math.ceil(Math.log(resumen.getCantidad()) / Math.log(2)) + 1;
+        }
+        return rango / buckets;
+    }
+
+    /**
+     * Reparte los buckets del sketch (cada uno con su valor representativo) en intervalos
+     * de ancho fijo desde el mínimo. Las cantidades son aproximadas: un valor puede caer
+     * en el intervalo vecino si está a menos del error relativo de un borde.
+     */
+    private static List<BucketHistogramaDTO> histogramaDelSketch(ResumenNumerico resumen, double ancho) {
+        double minimo = resumen.getMinimo();
+        double maximo = resumen.getMaximo();
+        int cantidad = Math.max(1, (int) Math.ceil((maximo - minimo) / ancho));
+        long[] conteos = new long[cantidad];
+        resumen.getSketch().recorrer((valor, n) -> {
+            double acotado = Math.max(minimo, Math.min(maximo, valor));
+            int i = (int) Math.min(cantidad - 1, Math.floor((acotado - minimo) / ancho));
+            conteos[i] += n;
+        });
+        List<BucketHistogramaDTO> histograma = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            histograma.add(new BucketHistogramaDTO(minimo + i * ancho, minimo + (i + 1) * ancho, conteos[i]));
+        }
+        return histograma;
+    }
+
+    private static String nombrePercentil(double p) {
+        return p == Math.rint(p) ? "p" + (long) p : "p" + p;
+    }
+}
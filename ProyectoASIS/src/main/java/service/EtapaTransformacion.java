@@ -0,0 +1,113 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Etapa intermedia de la importación, entre el {@link LectorCsv} y quien escribe en la base:
+ * agrupa las filas en lotes y los transforma en varios hilos, pero los entrega en el orden
+ * del archivo. Así lo que depende del orden (la numeración de personas por vivienda) se
+ * sigue resolviendo al escribir, de a un lote por vez.
+ *
+ * Los lotes en transformación o ya transformados esperan en una cola acotada: con la cola
+ * llena se deja de pedir filas al lector, que a su vez deja de leer el archivo.
+ */
+final class EtapaTransformacion<T> implements AutoCloseable {
+
+    // Marca de fin en la cola (también después de un error del lector)
+    private final Future<T> fin = CompletableFuture.completedFuture(null);
+
+    private final LectorCsv lector;
+    private final ExecutorService hilos;
+    private final BlockingQueue<Future<T>> lotes;
+    private final Thread despachador;
+    private volatile Exception error;
+    private boolean terminado;
+
+    /**
+     * Empieza a pedir filas al lector, que ya tiene que haber entregado el encabezado.
+     * @param transformar se llama desde varios hilos a la vez: no puede usar el EntityManager
+     * @param lotesEnEspera lotes que puede haber transformándose o esperando a quien los escribe
+     */
+    EtapaTransformacion(LectorCsv lector, int filasPorLote, int hilos, int lotesEnEspera,
+                        Function<List<String[]>, T> transformar) {
+        this.lector = lector;
+        this.hilos = Executors.newFixedThreadPool(hilos, r -> {
+            Thread hilo = new Thread(r, "transformacion-csv");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.lotes = new ArrayBlockingQueue<>(lotesEnEspera);
+        this.despachador = Thread.ofVirtual().name("despachador-csv").start(() -> despachar(filasPorLote, transformar));
+    }
+
+    /**
+     * @return el próximo lote transformado, en el orden del archivo, o null al final
+     */
+    T siguiente() throws Exception {
+        if (terminado) return null;
+        Future<T> lote = lotes.take();
+        if (lote == fin) {
+            terminado = true;
+            if (error != null) throw error;
+            return null;
+        }
+        try {
+            return lote.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception causa) throw causa;
+            throw e;
+        }
+    }
+
+    /**
+     * Detiene la lectura y las transformaciones pendientes si la importación termina antes
+     * que el archivo (por un error o una cancelación).
+     */
+    @Override
+    public void close() {
+        despachador.interrupt();
+        hilos.shutdownNow();
+        lotes.clear();
+        lector.close();
+    }
+
+    private void despachar(int filasPorLote, Function<List<String[]>, T> transformar) {
+        try {
+            List<String[]> lote = new ArrayList<>(filasPorLote);
+            String[] fila;
+            while ((fila = lector.siguiente()) != null) {
+                lote.add(fila);
+                if (lote.size() == filasPorLote) {
+                    enviar(lote, transformar);
+                    lote = new ArrayList<>(filasPorLote);
+                }
+            }
+            if (!lote.isEmpty()) {
+                enviar(lote, transformar);
+            }
+        } catch (InterruptedException e) {
+            // Cerrada por la importación
+            return;
+        } catch (Exception e) {
+            error = e;
+        }
+        try {
+            lotes.put(fin);
+        } catch (InterruptedException e) {
+            // Cerrada mientras esperaba lugar en la cola
+        }
+    }
+
+    private void enviar(List<String[]> lote, Function<List<String[]>, T> transformar) throws InterruptedException {
+        lotes.put(hilos.submit(() -> transformar.apply(lote)));
+    }
+}
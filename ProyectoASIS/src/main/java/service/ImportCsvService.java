@@ -1,19 +1,38 @@
 package service;
 
-import com.opencsv.CSVReader;
 import dao_interfaces.I_PreguntaEncuestaDAO;
 import dao_interfaces.I_RespuestaEncuestaDAO;
 import dao_interfaces.I_EncuestaDAO;
+import dao_interfaces.I_ViviendaDAO;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
 import model.PreguntaEncuesta;
 import model.RespuestaEncuesta;
 import model.Encuesta;
+import model.Vivienda;
 
-import java.io.FileReader;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 @RequestScoped
 public class ImportCsvService {
@@ -27,6 +46,31 @@ public class ImportCsvService {
     @Inject
     private I_EncuestaDAO encuestaDao;
 
+    @Inject
+    private I_ViviendaDAO viviendaDao;
+
+    @Inject
+    private EntityManager em;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    @Inject
+    private AsignacionZonas asignacionZonas;
+
+    @Inject
+    private TeselasVectoriales teselasVectoriales;
+
+    // Coordenadas (anteriores y nuevas) de las viviendas tocadas por la importación en curso
+    private final List<double[]> puntosTocados = new ArrayList<>();
+    // Viviendas con coordenadas del archivo: las de lotes ya confirmados y las del lote en curso
+    private final Set<Long> geolocalizadasConfirmadas = new LinkedHashSet<>();
+    private final Set<Long> geolocalizadasLote = new LinkedHashSet<>();
+    // Avance y pedido de cancelación de la importación en curso
+    private TrabajoImportacion trabajo;
+    // Si la importación escribió algo: reimportar un archivo sin cambios no invalida cachés ni tiles
+    private boolean hayCambios;
+
     // Clase auxiliar para almacenar texto y categoría
     private static class PreguntaMapeada {
         String texto;
@@ -38,6 +82,20 @@ public class ImportCsvService {
             this.tipoRespuesta = tipoRespuesta;
         }
     }
+    // Filas del CSV por lote: sus respuestas se guardan juntas (en lotes JDBC, ver crearEnLote)
+    // y después se vacía el contexto de persistencia
+    private static final int FILAS_POR_LOTE = 200;
+    // Filas ya parseadas que pueden esperar a la etapa de transformación: con la cola llena, la lectura se frena
+    private static final int FILAS_EN_ESPERA = 2 * FILAS_POR_LOTE;
+    // Hilos que arman e interpretan las respuestas; la lectura y la escritura ocupan cada una el suyo
+    private static final int HILOS_TRANSFORMACION = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 2));
+    // Lotes transformándose o esperando a la base
+    private static final int LOTES_EN_ESPERA = HILOS_TRANSFORMACION + 1;
+
+    // Columnas del CSV de vivienda con la ubicación relevada por el GPS
+    static final String PREGUNTA_CSV_LATITUD = "lat_1_Presione_actualiza";
+    static final String PREGUNTA_CSV_LONGITUD = "long_1_Presione_actualiza";
+
     // Mapeo para preguntas de personas (branch)
     private static final Map<String, PreguntaMapeada> MAPEO_PERSONA = new HashMap<>();
     // Mapeo para preguntas generales de la vivienda (form)
@@ -149,6 +207,13 @@ public class ImportCsvService {
     MAPEO_VIVIENDA.put("97_OPCIONAL_Nombre_a", new PreguntaMapeada("0.f. Nombre y contacto opcional", model.TipoCategoria.SOCIAL, model.TipoRespuesta.TEXTO));
     }
 
+    /**
+     * Indica si la columna del CSV es una pregunta de la vivienda (form) y no de cada persona (branch)
+     */
+    public static boolean esPreguntaVivienda(String preguntaCsv) {
+        return preguntaCsv != null && MAPEO_VIVIENDA.containsKey(preguntaCsv);
+    }
+
     // Método para detectar tipo de CSV según headers (branch/persona o form/vivienda)
     private static Map<String, PreguntaMapeada> detectarMapeo(String[] headers) {
         int scorePersona = 0;
@@ -161,88 +226,447 @@ public class ImportCsvService {
         return (scorePersona >= scoreVivienda) ? MAPEO_PERSONA : MAPEO_VIVIENDA;
     }
 
-    @Transactional
+    /**
+     * Importa el archivo completo en una sola transacción: si algo falla no queda nada.
+     */
     public void importar(String rutaCsv) throws Exception {
-        try (CSVReader reader = new CSVReader(new FileReader(rutaCsv))) {
-            String[] header = reader.readNext();
-            if (header == null) return;
-
-            Map<String, PreguntaMapeada> mapeoPreguntas = detectarMapeo(header);
-
-            // Solo considerar columnas cuyo header esté en el mapeo
-            Map<Integer, PreguntaEncuesta> preguntasMap = new HashMap<>();
-            for (int i = 0; i < header.length; i++) {
-                String preguntaCsv = header[i];
-                if (preguntaCsv == null || preguntaCsv.trim().isEmpty()) continue;
-                if (!mapeoPreguntas.containsKey(preguntaCsv)) continue; // ignorar columnas no mapeadas
-
-                PreguntaEncuesta pregunta = preguntaDao.findByPreguntaCsv(preguntaCsv);
-                PreguntaMapeada pm = mapeoPreguntas.get(preguntaCsv);
-                if (pregunta == null) {
-                    pregunta = new PreguntaEncuesta();
-                    pregunta.setPreguntaCsv(preguntaCsv);
+        importar(rutaCsv, true);
+    }
+
+    /**
+     * Importa un archivo en UTF-8 (o con la codificación que indique su BOM).
+     */
+    public void importar(String rutaCsv, boolean todoONada) throws Exception {
+        try (InputStream entrada = Files.newInputStream(Paths.get(rutaCsv))) {
+            importar(entrada, StandardCharsets.UTF_8, todoONada);
+        }
+    }
+
+    /**
+     * La importación maneja su propia transacción sobre el EntityManager del pedido (los
+     * DAO se suman a ella en lugar de confirmar cada fila) y cada {@link #FILAS_POR_LOTE}
+     * filas envía lo pendiente a la base y vacía el contexto de persistencia.
+     *
+     * El CSV se parsea a medida que llegan los bytes, en paralelo con la escritura en la base
+     * (ver {@link LectorCsv}), que cierra el stream al terminar.
+     *
+     * Se puede volver a importar una exportación actualizada: las filas que no cambiaron
+     * desde la última importación se saltean y las demás se aplican como diferencias sobre
+     * las respuestas que ya existen.
+     * @param charset codificación del archivo si no empieza con BOM
+     * @param todoONada true: se confirma una sola vez al final y un error deshace todo el
+     *        archivo; false: se confirma cada lote y un error conserva los lotes anteriores
+     * @throws IllegalArgumentException si el archivo no está en esa codificación
+     */
+    public void importar(InputStream entrada, Charset charset, boolean todoONada) throws Exception {
+        importar(entrada, charset, todoONada, new TrabajoImportacion(0, null, -1, todoONada));
+    }
+
+    /**
+     * Igual que {@link #importar(InputStream, Charset, boolean)}, informando el avance en el
+     * trabajo y cortando si se pide su cancelación.
+     * @throws CancellationException si se canceló; se deshace como cualquier otro error
+     */
+    public void importar(InputStream entrada, Charset charset, boolean todoONada, TrabajoImportacion trabajo) throws Exception {
+        this.trabajo = trabajo;
+        this.hayCambios = false;
+        long versionInicial = versionDatos.actual();
+        EntityTransaction tx = em.getTransaction();
+        try (LectorCsv lector = new LectorCsv(entrada, charset, FILAS_EN_ESPERA, trabajo::filaParseada)) {
+            tx.begin();
+            importarArchivo(lector, todoONada);
+            confirmar(tx);
+        } catch (Exception e) {
+            if (tx.isActive()) tx.rollback();
+            em.clear();
+            throw e;
+        } finally {
+            try {
+                // Zona y barrio por polígono, en bloque para las viviendas geolocalizadas que quedaron guardadas
+                if (!geolocalizadasConfirmadas.isEmpty()) {
+                    asignacionZonas.asignar(geolocalizadasConfirmadas);
+                }
+            } finally {
+                if (hayCambios) {
+                    // Las respuestas cambiaron (total o parcialmente): snapshot, índice y caché quedan desactualizados
+                    long versionFinal = versionDatos.incrementarRespuestas();
+                    // De los tiles vectoriales en disco solo se descartan los que cubren viviendas tocadas
+                    teselasVectoriales.invalidar(puntosTocados, versionInicial, versionFinal);
+                }
+            }
+        }
+    }
+
+    private void importarArchivo(LectorCsv lector, boolean todoONada) throws Exception {
+        String[] header = lector.siguiente();
+        if (header == null) return;
+
+        Map<String, PreguntaMapeada> mapeoPreguntas = detectarMapeo(header);
+        Archivo archivo = new Archivo();
+
+        // Catálogo de preguntas en una sola consulta; solo se escriben las nuevas o las que cambiaron
+        Map<String, PreguntaEncuesta> catalogo = preguntaDao.obtenerPorPreguntaCsv();
+        for (int i = 0; i < header.length; i++) {
+            String preguntaCsv = header[i];
+            if (preguntaCsv == null || preguntaCsv.trim().isEmpty()) continue;
+            if (!mapeoPreguntas.containsKey(preguntaCsv)) continue; // ignorar columnas no mapeadas
+
+            PreguntaEncuesta pregunta = catalogo.get(preguntaCsv);
+            PreguntaMapeada pm = mapeoPreguntas.get(preguntaCsv);
+            if (pregunta == null) {
+                pregunta = new PreguntaEncuesta();
+                pregunta.setPreguntaCsv(preguntaCsv);
+                pregunta.setTexto(pm.texto);
+                pregunta.setCategoria(pm.categoria);
+                pregunta.setTipoRespuesta(pm.tipoRespuesta);
+                preguntaDao.crear(pregunta);
+                catalogo.put(preguntaCsv, pregunta);
+                hayCambios = true;
+            } else {
+                // Si ya existe, actualizar texto, categoría y tipoRespuesta si cambiaron
+                boolean cambio = false;
+                if (!pm.texto.equals(pregunta.getTexto())) {
                     pregunta.setTexto(pm.texto);
+                    cambio = true;
+                }
+                if (pregunta.getCategoria() == null || !pm.categoria.equals(pregunta.getCategoria())) {
                     pregunta.setCategoria(pm.categoria);
+                    cambio = true;
+                }
+                boolean cambioTipo = pregunta.getTipoRespuesta() == null || !pm.tipoRespuesta.equals(pregunta.getTipoRespuesta());
+                if (cambioTipo) {
                     pregunta.setTipoRespuesta(pm.tipoRespuesta);
-                    preguntaDao.crear(pregunta);
-                } else {
-                    // Si ya existe, actualizar texto, categoría y tipoRespuesta si cambiaron
-                    if (!pm.texto.equals(pregunta.getTexto())) {
-                        pregunta.setTexto(pm.texto);
-                    }
-                    if (pregunta.getCategoria() == null || !pm.categoria.equals(pregunta.getCategoria())) {
-                        pregunta.setCategoria(pm.categoria);
-                    }
-                    if (pregunta.getTipoRespuesta() == null || !pm.tipoRespuesta.equals(pregunta.getTipoRespuesta())) {
-                        pregunta.setTipoRespuesta(pm.tipoRespuesta);
-                    }
+                    cambio = true;
+                }
+                if (cambio) {
                     preguntaDao.actualizar(pregunta);
+                    hayCambios = true;
+                }
+                if (cambioTipo) {
+                    // Las columnas tipadas de sus respuestas guardadas se calcularon con el tipo anterior
+                    MigracionValoresTipados.retipar(em, pregunta);
                 }
-                preguntasMap.put(i, pregunta);
             }
+            archivo.preguntas.put(i, pregunta);
+            archivo.idsPreguntas.add(pregunta.getId());
+        }
+        archivo.deVivienda = mapeoPreguntas == MAPEO_VIVIENDA;
 
-            // Guardar solo respuestas de columnas mapeadas
-            String[] fila;
-            Map<String, Integer> contadoresPorVivienda = new HashMap<>(); // Contador por vivienda
-            while ((fila = reader.readNext()) != null) {
-                // Obtener el identificador de vivienda de la primera columna
-                String idVivienda = (fila.length > 0 && fila[0] != null) ? fila[0].trim() : null;
-                
-                if (idVivienda == null || idVivienda.isEmpty()) {
-                    // Si no hay identificador de vivienda, saltar esta fila
-                    continue;
+        // Columnas de ubicación: solo vienen en el CSV de vivienda (form)
+        archivo.columnaLatitud = mapeoPreguntas == MAPEO_VIVIENDA ? Arrays.asList(header).indexOf(PREGUNTA_CSV_LATITUD) : -1;
+        archivo.columnaLongitud = mapeoPreguntas == MAPEO_VIVIENDA ? Arrays.asList(header).indexOf(PREGUNTA_CSV_LONGITUD) : -1;
+
+        archivo.conUbicacion = archivo.columnaLatitud >= 0 && archivo.columnaLongitud >= 0;
+
+        // Lector -> transformación en paralelo -> escritura en la base, en este hilo y en el orden del archivo
+        try (EtapaTransformacion<LoteLeido> etapa = new EtapaTransformacion<>(lector, FILAS_POR_LOTE,
+                HILOS_TRANSFORMACION, LOTES_EN_ESPERA, filas -> transformar(archivo, filas))) {
+            List<RespuestaEncuesta> pendientes = new ArrayList<>();
+            LoteLeido lote = etapa.siguiente();
+            while (lote != null) {
+                if (trabajo.cancelacionPedida()) {
+                    throw new CancellationException("Importación cancelada");
                 }
-                
-                // Incrementar contador para esta vivienda específica
-                int contadorPersona = contadoresPorVivienda.getOrDefault(idVivienda, 0) + 1;
-                contadoresPorVivienda.put(idVivienda, contadorPersona);
-                
-                // Crear un idExterno único por persona: vivienda + contador
-                String idExterno = idVivienda + "_persona_" + contadorPersona;
-                
-                // Buscar si ya existe una encuesta con este idExterno (debería ser único)
-                Encuesta encuesta = encuestaDao.findByIdExterno(idExterno);
-                
-                if (encuesta == null) {
-                    // Si no existe, crear una nueva encuesta única por persona
-                    encuesta = new Encuesta();
-                    encuesta.setIdExterno(idExterno); // ej: "vivienda123_persona_1"
-                    encuestaDao.crear(encuesta);
+                procesarLote(archivo, lote, pendientes);
+                trabajo.filasProcesadas(lote.filas());
+                // El último lote no se cierra: lo confirma la importación
+                lote = etapa.siguiente();
+                if (lote != null) {
+                    cerrarLote(pendientes, todoONada);
                 }
+            }
+            guardar(pendientes);
+        }
+    }
 
-                for (int i = 0; i < fila.length; i++) {
-                    if (!preguntasMap.containsKey(i)) continue; // ignorar columnas no mapeadas
-                    String respuesta = fila[i];
-                    PreguntaEncuesta pregunta = preguntasMap.get(i);
-                    if (pregunta != null && respuesta != null && !respuesta.trim().isEmpty()) {
-                        RespuestaEncuesta resp = new RespuestaEncuesta();
-                        resp.setPregunta(pregunta);
-                        resp.setValor(respuesta);
-                        resp.setEncuesta(encuesta); // Asignar el id de encuesta aquí
-                        respuestaDao.crear(resp);
-                    }
+    /**
+     * Estado de un archivo que se mantiene entre lotes. Lo que usan los hilos de
+     * transformación (preguntas y columnas) no cambia después del encabezado.
+     */
+    private static class Archivo {
+        // Columna del CSV -> pregunta, solo para las columnas mapeadas
+        final Map<Integer, PreguntaEncuesta> preguntas = new HashMap<>();
+        final Set<Long> idsPreguntas = new LinkedHashSet<>();
+        // CSV de vivienda (form) o de personas (branch): cada uno guarda su hash en la encuesta
+        boolean deVivienda;
+        int columnaLatitud = -1;
+        int columnaLongitud = -1;
+        boolean conUbicacion;
+        final Map<String, Integer> contadoresPorVivienda = new HashMap<>(); // Contador por vivienda
+        final Map<String, Vivienda> viviendas = new HashMap<>(); // Una búsqueda por vivienda y archivo
+
+        String hash(Encuesta encuesta) {
+            return deVivienda ? encuesta.getHashFilaVivienda() : encuesta.getHashFilaPersona();
+        }
+
+        void guardarHash(Encuesta encuesta, String hash) {
+            if (deVivienda) {
+                encuesta.setHashFilaVivienda(hash);
+            } else {
+                encuesta.setHashFilaPersona(hash);
+            }
+        }
+    }
+
+    /**
+     * Fila del CSV ya transformada: respuestas con sus valores tipados calculados, todavía sin encuesta
+     * @param hash SHA-256 (hex) de las respuestas de la fila, para saltearla si no cambió desde la última importación
+     */
+    private record FilaLeida(String idVivienda, List<RespuestaEncuesta> respuestas, Double latitud, Double longitud,
+                             String hash) {}
+
+    /**
+     * @param filas filas del CSV del lote, contando las que se saltearon
+     */
+    private record LoteLeido(int filas, List<FilaLeida> leidas) {}
+
+    /**
+     * Arma las respuestas de las columnas mapeadas e interpreta sus valores. Corre en los
+     * hilos de transformación: no toca el EntityManager ni el estado que depende del orden.
+     */
+    private static LoteLeido transformar(Archivo archivo, List<String[]> filas) {
+        MessageDigest sha = sha256();
+        List<FilaLeida> leidas = new ArrayList<>(filas.size());
+        for (String[] fila : filas) {
+            // Obtener el identificador de vivienda de la primera columna
+            String idVivienda = (fila.length > 0 && fila[0] != null) ? fila[0].trim() : null;
+
+            if (idVivienda == null || idVivienda.isEmpty()) {
+                // Si no hay identificador de vivienda, saltar esta fila
+                continue;
+            }
+
+            // Guardar solo respuestas de columnas mapeadas
+            List<RespuestaEncuesta> respuestas = new ArrayList<>();
+            for (int i = 0; i < fila.length; i++) {
+                if (!archivo.preguntas.containsKey(i)) continue; // ignorar columnas no mapeadas
+                String respuesta = fila[i];
+                PreguntaEncuesta pregunta = archivo.preguntas.get(i);
+                if (pregunta != null && respuesta != null && !respuesta.trim().isEmpty()) {
+                    RespuestaEncuesta resp = new RespuestaEncuesta();
+                    resp.setPregunta(pregunta);
+                    resp.setValor(respuesta);
+                    // Al guardar ya no se vuelven a interpretar
+                    resp.actualizarValoresTipados();
+                    respuestas.add(resp);
                 }
             }
+
+            Double latitud = null, longitud = null;
+            if (archivo.conUbicacion) {
+                latitud = RespuestaEncuesta.aNumero(valorEn(fila, archivo.columnaLatitud));
+                longitud = RespuestaEncuesta.aNumero(valorEn(fila, archivo.columnaLongitud));
+            }
+            leidas.add(new FilaLeida(idVivienda, respuestas, latitud, longitud, hash(sha, respuestas)));
+        }
+        return new LoteLeido(filas.size(), leidas);
+    }
+
+    /**
+     * Hash de lo que la importación guarda de la fila: pregunta y valor de cada respuesta,
+     * en el orden de las columnas. Las columnas vacías o no mapeadas no cuentan.
+     */
+    private static String hash(MessageDigest sha, List<RespuestaEncuesta> respuestas) {
+        for (RespuestaEncuesta resp : respuestas) {
+            sha.update(resp.getPregunta().getPreguntaCsv().getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0x1F);
+            sha.update(resp.getValor().getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0x1E);
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Numera las personas de cada vivienda, resuelve las viviendas y encuestas existentes
+     * del lote con una consulta IN cada una y asigna las encuestas a las respuestas.
+     *
+     * Las filas con el mismo hash que en la última importación no se escriben. Las que
+     * cambiaron se comparan con las respuestas que ya tiene la encuesta (ver
+     * {@link #actualizarRespuestas}), así que reimportar una exportación actualizada no
+     * duplica respuestas.
+     */
+    private void procesarLote(Archivo archivo, LoteLeido lote, List<RespuestaEncuesta> pendientes) {
+        List<FilaLeida> filas = lote.leidas();
+        if (filas.isEmpty()) return;
+        List<String> idsExternos = new ArrayList<>(filas.size());
+        for (FilaLeida fila : filas) {
+            // Incrementar contador para esta vivienda específica
+            int contadorPersona = archivo.contadoresPorVivienda.getOrDefault(fila.idVivienda(), 0) + 1;
+            archivo.contadoresPorVivienda.put(fila.idVivienda(), contadorPersona);
+
+            // Crear un idExterno único por persona: vivienda + contador
+            idsExternos.add(fila.idVivienda() + "_persona_" + contadorPersona);
+        }
+
+        // Encuestas que ya existen con estos idExterno (deberían ser únicos)
+        Map<String, Encuesta> encuestas = encuestaDao.findByIdsExternos(idsExternos);
+
+        // Solo las filas nuevas o que cambiaron necesitan su vivienda y las respuestas anteriores
+        List<Integer> cambiadas = new ArrayList<>();
+        Set<String> viviendasNuevas = new LinkedHashSet<>();
+        Set<Long> encuestasCambiadas = new LinkedHashSet<>();
+        for (int f = 0; f < filas.size(); f++) {
+            FilaLeida fila = filas.get(f);
+            Encuesta encuesta = encuestas.get(idsExternos.get(f));
+            if (encuesta != null && encuesta.getVivienda() != null && fila.hash().equals(archivo.hash(encuesta))) {
+                continue;
+            }
+            cambiadas.add(f);
+            if (!archivo.viviendas.containsKey(fila.idVivienda())) {
+                viviendasNuevas.add(fila.idVivienda());
+            }
+            if (encuesta != null) {
+                encuestasCambiadas.add(encuesta.getId());
+            }
+        }
+        trabajo.filasSinCambios(filas.size() - cambiadas.size());
+        if (cambiadas.isEmpty()) return;
+        hayCambios = true;
+
+        Map<String, Vivienda> existentes = viviendaDao.findByIdsExternos(viviendasNuevas);
+        for (String idVivienda : viviendasNuevas) {
+            archivo.viviendas.put(idVivienda, obtenerOCrearVivienda(idVivienda, existentes.get(idVivienda)));
+        }
+        // Respuestas actuales de las encuestas que cambiaron, solo de las preguntas de este archivo
+        Map<Long, List<RespuestaEncuesta>> anteriores = new HashMap<>();
+        for (RespuestaEncuesta resp : respuestaDao.obtenerPorEncuestasYPreguntas(encuestasCambiadas, archivo.idsPreguntas)) {
+            anteriores.computeIfAbsent(resp.getEncuesta().getId(), id -> new ArrayList<>()).add(resp);
+        }
+
+        for (int f : cambiadas) {
+            FilaLeida fila = filas.get(f);
+            String idExterno = idsExternos.get(f);
+            Vivienda vivienda = archivo.viviendas.get(fila.idVivienda());
+
+            Encuesta encuesta = encuestas.get(idExterno);
+            if (encuesta == null) {
+                // Si no existe, crear una nueva encuesta única por persona
+                encuesta = new Encuesta();
+                encuesta.setIdExterno(idExterno); // ej: "vivienda123_persona_1"
+                encuesta.setVivienda(vivienda);
+                archivo.guardarHash(encuesta, fila.hash());
+                encuestaDao.crear(encuesta);
+                for (RespuestaEncuesta resp : fila.respuestas()) {
+                    resp.setEncuesta(encuesta); // Asignar el id de encuesta aquí
+                    pendientes.add(resp);
+                }
+            } else {
+                if (encuesta.getVivienda() == null) {
+                    encuesta.setVivienda(vivienda);
+                }
+                archivo.guardarHash(encuesta, fila.hash());
+                encuestaDao.actualizar(encuesta);
+                actualizarRespuestas(encuesta, fila.respuestas(), anteriores.getOrDefault(encuesta.getId(), List.of()), pendientes);
+            }
+
+            if (archivo.conUbicacion) {
+                registrarUbicacion(vivienda, encuesta, fila.latitud(), fila.longitud());
+            }
+            if (vivienda.getLatitud() != null) {
+                geolocalizadasLote.add(vivienda.getId());
+            }
+        }
+    }
+
+    /**
+     * Aplica a una encuesta existente las respuestas de la fila, pregunta por pregunta: agrega
+     * las que no tenía, cambia el valor de las que cambiaron y elimina (lógicamente) las que ya
+     * no vienen en la fila y las repetidas por importaciones anteriores.
+     * @param anteriores respuestas no eliminadas de la encuesta, de las preguntas del archivo, por id
+     */
+    private void actualizarRespuestas(Encuesta encuesta, List<RespuestaEncuesta> nuevas,
+                                      List<RespuestaEncuesta> anteriores, List<RespuestaEncuesta> pendientes) {
+        Map<Long, Deque<RespuestaEncuesta>> porPregunta = new HashMap<>();
+        for (RespuestaEncuesta anterior : anteriores) {
+            porPregunta.computeIfAbsent(anterior.getPreguntaId(), id -> new ArrayDeque<>()).add(anterior);
+        }
+        for (RespuestaEncuesta resp : nuevas) {
+            Deque<RespuestaEncuesta> mismaPregunta = porPregunta.get(resp.getPreguntaId());
+            RespuestaEncuesta anterior = mismaPregunta != null ? mismaPregunta.poll() : null;
+            if (anterior == null) {
+                resp.setEncuesta(encuesta);
+                pendientes.add(resp);
+            } else if (!Objects.equals(anterior.getValor(), resp.getValor())) {
+                // Está en el contexto de persistencia: el UPDATE sale al enviar el lote
+                anterior.setValor(resp.getValor());
+                trabajo.respuestasEscritas(1);
+            }
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        for (Deque<RespuestaEncuesta> sobrantes : porPregunta.values()) {
+            for (RespuestaEncuesta sobrante : sobrantes) {
+                sobrante.setFechaEliminacion(ahora);
+                trabajo.respuestasEscritas(1);
+            }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Guarda las respuestas del lote, lo confirma si no es todo o nada y vacía el contexto
+     * de persistencia: las entidades que se siguen usando (preguntas, viviendas) quedan
+     * desasociadas y se vuelven a asociar al actualizarlas.
+     */
+    private void cerrarLote(List<RespuestaEncuesta> pendientes, boolean todoONada) {
+        guardar(pendientes);
+        if (todoONada) {
+            em.flush();
+        } else {
+            EntityTransaction tx = em.getTransaction();
+            confirmar(tx);
+            tx.begin();
+        }
+        em.clear();
+    }
+
+    private void confirmar(EntityTransaction tx) {
+        tx.commit();
+        geolocalizadasConfirmadas.addAll(geolocalizadasLote);
+        geolocalizadasLote.clear();
+    }
+
+    private void guardar(List<RespuestaEncuesta> pendientes) {
+        if (pendientes.isEmpty()) return;
+        respuestaDao.crearEnLote(pendientes);
+        trabajo.respuestasEscritas(pendientes.size());
+        pendientes.clear();
+    }
+
+    /**
+     * Guarda en la vivienda las coordenadas ya validadas, para que el mapa no tenga que
+     * leer ni parsear las respuestas de texto.
+     */
+    private void registrarUbicacion(Vivienda vivienda, Encuesta encuestaHogar, Double latitud, Double longitud) {
+        vivienda.setEncuestaHogar(encuestaHogar);
+        vivienda.setUbicacion(latitud, longitud);
+        viviendaDao.actualizar(vivienda);
+        registrarPuntoTocado(vivienda);
+    }
+
+    private Vivienda obtenerOCrearVivienda(String idVivienda, Vivienda vivienda) {
+        if (vivienda == null) {
+            vivienda = new Vivienda(idVivienda);
+            viviendaDao.crear(vivienda);
+        }
+        // Ubicación previa: sus tiles cambian si la vivienda se mueve o suma encuestas
+        registrarPuntoTocado(vivienda);
+        return vivienda;
+    }
+
+    private void registrarPuntoTocado(Vivienda vivienda) {
+        if (vivienda.getLatitud() != null && vivienda.getLongitud() != null) {
+            puntosTocados.add(new double[] { vivienda.getLatitud(), vivienda.getLongitud() });
+        }
+    }
+
+    private static String valorEn(String[] fila, int columna) {
+        return columna < fila.length ? fila[columna] : null;
+    }
+}
@@ -0,0 +1,282 @@
+package service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import config.JPAProducer;
+import dto.FiltroMultiple;
+import dto.Filtros;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Índice en memoria de las dimensiones de {@link Filtros} que dependen de la encuesta y
+ * no de una respuesta puntual: zona, barrio, campaña, jornada, encuestador,
+ * organización social, sexo y rango de fechas.
+ *
+ * Cada valor de cada dimensión apunta a un bitmap con los ids de encuesta que le
+ * corresponden, precalculado siguiendo Encuesta.zona, Encuesta.jornada,
+ * Jornada.campaña y Campaña.barrio. Combinar dimensiones es entonces una intersección
+ * de bitmaps en lugar de un recorrido por los grafos de entidades.
+ *
+ * Un valor se busca por nombre (sin distinguir mayúsculas) o, escrito "id:3", por id:
+ * ids y nombres van en mapas separados, así una zona llamada "3" no se mezcla con la de id 3.
+ *
+ * Se reconstruye de forma perezosa cuando cambia la {@link VersionDatos} o cuando se
+ * publica un {@link SnapshotRespuestas} nuevo, del que se toma el sexo.
+ */
+@ApplicationScoped
+public class IndiceDimensiones {
+
+    // Columna del CSV de personas con la identidad de género
+    static final String PREGUNTA_CSV_SEXO = "9_4_De_acuerdo_a_la_";
+    // Prefijo de un valor de filtro que es un id y no un nombre
+    static final String PREFIJO_ID = "id:";
+
+    @Inject
+    private JPAProducer jpaProducer;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    @Inject
+    private SnapshotRespuestas snapshotRespuestas;
+
+    private volatile Estado estado;
+
+    private enum Dimension {
+        ZONA, BARRIO, CAMPANIA, JORNADA, ENCUESTADOR, ORGANIZACION_SOCIAL, SEXO
+    }
+
+    /**
+     * Bitmaps de los valores de una dimensión, por id y por nombre normalizado
+     */
+    private static final class Valores {
+        final Map<Long, RoaringBitmap> porId = new HashMap<>();
+        final Map<String, RoaringBitmap> porNombre = new HashMap<>();
+
+        /**
+         * @param valor valor normalizado del filtro
+         * @return null si ningún valor de la dimensión coincide
+         */
+        RoaringBitmap buscar(String valor) {
+            if (!valor.startsWith(PREFIJO_ID)) {
+                return porNombre.get(valor);
+            }
+            try {
+                return porId.get(Long.valueOf(valor.substring(PREFIJO_ID.length()).trim()));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class Estado {
+        final long version;
+        final SnapshotRespuestas.Columnas origen;
+        final Map<Dimension, Valores> bitmaps;
+        // Encuestas con fecha, ordenadas por fecha (epoch ms) para resolver rangos por búsqueda binaria
+        final long[] fechas;
+        final int[] encuestasPorFecha;
+
+        Estado(long version, SnapshotRespuestas.Columnas origen, Map<Dimension, Valores> bitmaps,
+               long[] fechas, int[] encuestasPorFecha) {
+            this.version = version;
+            this.origen = origen;
+            this.bitmaps = bitmaps;
+            this.fechas = fechas;
+            this.encuestasPorFecha = encuestasPorFecha;
+        }
+    }
+
+    /**
+     * Resuelve las dimensiones de los filtros como intersección de bitmaps.
+     * @return null si ninguna dimensión está informada (sin restricción), o el bitmap
+     *         de encuestas que cumplen todas las dimensiones informadas
+     */
+    public RoaringBitmap resolver(Filtros filtros) {
+        if (filtros == null) {
+            return null;
+        }
+        Map<Dimension, String> pedidas = new EnumMap<>(Dimension.class);
+        pedir(pedidas, Dimension.ZONA, filtros.getZona());
+        pedir(pedidas, Dimension.BARRIO, filtros.getBarrio());
+        pedir(pedidas, Dimension.CAMPANIA, filtros.getCampania());
+        pedir(pedidas, Dimension.JORNADA, filtros.getJornada());
+        pedir(pedidas, Dimension.ENCUESTADOR, filtros.getEncuestador());
+        pedir(pedidas, Dimension.ORGANIZACION_SOCIAL, filtros.getOrganizacionSocial());
+        pedir(pedidas, Dimension.SEXO, filtros.getSexo());
+        boolean porFecha = filtros.getFechaDesde() != null || filtros.getFechaHasta() != null;
+        if (pedidas.isEmpty() && !porFecha) {
+            return null;
+        }
+
+        Estado actual = obtenerEstado();
+        RoaringBitmap resultado = null;
+        for (Map.Entry<Dimension, String> pedida : pedidas.entrySet()) {
+            RoaringBitmap candidatos = actual.bitmaps.get(pedida.getKey()).buscar(pedida.getValue());
+            if (candidatos == null) {
+                return new RoaringBitmap();
+            }
+            resultado = (resultado == null) ? candidatos.clone() : RoaringBitmap.and(resultado, candidatos);
+            if (resultado.isEmpty()) {
+                return resultado;
+            }
+        }
+        if (porFecha) {
+            RoaringBitmap enRango = rangoFechas(actual, filtros.getFechaDesde(), filtros.getFechaHasta());
+            resultado = (resultado == null) ? enRango : RoaringBitmap.and(resultado, enRango);
+        }
+        return resultado;
+    }
+
+    private static void pedir(Map<Dimension, String> pedidas, Dimension dimension, String valor) {
+        // Vacío o "TODAS" no restringe
+        if (valor == null || valor.isBlank() || FiltroMultiple.TODAS.equalsIgnoreCase(valor.trim())) return;
+        pedidas.put(dimension, normalizar(valor));
+    }
+
+    private static RoaringBitmap rangoFechas(Estado actual, Date desde, Date hasta) {
+        int inicio = desde == null ? 0 : primeraPosicion(actual.fechas, desde.getTime());
+        int fin = hasta == null ? actual.fechas.length : primeraPosicion(actual.fechas, hasta.getTime() + 1);
+        RoaringBitmap enRango = new RoaringBitmap();
+        if (inicio < fin) {
+            enRango.add(Arrays.copyOfRange(actual.encuestasPorFecha, inicio, fin));
+        }
+        return enRango;
+    }
+
+    // Primera posición con fecha >= valor
+    private static int primeraPosicion(long[] fechas, long valor) {
+        int bajo = 0, alto = fechas.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (fechas[medio] < valor) bajo = medio + 1; else alto = medio;
+        }
+        return bajo;
+    }
+
+    private Estado obtenerEstado() {
+        SnapshotRespuestas.Columnas columnas = snapshotRespuestas.obtener();
+        Estado actual = estado;
+        if (actual != null && actual.version == versionDatos.actual() && actual.origen == columnas) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = estado;
+            long version = versionDatos.actual();
+            if (actual == null || actual.version != version || actual.origen != columnas) {
+                actual = construir(version, columnas);
+                estado = actual;
+            }
+            return actual;
+        }
+    }
+
+    private Estado construir(long version, SnapshotRespuestas.Columnas columnas) {
+        Map<Dimension, Valores> bitmaps = new EnumMap<>(Dimension.class);
+        for (Dimension d : Dimension.values()) {
+            bitmaps.put(d, new Valores());
+        }
+        List<long[]> conFecha = new ArrayList<>();
+
+        EntityManager em = jpaProducer.createEntityManager();
+        try {
+            // Organizaciones sociales por barrio
+            Map<Long, List<Object[]>> organizacionesPorBarrio = new HashMap<>();
+            for (Object[] fila : em.createQuery(
+                    "SELECT b.id, o.id, o.nombre FROM Barrio b INNER JOIN b.organizacionesSociales o", Object[].class)
+                    .getResultList()) {
+                organizacionesPorBarrio.computeIfAbsent((Long) fila[0], k -> new ArrayList<>()).add(fila);
+            }
+
+            // Zona, barrio (por la zona, la campaña o el polígono que contiene la vivienda), campaña, jornada y fecha de cada encuesta
+            for (Object[] fila : em.createQuery(
+                    "SELECT e.id, e.fecha, z.id, z.nombre, bz.id, bz.nombre, j.id, j.fecha, c.id, c.nombre, bc.id, bc.nombre, bv.id, bv.nombre " +
+                    "FROM Encuesta e LEFT JOIN e.zona z LEFT JOIN z.barrio bz " +
+                    "LEFT JOIN e.jornada j LEFT JOIN j.campaña c LEFT JOIN c.barrio bc " +
+                    "LEFT JOIN e.vivienda v LEFT JOIN v.barrio bv", Object[].class)
+                    .getResultList()) {
+                int encuestaId = Math.toIntExact((Long) fila[0]);
+                if (fila[1] != null) {
+                    conFecha.add(new long[] { ((Date) fila[1]).getTime(), encuestaId });
+                }
+                agregar(bitmaps, Dimension.ZONA, encuestaId, fila[2], (String) fila[3]);
+                agregar(bitmaps, Dimension.BARRIO, encuestaId, fila[4], (String) fila[5]);
+                agregar(bitmaps, Dimension.JORNADA, encuestaId, fila[6], fila[7] != null ? ((LocalDate) fila[7]).toString() : null);
+                agregar(bitmaps, Dimension.CAMPANIA, encuestaId, fila[8], (String) fila[9]);
+                agregar(bitmaps, Dimension.BARRIO, encuestaId, fila[10], (String) fila[11]);
+                agregar(bitmaps, Dimension.BARRIO, encuestaId, fila[12], (String) fila[13]);
+                for (Object barrioId : new Object[] { fila[4], fila[10], fila[12] }) {
+                    for (Object[] org : organizacionesPorBarrio.getOrDefault((Long) barrioId, List.of())) {
+                        agregar(bitmaps, Dimension.ORGANIZACION_SOCIAL, encuestaId, org[1], (String) org[2]);
+                    }
+                }
+            }
+
+            // Encuestadores asignados a la campaña de la jornada de cada encuesta
+            for (Object[] fila : em.createQuery(
+                    "SELECT e.id, enc.id, dp.nombre, dp.apellido, dp.dni " +
+                    "FROM Encuesta e INNER JOIN e.jornada j INNER JOIN j.campaña c INNER JOIN c.encuestador enc " +
+                    "LEFT JOIN enc.datosPersonales dp", Object[].class)
+                    .getResultList()) {
+                int encuestaId = Math.toIntExact((Long) fila[0]);
+                String nombre = fila[2] != null && fila[3] != null ? fila[2] + " " + fila[3] : null;
+                agregar(bitmaps, Dimension.ENCUESTADOR, encuestaId, fila[1], nombre);
+                agregar(bitmaps, Dimension.ENCUESTADOR, encuestaId, null, (String) fila[4]);
+            }
+        } finally {
+            em.close();
+        }
+
+        // Sexo: respuesta de la propia persona a la pregunta de identidad de género
+        for (int fila = 0; fila < columnas.filas(); fila++) {
+            SnapshotRespuestas.Pregunta p = columnas.pregunta(fila);
+            if (p != null && PREGUNTA_CSV_SEXO.equals(p.preguntaCsv())) {
+                agregar(bitmaps, Dimension.SEXO, columnas.encuestaId(fila), null, columnas.valor(fila));
+            }
+        }
+
+        conFecha.sort((a, b) -> Long.compare(a[0], b[0]));
+        long[] fechas = new long[conFecha.size()];
+        int[] encuestasPorFecha = new int[conFecha.size()];
+        for (int i = 0; i < fechas.length; i++) {
+            fechas[i] = conFecha.get(i)[0];
+            encuestasPorFecha[i] = (int) conFecha.get(i)[1];
+        }
+
+        for (Valores valores : bitmaps.values()) {
+            valores.porId.values().forEach(RoaringBitmap::runOptimize);
+            valores.porNombre.values().forEach(RoaringBitmap::runOptimize);
+        }
+        return new Estado(version, columnas, bitmaps, fechas, encuestasPorFecha);
+    }
+
+    /**
+     * Registra la encuesta bajo el id y el nombre del valor, así el filtro acepta cualquiera de los dos.
+     */
+    private static void agregar(Map<Dimension, Valores> bitmaps, Dimension dimension,
+                                int encuestaId, Object id, String nombre) {
+        Valores valores = bitmaps.get(dimension);
+        if (id != null) {
+            valores.porId.computeIfAbsent((Long) id, k -> new RoaringBitmap()).add(encuestaId);
+        }
+        if (nombre != null && !nombre.isBlank()) {
+            valores.porNombre.computeIfAbsent(normalizar(nombre), k -> new RoaringBitmap()).add(encuestaId);
+        }
+    }
+
+    private static String normalizar(String valor) {
+        return valor.trim().toLowerCase(Locale.ROOT);
+    }
+}
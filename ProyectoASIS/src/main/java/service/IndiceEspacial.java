@@ -0,0 +1,386 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import config.JPAProducer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Índice espacial en memoria de las viviendas geolocalizadas, armado con las coordenadas
+ * tipadas de {@link model.Vivienda} (validadas al importar el formulario de vivienda).
+ *
+ * Usa una grilla jerárquica sobre la proyección Web Mercator, la misma de los tiles de
+ * Leaflet: en el nivel n el mundo se divide en 2^n x 2^n celdas. Cada nivel se arma la
+ * primera vez que se usa y una consulta por bbox elige el nivel según el zoom (8 x 8
+ * celdas por tile visible), así la cantidad de celdas visitadas depende del viewport y no
+ * del total de viviendas.
+ *
+ * Se reconstruye de forma perezosa cuando cambia la {@link VersionDatos}.
+ */
+@ApplicationScoped
+public class IndiceEspacial {
+
+    public static final int NIVEL_MAXIMO = 24;
+    // Celdas por lado de cada tile del mapa: 2^3 = 8
+    private static final int NIVELES_POR_TILE = 3;
+    // Latitud máxima representable en Web Mercator
+    private static final double LATITUD_MAXIMA = 85.05112878;
+
+    @Inject
+    private JPAProducer jpaProducer;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    private volatile Estado estado;
+
+    /**
+     * Vivienda con coordenadas válidas y las encuestas (personas) que le pertenecen.
+     * @param encuestaHogar encuesta en la que se respondió el formulario de la vivienda (puede ser null)
+     */
+    public record Vivienda(String id, Long encuestaHogar, double latitud, double longitud, long[] encuestas) {}
+
+    // Viviendas de una celda de la grilla con su total de encuestas y centroide precalculados
+    private record Celda(int[] viviendas, long encuestas, double latitud, double longitud) {}
+
+    /**
+     * Agrupamiento de viviendas cercanas: una celda de la grilla en el nivel usado.
+     */
+    public record Grupo(double latitud, double longitud, long encuestas, List<Vivienda> viviendas) {}
+
+    private static final class Estado {
+        final long version;
+        final Vivienda[] viviendas;
+        // Celda de cada vivienda en el nivel máximo; los niveles menores se obtienen por desplazamiento
+        final int[] x;
+        final int[] y;
+        final Map<Integer, Map<Long, Celda>> niveles = new ConcurrentHashMap<>();
+
+        Estado(long version, Vivienda[] viviendas, int[] x, int[] y) {
+            this.version = version;
+            this.viviendas = viviendas;
+            this.x = x;
+            this.y = y;
+        }
+
+        Map<Long, Celda> nivel(int nivel) {
+            return niveles.computeIfAbsent(nivel, this::agrupar);
+        }
+
+        private Map<Long, Celda> agrupar(int nivel) {
+            int corrimiento = NIVEL_MAXIMO - nivel;
+            Map<Long, List<Integer>> porCelda = new HashMap<>();
+            for (int i = 0; i < viviendas.length; i++) {
+                porCelda.computeIfAbsent(clave(x[i] >>> corrimiento, y[i] >>> corrimiento), k -> new ArrayList<>()).add(i);
+            }
+            Map<Long, Celda> celdas = new HashMap<>(porCelda.size() * 2);
+            porCelda.forEach((clave, indices) -> celdas.put(clave, celda(indices.stream().mapToInt(Integer::intValue).toArray())));
+            return celdas;
+        }
+
+        private Celda celda(int[] indices) {
+            List<Vivienda> miembros = new ArrayList<>(indices.length);
+            for (int i : indices) miembros.add(viviendas[i]);
+            Grupo grupo = grupoDe(miembros);
+            return new Celda(indices, grupo.encuestas(), grupo.latitud(), grupo.longitud());
+        }
+    }
+
+    public List<Vivienda> todas() {
+        return List.of(obtenerEstado().viviendas);
+    }
+
+    /**
+     * Viviendas dentro del rectángulo (grados). Sin zoom, el nivel se deduce del ancho del rectángulo.
+     * @throws IllegalArgumentException si el rectángulo no es válido
+     */
+    public List<Vivienda> buscar(double oeste, double sur, double este, double norte, Integer zoom) {
+        validarRectangulo(oeste, sur, este, norte);
+        Estado actual = obtenerEstado();
+        int nivel = nivelParaConsulta(oeste, este, zoom);
+        int x0 = celdaX(oeste, nivel), x1 = celdaX(este, nivel);
+        // En Mercator la y crece hacia el sur
+        int y0 = celdaY(norte, nivel), y1 = celdaY(sur, nivel);
+
+        List<Vivienda> resultado = new ArrayList<>();
+        for (Celda celda : celdasEnRango(actual, nivel, x0, y0, x1, y1)) {
+            agregarDentro(actual, celda.viviendas(), oeste, sur, este, norte, resultado);
+        }
+        return resultado;
+    }
+
+    /**
+     * Agrupa las viviendas del rectángulo por celda de la grilla, con un nivel de zoom + 1
+     * (2 x 2 grupos por tile visible). Si aun así quedan más de maxGrupos, se sube de nivel
+     * hasta que entren. Los totales y centroides de cada celda están precalculados.
+     * @param oeste con sur, este y norte: rectángulo visible, o todos null para el mundo entero
+     */
+    public List<Grupo> agrupar(Double oeste, Double sur, Double este, Double norte, int zoom, int maxGrupos) {
+        return agrupar(oeste, sur, este, norte, zoom, maxGrupos, null);
+    }
+
+    /**
+     * Igual que {@link #agrupar(Double, Double, Double, Double, int, int)}, con solo las
+     * encuestas indicadas: cada vivienda conserva las suyas que están en el conjunto, las
+     * que no tienen ninguna se omiten y los totales y centroides se recalculan.
+     * @param encuestas encuestas a incluir, o null para todas
+     */
+    public List<Grupo> agrupar(Double oeste, Double sur, Double este, Double norte, int zoom, int maxGrupos,
+                               RoaringBitmap encuestas) {
+        boolean mundo = oeste == null || sur == null || este == null || norte == null;
+        if (!mundo) {
+            validarRectangulo(oeste, sur, este, norte);
+        }
+        Estado actual = obtenerEstado();
+        int nivel = Math.max(0, Math.min(NIVEL_MAXIMO, zoom + 1));
+        List<Celda> celdas = celdasVisibles(actual, nivel, oeste, sur, este, norte);
+        while (ocupadas(actual, celdas, encuestas) > maxGrupos && nivel > 0) {
+            nivel--;
+            celdas = celdasVisibles(actual, nivel, oeste, sur, este, norte);
+        }
+
+        List<Grupo> grupos = new ArrayList<>(celdas.size());
+        for (Celda celda : celdas) {
+            List<Vivienda> miembros = new ArrayList<>(celda.viviendas().length);
+            if (mundo) {
+                for (int i : celda.viviendas()) miembros.add(actual.viviendas[i]);
+            } else {
+                agregarDentro(actual, celda.viviendas(), oeste, sur, este, norte, miembros);
+            }
+            if (encuestas != null) {
+                miembros = filtrar(miembros, encuestas);
+            }
+            if (miembros.isEmpty()) continue;
+            if (encuestas == null && miembros.size() == celda.viviendas().length) {
+                grupos.add(new Grupo(celda.latitud(), celda.longitud(), celda.encuestas(), miembros));
+            } else {
+                // Celda cortada por el borde del rectángulo: el centroide se recalcula con lo visible
+                grupos.add(grupoDe(miembros));
+            }
+        }
+        return grupos;
+    }
+
+    /**
+     * Viviendas con al menos una de las encuestas, cada una reducida a esas encuestas.
+     * @param encuestas encuestas a conservar, o null para devolver la lista sin cambios
+     */
+    public static List<Vivienda> filtrar(List<Vivienda> viviendas, RoaringBitmap encuestas) {
+        if (encuestas == null) {
+            return viviendas;
+        }
+        List<Vivienda> resultado = new ArrayList<>();
+        for (Vivienda v : viviendas) {
+            long[] propias = Arrays.stream(v.encuestas()).filter(id -> encuestas.contains((int) id)).toArray();
+            if (propias.length == v.encuestas().length) {
+                resultado.add(v);
+            } else if (propias.length > 0) {
+                resultado.add(new Vivienda(v.id(), v.encuestaHogar(), v.latitud(), v.longitud(), propias));
+            }
+        }
+        return resultado;
+    }
+
+    // Celdas que darían un grupo: todas sin filtro, o las que tienen alguna encuesta del conjunto
+    private static int ocupadas(Estado actual, List<Celda> celdas, RoaringBitmap encuestas) {
+        if (encuestas == null) {
+            return celdas.size();
+        }
+        int ocupadas = 0;
+        for (Celda celda : celdas) {
+            for (int i : celda.viviendas()) {
+                if (tieneAlguna(actual.viviendas[i], encuestas)) {
+                    ocupadas++;
+                    break;
+                }
+            }
+        }
+        return ocupadas;
+    }
+
+    private static boolean tieneAlguna(Vivienda v, RoaringBitmap encuestas) {
+        for (long encuestaId : v.encuestas()) {
+            if (encuestas.contains((int) encuestaId)) return true;
+        }
+        return false;
+    }
+
+    private static List<Celda> celdasVisibles(Estado actual, int nivel, Double oeste, Double sur, Double este, Double norte) {
+        if (oeste == null || sur == null || este == null || norte == null) {
+            return new ArrayList<>(actual.nivel(nivel).values());
+        }
+        return celdasEnRango(actual, nivel, celdaX(oeste, nivel), celdaY(norte, nivel), celdaX(este, nivel), celdaY(sur, nivel));
+    }
+
+    // Centroide ponderado por la cantidad de encuestas de cada vivienda
+    private static Grupo grupoDe(List<Vivienda> miembros) {
+        long encuestas = 0, pesos = 0;
+        double latitud = 0, longitud = 0;
+        for (Vivienda v : miembros) {
+            long peso = Math.max(1, v.encuestas().length);
+            encuestas += v.encuestas().length;
+            pesos += peso;
+            latitud += v.latitud() * peso;
+            longitud += v.longitud() * peso;
+        }
+        return new Grupo(latitud / pesos, longitud / pesos, encuestas, miembros);
+    }
+
+    private static List<Celda> celdasEnRango(Estado actual, int nivel, int x0, int y0, int x1, int y1) {
+        Map<Long, Celda> celdas = actual.nivel(nivel);
+        List<Celda> resultado = new ArrayList<>();
+        long celdasEnRango = (long) (x1 - x0 + 1) * (y1 - y0 + 1);
+        if (celdasEnRango <= celdas.size()) {
+            for (int cx = x0; cx <= x1; cx++) {
+                for (int cy = y0; cy <= y1; cy++) {
+                    Celda celda = celdas.get(clave(cx, cy));
+                    if (celda != null) resultado.add(celda);
+                }
+            }
+        } else {
+            // Rango más grande que las celdas ocupadas: conviene recorrer solo éstas
+            for (Map.Entry<Long, Celda> celda : celdas.entrySet()) {
+                int cx = (int) (celda.getKey() >>> 32), cy = (int) (long) celda.getKey();
+                if (cx >= x0 && cx <= x1 && cy >= y0 && cy <= y1) {
+                    resultado.add(celda.getValue());
+                }
+            }
+        }
+        return resultado;
+    }
+
+    public static void validarRectangulo(double oeste, double sur, double este, double norte) {
+        if (!(sur >= -90 && norte <= 90 && sur <= norte && oeste >= -180 && este <= 180 && oeste <= este)) {
+            throw new IllegalArgumentException("bbox inválido: se espera oeste,sur,este,norte en grados");
+        }
+    }
+
+    /**
+     * Nivel de grilla para una consulta: zoom + 3 (8 x 8 celdas por tile), o el que deja unas
+     * 8 celdas a lo ancho del rectángulo si no se indica zoom.
+     */
+    static int nivelParaConsulta(double oeste, double este, Integer zoom) {
+        int nivel;
+        if (zoom != null) {
+            nivel = zoom + NIVELES_POR_TILE;
+        } else {
+            double ancho = Math.max(este - oeste, 1e-9);
+            nivel = (int) Math.floor(Math.log(360 / ancho) / Math.log(2)) + NIVELES_POR_TILE;
+        }
+        return Math.max(0, Math.min(NIVEL_MAXIMO, nivel));
+    }
+
+    static int celdaX(double longitud, int nivel) {
+        double n = (double) (1L << nivel);
+        return (int) Math.max(0, Math.min(n - 1, Math.floor(mercatorX(longitud) * n)));
+    }
+
+    static int celdaY(double latitud, int nivel) {
+        double n = (double) (1L << nivel);
+        return (int) Math.max(0, Math.min(n - 1, Math.floor(mercatorY(latitud) * n)));
+    }
+
+    /**
+     * Posición de la longitud en el mundo Web Mercator, de 0 (oeste) a 1 (este).
+     */
+    static double mercatorX(double longitud) {
+        return (longitud + 180) / 360;
+    }
+
+    /**
+     * Posición de la latitud en el mundo Web Mercator, de 0 (norte) a 1 (sur).
+     */
+    static double mercatorY(double latitud) {
+        double rad = Math.toRadians(Math.max(-LATITUD_MAXIMA, Math.min(LATITUD_MAXIMA, latitud)));
+        return (1 - Math.log(Math.tan(rad) + 1 / Math.cos(rad)) / Math.PI) / 2;
+    }
+
+    /**
+     * Longitud del borde oeste de la columna x (inversa de {@link #celdaX}).
+     */
+    static double longitudDeCelda(int x, int nivel) {
+        return (double) x / (1L << nivel) * 360 - 180;
+    }
+
+    /**
+     * Latitud del borde norte de la fila y (inversa de {@link #celdaY}).
+     */
+    static double latitudDeCelda(int y, int nivel) {
+        double n = Math.PI * (1 - 2.0 * y / (1L << nivel));
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+
+    static long clave(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private static void agregarDentro(Estado actual, int[] indices, double oeste, double sur, double este, double norte,
+                                      List<Vivienda> resultado) {
+        for (int i : indices) {
+            Vivienda v = actual.viviendas[i];
+            if (v.latitud() >= sur && v.latitud() <= norte && v.longitud() >= oeste && v.longitud() <= este) {
+                resultado.add(v);
+            }
+        }
+    }
+
+    private Estado obtenerEstado() {
+        Estado actual = estado;
+        if (actual != null && actual.version == versionDatos.actual()) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = estado;
+            long version = versionDatos.actual();
+            if (actual == null || actual.version != version) {
+                actual = construir(version);
+                estado = actual;
+            }
+            return actual;
+        }
+    }
+
+    private Estado construir(long version) {
+        Map<Long, List<Long>> encuestasPorVivienda = new HashMap<>();
+        List<Vivienda> lista = new ArrayList<>();
+
+        EntityManager em = jpaProducer.createEntityManager();
+        try {
+            // Coordenadas ya validadas y tipadas al importar: no se parsea ninguna respuesta
+            List<Object[]> ubicaciones = em.createQuery(
+                "SELECT v.id, v.idExterno, v.latitud, v.longitud, eh.id FROM Vivienda v LEFT JOIN v.encuestaHogar eh " +
+                "WHERE v.fechaEliminacion IS NULL AND v.latitud IS NOT NULL AND v.longitud IS NOT NULL ORDER BY v.id", Object[].class)
+                .getResultList();
+            for (Object[] fila : em.createQuery(
+                    "SELECT e.vivienda.id, e.id FROM Encuesta e WHERE e.fechaEliminacion IS NULL AND e.vivienda IS NOT NULL " +
+                    "ORDER BY e.id", Object[].class)
+                    .getResultList()) {
+                encuestasPorVivienda.computeIfAbsent((Long) fila[0], k -> new ArrayList<>()).add((Long) fila[1]);
+            }
+            for (Object[] fila : ubicaciones) {
+                long[] encuestas = encuestasPorVivienda.getOrDefault((Long) fila[0], List.of()).stream().mapToLong(Long::longValue).toArray();
+                lista.add(new Vivienda((String) fila[1], (Long) fila[4], (Double) fila[2], (Double) fila[3], encuestas));
+            }
+        } finally {
+            em.close();
+        }
+
+        Vivienda[] viviendas = lista.toArray(new Vivienda[0]);
+        int[] x = new int[viviendas.length];
+        int[] y = new int[viviendas.length];
+        for (int i = 0; i < viviendas.length; i++) {
+            x[i] = celdaX(viviendas[i].longitud(), NIVEL_MAXIMO);
+            y[i] = celdaY(viviendas[i].latitud(), NIVEL_MAXIMO);
+        }
+        return new Estado(version, viviendas, x, y);
+    }
+}
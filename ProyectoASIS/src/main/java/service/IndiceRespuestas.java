@@ -0,0 +1,157 @@
+package service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import dto.FiltroMultiple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import service.SnapshotRespuestas.Columnas;
+import service.SnapshotRespuestas.Pregunta;
+
+/**
+ * Índice invertido en memoria de las respuestas de encuestas.
+ *
+ * Cada combinación (categoría, pregunta, valor) -con cualquiera de sus componentes
+ * reemplazado por el comodín "TODAS"- apunta a un bitmap comprimido con los ids de
+ * las encuestas que tienen al menos una respuesta que la cumple. Así cada
+ * FiltroMultiple se resuelve con un lookup y el conjunto de filtros con una
+ * intersección de bitmaps, en lugar de recorrer todas las respuestas por encuesta.
+ *
+ * Es el que resuelve los filtros múltiples de las consultas de respuestas: las encuestas
+ * que devuelve se pasan a la base junto con las de las dimensiones (ver {@link AlcanceFiltros}).
+ *
+ * El índice se deriva del {@link SnapshotRespuestas}, sin las respuestas eliminadas, y se
+ * reconstruye de forma perezosa cada vez que el snapshot cambia de versión.
+ */
+@ApplicationScoped
+public class IndiceRespuestas {
+
+    @Inject
+    private SnapshotRespuestas snapshot;
+
+    private volatile Estado estado;
+
+    // Clave del índice: un componente null equivale al comodín "TODAS"
+    private record Clave(String categoria, String pregunta, String valor) {}
+
+    private static final class Estado {
+        final Columnas origen;
+        final Map<Clave, RoaringBitmap> bitmaps;
+        final RoaringBitmap todas;
+
+        Estado(Columnas origen, Map<Clave, RoaringBitmap> bitmaps, RoaringBitmap todas) {
+            this.origen = origen;
+            this.bitmaps = bitmaps;
+            this.todas = todas;
+        }
+    }
+
+    /**
+     * Resuelve los filtros múltiples como intersección de bitmaps.
+     * @return null si no hay filtros múltiples (sin restricción), o el bitmap de encuestas
+     *         que cumplen todos los filtros válidos (vacío si ninguno es válido)
+     */
+    public RoaringBitmap resolverFiltrosMultiples(List<FiltroMultiple> filtros) {
+        if (filtros == null || filtros.isEmpty()) {
+            return null;
+        }
+        List<FiltroMultiple> validos = filtros.stream()
+            .filter(FiltroMultiple::esValido)
+            .toList();
+        if (validos.isEmpty()) {
+            return new RoaringBitmap();
+        }
+
+        Estado actual = obtenerEstado();
+        RoaringBitmap resultado = null;
+        for (FiltroMultiple filtro : validos) {
+            RoaringBitmap candidatos = buscar(actual, filtro);
+            resultado = (resultado == null) ? candidatos.clone() : RoaringBitmap.and(resultado, candidatos);
+            if (resultado.isEmpty()) {
+                break;
+            }
+        }
+        return resultado;
+    }
+
+    private RoaringBitmap buscar(Estado actual, FiltroMultiple filtro) {
+        Clave clave = new Clave(
+            componente(filtro.getCategoria().trim()),
+            componente(filtro.getPregunta()),
+            componente(filtro.getRespuesta()));
+        if (clave.categoria() == null && clave.pregunta() == null && clave.valor() == null) {
+            return actual.todas;
+        }
+        RoaringBitmap bitmap = actual.bitmaps.get(clave);
+        return bitmap != null ? bitmap : new RoaringBitmap();
+    }
+
+    private static String componente(String valor) {
+        return FiltroMultiple.TODAS.equalsIgnoreCase(valor) ? null : normalizar(valor);
+    }
+
+    private static String normalizar(String valor) {
+        return valor == null ? null : valor.toLowerCase(Locale.ROOT);
+    }
+
+    private Estado obtenerEstado() {
+        Columnas columnas = snapshot.obtener();
+        Estado actual = estado;
+        if (actual != null && actual.origen == columnas) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = estado;
+            if (actual == null || actual.origen != columnas) {
+                actual = construir(columnas);
+                estado = actual;
+            }
+            return actual;
+        }
+    }
+
+    private Estado construir(Columnas columnas) {
+        Map<Clave, RoaringBitmap> bitmaps = new HashMap<>();
+        RoaringBitmap todas = new RoaringBitmap();
+        // Los textos se normalizan una sola vez por pregunta y por código de valor
+        String[] valores = new String[columnas.cantidadValores()];
+        for (int codigo = 0; codigo < valores.length; codigo++) {
+            valores[codigo] = normalizar(columnas.valorDeCodigo(codigo));
+        }
+
+        for (int fila = 0; fila < columnas.filas(); fila++) {
+            Pregunta p = columnas.pregunta(fila);
+            if (p == null || columnas.eliminada(fila)) continue;
+            int encuestaId = columnas.encuestaId(fila);
+            String pregunta = normalizar(p.texto());
+            String categoria = p.categoria() != null ? normalizar(p.categoria().name()) : null;
+            int codigo = columnas.codigoValor(fila);
+            String valor = codigo < 0 ? null : valores[codigo];
+
+            todas.add(encuestaId);
+            // Las 7 combinaciones con al menos un componente concreto
+            agregar(bitmaps, new Clave(null, null, valor), encuestaId, valor != null);
+            agregar(bitmaps, new Clave(null, pregunta, null), encuestaId, pregunta != null);
+            agregar(bitmaps, new Clave(null, pregunta, valor), encuestaId, pregunta != null && valor != null);
+            agregar(bitmaps, new Clave(categoria, null, null), encuestaId, categoria != null);
+            agregar(bitmaps, new Clave(categoria, null, valor), encuestaId, categoria != null && valor != null);
+            agregar(bitmaps, new Clave(categoria, pregunta, null), encuestaId, categoria != null && pregunta != null);
+            agregar(bitmaps, new Clave(categoria, pregunta, valor), encuestaId, categoria != null && pregunta != null && valor != null);
+        }
+
+        todas.runOptimize();
+        bitmaps.values().forEach(RoaringBitmap::runOptimize);
+        return new Estado(columnas, bitmaps, todas);
+    }
+
+    private static void agregar(Map<Clave, RoaringBitmap> bitmaps, Clave clave, int encuestaId, boolean completa) {
+        if (completa) {
+            bitmaps.computeIfAbsent(clave, c -> new RoaringBitmap()).add(encuestaId);
+        }
+    }
+}
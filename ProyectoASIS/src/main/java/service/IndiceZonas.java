@@ -0,0 +1,208 @@
+package service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+import config.JPAProducer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Índice en memoria de los polígonos de zonas y barrios para ubicar coordenadas.
+ *
+ * La geolocalización de cada zona y barrio activo se parsea una sola vez con
+ * {@link Poligono} y se carga en un R-tree empaquetado con Sort-Tile-Recursive (STR):
+ * ubicar un punto recorre solo los nodos cuyo rectángulo lo contiene y prueba el
+ * polígono exacto de esas pocas candidatas. Las zonas o barrios cuya geolocalización no
+ * es un polígono (por ejemplo, un único punto) no participan.
+ *
+ * Se reconstruye de forma perezosa cuando cambia la {@link VersionDatos}.
+ */
+@ApplicationScoped
+public class IndiceZonas {
+
+    // Entradas por nodo del árbol
+    private static final int CAPACIDAD_NODO = 16;
+
+    @Inject
+    private JPAProducer jpaProducer;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    private volatile Estado estado;
+
+    /**
+     * Zona y barrio que contienen un punto; cualquiera puede ser null.
+     */
+    public record Ubicacion(Long zonaId, Long barrioId) {
+    }
+
+    private record Entrada(Long id, Long barrioId, Poligono poligono) {
+    }
+
+    private static final class Estado {
+        final long version;
+        final Arbol zonas;
+        final Arbol barrios;
+
+        Estado(long version, Arbol zonas, Arbol barrios) {
+            this.version = version;
+            this.zonas = zonas;
+            this.barrios = barrios;
+        }
+    }
+
+    /**
+     * Si varios polígonos contienen el punto (zonas superpuestas) gana el de menor área,
+     * el más específico. Sin barrio que lo contenga, se usa el barrio de la zona.
+     */
+    public Ubicacion ubicar(double latitud, double longitud) {
+        Estado actual = obtenerEstado();
+        Entrada zona = actual.zonas.buscar(latitud, longitud);
+        Entrada barrio = actual.barrios.buscar(latitud, longitud);
+        Long barrioId = barrio != null ? barrio.id() : zona != null ? zona.barrioId() : null;
+        return new Ubicacion(zona != null ? zona.id() : null, barrioId);
+    }
+
+    public int poligonosZona() {
+        return obtenerEstado().zonas.tamanio;
+    }
+
+    public int poligonosBarrio() {
+        return obtenerEstado().barrios.tamanio;
+    }
+
+    private Estado obtenerEstado() {
+        Estado actual = estado;
+        if (actual != null && actual.version == versionDatos.actual()) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = estado;
+            long version = versionDatos.actual();
+            if (actual == null || actual.version != version) {
+                actual = construir(version);
+                estado = actual;
+            }
+            return actual;
+        }
+    }
+
+    private Estado construir(long version) {
+        List<Entrada> zonas = new ArrayList<>();
+        List<Entrada> barrios = new ArrayList<>();
+        EntityManager em = jpaProducer.createEntityManager();
+        try {
+            for (Object[] fila : em.createQuery(
+                    "SELECT z.id, b.id, z.geolocalizacion FROM Zona z LEFT JOIN z.barrio b WHERE z.fechaEliminacion IS NULL",
+                    Object[].class).getResultList()) {
+                Poligono poligono = Poligono.parsear((String) fila[2]);
+                if (poligono != null) zonas.add(new Entrada((Long) fila[0], (Long) fila[1], poligono));
+            }
+            for (Object[] fila : em.createQuery(
+                    "SELECT b.id, b.geolocalizacion FROM Barrio b WHERE b.fechaEliminacion IS NULL", Object[].class)
+                    .getResultList()) {
+                Poligono poligono = Poligono.parsear((String) fila[1]);
+                if (poligono != null) barrios.add(new Entrada((Long) fila[0], (Long) fila[0], poligono));
+            }
+        } finally {
+            em.close();
+        }
+        return new Estado(version, new Arbol(zonas), new Arbol(barrios));
+    }
+
+    /**
+     * R-tree estático empaquetado por STR: las entradas se ordenan por centro en X, se
+     * cortan en franjas verticales, cada franja se ordena por centro en Y y se agrupa en
+     * nodos de {@link #CAPACIDAD_NODO}; se repite con los nodos hasta quedar una raíz.
+     */
+    private static final class Arbol {
+        final Nodo raiz;
+        final int tamanio;
+
+        Arbol(List<Entrada> entradas) {
+            this.tamanio = entradas.size();
+            List<Nodo> nivel = new ArrayList<>();
+            for (Entrada entrada : entradas) {
+                Poligono p = entrada.poligono();
+                nivel.add(new Nodo(p.oeste(), p.sur(), p.este(), p.norte(), null, entrada));
+            }
+            while (nivel.size() > 1) {
+                nivel = empaquetar(nivel);
+            }
+            this.raiz = nivel.isEmpty() ? null : nivel.get(0);
+        }
+
+        private static List<Nodo> empaquetar(List<Nodo> nodos) {
+            int paginas = (nodos.size() + CAPACIDAD_NODO - 1) / CAPACIDAD_NODO;
+            int porFranja = (int) Math.ceil(Math.sqrt(paginas)) * CAPACIDAD_NODO;
+            List<Nodo> ordenados = new ArrayList<>(nodos);
+            ordenados.sort(Comparator.comparingDouble(n -> n.oeste + n.este));
+            List<Nodo> padres = new ArrayList<>(paginas);
+            for (int f = 0; f < ordenados.size(); f += porFranja) {
+                List<Nodo> franja = new ArrayList<>(ordenados.subList(f, Math.min(ordenados.size(), f + porFranja)));
+                franja.sort(Comparator.comparingDouble(n -> n.sur + n.norte));
+                for (int i = 0; i < franja.size(); i += CAPACIDAD_NODO) {
+                    padres.add(Nodo.padre(franja.subList(i, Math.min(franja.size(), i + CAPACIDAD_NODO))));
+                }
+            }
+            return padres;
+        }
+
+        /**
+         * @return la entrada de menor área cuyo polígono contiene el punto, o null
+         */
+        Entrada buscar(double latitud, double longitud) {
+            if (raiz == null) return null;
+            Entrada mejor = null;
+            Deque<Nodo> pendientes = new ArrayDeque<>();
+            pendientes.push(raiz);
+            while (!pendientes.isEmpty()) {
+                Nodo nodo = pendientes.pop();
+                if (longitud < nodo.oeste || longitud > nodo.este || latitud < nodo.sur || latitud > nodo.norte) continue;
+                if (nodo.entrada != null) {
+                    Poligono p = nodo.entrada.poligono();
+                    if ((mejor == null || p.area() < mejor.poligono().area()) && p.contiene(latitud, longitud)) {
+                        mejor = nodo.entrada;
+                    }
+                } else {
+                    for (Nodo hijo : nodo.hijos) pendientes.push(hijo);
+                }
+            }
+            return mejor;
+        }
+    }
+
+    // Hoja (entrada != null) o nodo interno (hijos != null), con su rectángulo envolvente
+    private static final class Nodo {
+        final double oeste, sur, este, norte;
+        final Nodo[] hijos;
+        final Entrada entrada;
+
+        Nodo(double oeste, double sur, double este, double norte, Nodo[] hijos, Entrada entrada) {
+            this.oeste = oeste;
+            this.sur = sur;
+            this.este = este;
+            this.norte = norte;
+            this.hijos = hijos;
+            this.entrada = entrada;
+        }
+
+        static Nodo padre(List<Nodo> hijos) {
+            double o = Double.POSITIVE_INFINITY, s = Double.POSITIVE_INFINITY;
+            double e = Double.NEGATIVE_INFINITY, n = Double.NEGATIVE_INFINITY;
+            for (Nodo h : hijos) {
+                o = Math.min(o, h.oeste);
+                s = Math.min(s, h.sur);
+                e = Math.max(e, h.este);
+                n = Math.max(n, h.norte);
+            }
+            return new Nodo(o, s, e, n, hijos.toArray(new Nodo[0]), null);
+        }
+    }
+}
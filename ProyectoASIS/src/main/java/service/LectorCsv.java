@@ -0,0 +1,123 @@
+package service;
+
+import com.opencsv.CSVReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Lee un CSV desde un stream en un hilo propio y entrega las filas por una cola acotada:
+ * mientras la importación escribe un lote en la base, el lector sigue recibiendo y parseando
+ * el archivo, y cuando la cola se llena se detiene hasta que la base lo alcance.
+ *
+ * Si el stream empieza con una marca BOM (UTF-8 o UTF-16) se descarta y manda sobre el
+ * charset indicado. Los bytes que no corresponden al charset son un error y no se
+ * reemplazan en silencio, para no guardar preguntas o respuestas con acentos rotos.
+ */
+final class LectorCsv implements AutoCloseable {
+
+    // Marca de fin de archivo en la cola (también después de un error)
+    private static final String[] FIN = new String[0];
+
+    private final BlockingQueue<String[]> filas;
+    private final Runnable alParsearFila;
+    private final Thread hilo;
+    private volatile Exception error;
+    private volatile boolean cerrado;
+    private boolean terminado;
+
+    /**
+     * Empieza a leer en segundo plano. El stream lo cierra el lector al terminar.
+     * @param capacidad filas parseadas que puede haber esperando a la importación
+     * @param alParsearFila se llama desde el hilo del lector por cada fila parseada (sin el encabezado)
+     */
+    LectorCsv(InputStream entrada, Charset charset, int capacidad, Runnable alParsearFila) {
+        this.filas = new ArrayBlockingQueue<>(capacidad);
+        this.alParsearFila = alParsearFila;
+        this.hilo = Thread.ofVirtual().name("lector-csv").start(() -> leer(entrada, charset));
+    }
+
+    /**
+     * @return la próxima fila (la primera es el encabezado), o null al final del archivo
+     * @throws IllegalArgumentException si el archivo no está en el charset indicado
+     */
+    String[] siguiente() throws Exception {
+        if (terminado) return null;
+        String[] fila = filas.take();
+        if (fila == FIN) {
+            terminado = true;
+            if (error != null) throw error;
+            return null;
+        }
+        return fila;
+    }
+
+    /**
+     * Detiene la lectura si la importación termina antes que el archivo (por un error).
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        hilo.interrupt();
+        filas.clear();
+    }
+
+    private void leer(InputStream entrada, Charset charset) {
+        try (PushbackInputStream conMarca = new PushbackInputStream(entrada, 3);
+             CSVReader reader = new CSVReader(new InputStreamReader(conMarca, decodificador(conMarca, charset)))) {
+            String[] fila;
+            boolean encabezado = true;
+            while (!cerrado && (fila = reader.readNext()) != null) {
+                if (!encabezado) alParsearFila.run();
+                encabezado = false;
+                filas.put(fila);
+            }
+        } catch (InterruptedException e) {
+            // Cerrado por la importación: no hay nadie esperando más filas
+            return;
+        } catch (CharacterCodingException e) {
+            error = new IllegalArgumentException("El archivo no está codificado en " + charset.name());
+        } catch (Exception e) {
+            error = e;
+        }
+        try {
+            if (!cerrado) filas.put(FIN);
+        } catch (InterruptedException e) {
+            // Cerrado mientras esperaba lugar en la cola
+        }
+    }
+
+    /**
+     * Consume la marca BOM, si hay, y devuelve el decodificador del charset que indica.
+     */
+    private static CharsetDecoder decodificador(PushbackInputStream entrada, Charset charset) throws IOException {
+        byte[] inicio = entrada.readNBytes(3);
+        int n = inicio.length;
+        int marca = 0;
+        if (n >= 3 && (inicio[0] & 0xFF) == 0xEF && (inicio[1] & 0xFF) == 0xBB && (inicio[2] & 0xFF) == 0xBF) {
+            charset = StandardCharsets.UTF_8;
+            marca = 3;
+        } else if (n >= 2 && (inicio[0] & 0xFF) == 0xFE && (inicio[1] & 0xFF) == 0xFF) {
+            charset = StandardCharsets.UTF_16BE;
+            marca = 2;
+        } else if (n >= 2 && (inicio[0] & 0xFF) == 0xFF && (inicio[1] & 0xFF) == 0xFE) {
+            charset = StandardCharsets.UTF_16LE;
+            marca = 2;
+        }
+        if (n > marca) {
+            entrada.unread(inicio, marca, n - marca);
+        }
+        return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+}
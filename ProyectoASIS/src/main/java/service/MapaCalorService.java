@@ -0,0 +1,167 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import dto.Filtros;
+import dto.MapaCalorDTO;
+import dto.TeselaCalorDTO;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Mapa de calor de un indicador (una pregunta y, opcionalmente, la respuesta que cuenta):
+ * rasteriza las viviendas del {@link IndiceEspacial} en grillas de {@link #RESOLUCION} x
+ * {@link #RESOLUCION} celdas por tile del mapa.
+ *
+ * Cada celda de un tile de zoom z es una celda del nivel z + 6 de la grilla Web Mercator,
+ * así el tile y la celda de una vivienda salen de la misma cuenta entera y una vivienda
+ * nunca cae en dos tiles. Cada tile se guarda en la {@link CacheResultados} por
+ * (indicador, zoom, x, y, filtros) y se descarta con la versión de los datos.
+ */
+@RequestScoped
+public class MapaCalorService {
+
+    private static final int NIVELES_RESOLUCION = 6;
+    public static final int RESOLUCION = 1 << NIVELES_RESOLUCION;
+    public static final int ZOOM_MAXIMO = IndiceEspacial.NIVEL_MAXIMO - NIVELES_RESOLUCION;
+    // Un bbox de pantalla a su zoom cubre unos 10 a 20 tiles
+    public static final int MAX_TESELAS = 64;
+
+    @Inject
+    private IndiceEspacial indiceEspacial;
+
+    @Inject
+    private SnapshotRespuestas snapshotRespuestas;
+
+    @Inject
+    private AlcanceFiltros alcanceFiltros;
+
+    @Inject
+    private CacheResultados cacheResultados;
+
+    /**
+     * Unidades (encuestas o viviendas del snapshot) que cumplen el indicador y los filtros.
+     */
+    private record Indicador(SnapshotRespuestas.Columnas columnas, boolean deVivienda, RoaringBitmap unidades) {
+
+        // Personas de la vivienda que cumplen, o 1 si la pregunta es de la vivienda y cumple
+        int peso(IndiceEspacial.Vivienda v) {
+            int peso = 0;
+            for (long encuestaId : v.encuestas()) {
+                int id = Math.toIntExact(encuestaId);
+                if (!deVivienda) {
+                    if (unidades.contains(id)) peso++;
+                } else {
+                    int vivienda = columnas.vivienda(id);
+                    if (vivienda >= 0) return unidades.contains(vivienda) ? 1 : 0;
+                }
+            }
+            return peso;
+        }
+    }
+
+    /**
+     * @param rectangulo oeste, sur, este, norte
+     * @param valor respuesta que cuenta (sin distinguir mayúsculas); null = cualquier respuesta
+     * @throws IllegalArgumentException si la pregunta no existe, el zoom o el bbox no son
+     *         válidos, o el bbox cubre más de {@link #MAX_TESELAS} tiles
+     */
+    public MapaCalorDTO calcular(String preguntaCsv, String valor, double[] rectangulo, int zoom, Filtros filtros) {
+        if (zoom < 0 || zoom > ZOOM_MAXIMO) {
+            throw new IllegalArgumentException("zoom debe estar entre 0 y " + ZOOM_MAXIMO);
+        }
+        IndiceEspacial.validarRectangulo(rectangulo[0], rectangulo[1], rectangulo[2], rectangulo[3]);
+        int x0 = IndiceEspacial.celdaX(rectangulo[0], zoom), x1 = IndiceEspacial.celdaX(rectangulo[2], zoom);
+        int y0 = IndiceEspacial.celdaY(rectangulo[3], zoom), y1 = IndiceEspacial.celdaY(rectangulo[1], zoom);
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_TESELAS) {
+            throw new IllegalArgumentException("El bbox cubre más de " + MAX_TESELAS + " tiles en zoom " + zoom
+                + ": acercar el mapa o reducir el bbox");
+        }
+
+        String clave = "calor|" + preguntaCsv.length() + ":" + preguntaCsv + "|"
+            + (valor == null ? "*" : "=" + valor.trim().toLowerCase(Locale.ROOT)) + "|" + zoom + "/";
+        // El indicador se arma una sola vez, y solo si algún tile no está en la caché
+        Indicador[] indicador = new Indicador[1];
+        List<TeselaCalorDTO> teselas = new ArrayList<>();
+        int maximo = 0;
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                int tx = x, ty = y;
+                TeselaCalorDTO tesela = cacheResultados.obtener(clave + x + "/" + y, filtros,
+                    t -> 64L + 4L * t.getCeldas().length,
+                    () -> {
+                        if (indicador[0] == null) indicador[0] = indicador(preguntaCsv, valor, filtros);
+                        return List.of(rasterizar(indicador[0], zoom, tx, ty));
+                    }).get(0);
+                if (tesela.getTotal() == 0) continue;
+                for (int i = 1; i < tesela.getCeldas().length; i += 2) {
+                    maximo = Math.max(maximo, tesela.getCeldas()[i]);
+                }
+                teselas.add(tesela);
+            }
+        }
+        return new MapaCalorDTO(preguntaCsv, valor, zoom, RESOLUCION, maximo, teselas);
+    }
+
+    private Indicador indicador(String preguntaCsv, String valor, Filtros filtros) {
+        SnapshotRespuestas.Columnas columnas = snapshotRespuestas.obtener();
+        SnapshotRespuestas.Pregunta pregunta = columnas.preguntas().stream()
+            .filter(p -> preguntaCsv.equals(p.preguntaCsv()))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Pregunta inexistente: " + preguntaCsv));
+
+        RoaringBitmap encuestas = alcanceFiltros.encuestas(filtros);
+        RoaringBitmap viviendas = pregunta.deVivienda() ? AlcanceFiltros.viviendas(columnas, encuestas) : null;
+        String buscado = valor != null ? valor.trim() : null;
+
+        RoaringBitmap unidades = new RoaringBitmap();
+        for (int fila = 0; fila < columnas.filas(); fila++) {
+            if (columnas.pregunta(fila) != pregunta || columnas.eliminada(fila) || columnas.codigoValor(fila) < 0) continue;
+            if (buscado != null && !buscado.equalsIgnoreCase(columnas.valor(fila).trim())) continue;
+            int encuestaId = columnas.encuestaId(fila);
+            if (pregunta.deVivienda()) {
+                int vivienda = columnas.vivienda(encuestaId);
+                if (vivienda >= 0 && (viviendas == null || viviendas.contains(vivienda))) unidades.add(vivienda);
+            } else if (encuestas == null || encuestas.contains(encuestaId)) {
+                unidades.add(encuestaId);
+            }
+        }
+        return new Indicador(columnas, pregunta.deVivienda(), unidades);
+    }
+
+    private TeselaCalorDTO rasterizar(Indicador indicador, int zoom, int x, int y) {
+        int nivel = zoom + NIVELES_RESOLUCION;
+        // Rectángulo del tile con un margen mínimo por redondeo; la pertenencia se decide por celda
+        double oeste = Math.max(-180, IndiceEspacial.longitudDeCelda(x, zoom) - 1e-9);
+        double este = Math.min(180, IndiceEspacial.longitudDeCelda(x + 1, zoom) + 1e-9);
+        double norte = Math.min(90, IndiceEspacial.latitudDeCelda(y, zoom) + 1e-9);
+        double sur = Math.max(-90, IndiceEspacial.latitudDeCelda(y + 1, zoom) - 1e-9);
+
+        int[] conteos = new int[RESOLUCION * RESOLUCION];
+        long total = 0;
+        int noVacias = 0;
+        for (IndiceEspacial.Vivienda v : indiceEspacial.buscar(oeste, sur, este, norte, zoom)) {
+            int cx = IndiceEspacial.celdaX(v.longitud(), nivel), cy = IndiceEspacial.celdaY(v.latitud(), nivel);
+            if ((cx >> NIVELES_RESOLUCION) != x || (cy >> NIVELES_RESOLUCION) != y) continue;
+            int peso = indicador.peso(v);
+            if (peso == 0) continue;
+            int celda = (cy & (RESOLUCION - 1)) * RESOLUCION + (cx & (RESOLUCION - 1));
+            if (conteos[celda] == 0) noVacias++;
+            conteos[celda] += peso;
+            total += peso;
+        }
+
+        // Codificación rala: pares [índice, conteo] de las celdas no vacías, en orden de índice
+        int[] celdas = new int[noVacias * 2];
+        for (int i = 0, j = 0; i < conteos.length; i++) {
+            if (conteos[i] == 0) continue;
+            celdas[j++] = i;
+            celdas[j++] = conteos[i];
+        }
+        return new TeselaCalorDTO(x, y, total, celdas);
+    }
+}
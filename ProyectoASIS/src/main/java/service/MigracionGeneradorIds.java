@@ -0,0 +1,80 @@
+package service;
+
+import java.util.List;
+
+import config.JPAProducer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import model.RespuestaEncuesta;
+
+/**
+ * Deja el generador de ids de {@link RespuestaEncuesta} por encima de los ids existentes.
+ *
+ * Las respuestas guardadas cuando el id era AUTO_INCREMENT (IDENTITY) no pasaron por la
+ * tabla de generadores, que arranca en 1: sin este ajuste las primeras reservas
+ * chocarían con esos ids. Corre una vez al iniciar la aplicación y antes de atender
+ * pedidos (es una sola consulta), con un EntityManager propio.
+ */
+@ApplicationScoped
+public class MigracionGeneradorIds {
+
+    @Inject
+    private JPAProducer jpaProducer;
+
+    public void alIniciar(@Observes @Initialized(ApplicationScoped.class) Object evento) {
+        try {
+            ajustar();
+        } catch (RuntimeException e) {
+            System.out.println("Error ajustando el generador de ids de respuestas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return el próximo valor del generador después del ajuste
+     */
+    public long ajustar() {
+        EntityManager em = jpaProducer.createEntityManager();
+        try {
+            Long maximo = em.createQuery("SELECT MAX(r.id) FROM RespuestaEncuesta r", Long.class).getSingleResult();
+            // Con reserva de ids, el valor guardado puede ser el último de la próxima reserva:
+            // se deja un margen de una reserva completa
+            long minimo = (maximo != null ? maximo : 0) + RespuestaEncuesta.IDS_POR_RESERVA + 1;
+
+            EntityTransaction tx = em.getTransaction();
+            try {
+                tx.begin();
+                List<?> filas = em.createNativeQuery("SELECT proximo_valor FROM " + RespuestaEncuesta.TABLA_GENERADOR +
+                        " WHERE segmento = ?1")
+                    .setParameter(1, RespuestaEncuesta.SEGMENTO_GENERADOR)
+                    .getResultList();
+                Number actual = filas.isEmpty() ? null : (Number) filas.get(0);
+                if (actual == null) {
+                    em.createNativeQuery("INSERT INTO " + RespuestaEncuesta.TABLA_GENERADOR +
+                            " (segmento, proximo_valor) VALUES (?1, ?2)")
+                        .setParameter(1, RespuestaEncuesta.SEGMENTO_GENERADOR)
+                        .setParameter(2, minimo)
+                        .executeUpdate();
+                } else if (actual.longValue() < minimo) {
+                    em.createNativeQuery("UPDATE " + RespuestaEncuesta.TABLA_GENERADOR +
+                            " SET proximo_valor = ?1 WHERE segmento = ?2")
+                        .setParameter(1, minimo)
+                        .setParameter(2, RespuestaEncuesta.SEGMENTO_GENERADOR)
+                        .executeUpdate();
+                } else {
+                    minimo = actual.longValue();
+                }
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (tx.isActive()) tx.rollback();
+                throw e;
+            }
+            return minimo;
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import config.JPAProducer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.Query;
+import model.EstadoMigracion;
+import model.PreguntaEncuesta;
+import model.RespuestaEncuesta;
+import model.TipoRespuesta;
+
+/**
+ * Completa las columnas tipadas (valor_numerico, valor_fecha, valor_opcion) de las
+ * respuestas guardadas antes de que existieran. Las respuestas nuevas las completan
+ * los callbacks de {@link RespuestaEncuesta} al persistirse.
+ *
+ * Corre una vez al iniciar la aplicación, en segundo plano y por lotes, con un
+ * EntityManager propio. Al terminar guarda el id más alto que revisó en {@link EstadoMigracion}:
+ * las respuestas posteriores ya se guardan tipadas, así que el próximo inicio no vuelve a
+ * recorrer las que no se pudieron interpretar. Si la importación cambia el tipo de una
+ * pregunta, recalcula las de esa pregunta con {@link #retipar(EntityManager, PreguntaEncuesta)}.
+ */
+@ApplicationScoped
+public class MigracionValoresTipados {
+
+    private static final int TAMANIO_LOTE = 1_000;
+    // Clave en ESTADO_MIGRACIONES con el id más alto ya revisado
+    static final String MIGRACION = "valores_tipados";
+    private static final List<TipoRespuesta> TIPOS = List.of(TipoRespuesta.NUMERO, TipoRespuesta.FECHA, TipoRespuesta.OPCION_MULTIPLE);
+
+    @Inject
+    private JPAProducer jpaProducer;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    public void alIniciar(@Observes @Initialized(ApplicationScoped.class) Object evento) {
+        CompletableFuture.runAsync(this::completar).exceptionally(e -> {
+            System.out.println("Error completando valores tipados de respuestas: " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * @return cantidad de respuestas actualizadas
+     */
+    public int completar() {
+        EntityManager em = jpaProducer.createEntityManager();
+        int actualizadas = 0;
+        try {
+            long ultimoId = revisadasHasta(em);
+            // Las que se guarden mientras corre ya llegan tipadas
+            Long hasta = em.createQuery("SELECT MAX(r.id) FROM RespuestaEncuesta r", Long.class).getSingleResult();
+            if (hasta == null || hasta <= ultimoId) {
+                return 0;
+            }
+            List<Object[]> lote;
+            do {
+                lote = em.createQuery(
+                    "SELECT r.id, r.valor, p.tipoRespuesta FROM RespuestaEncuesta r INNER JOIN r.preguntaEncuesta p " +
+                    "WHERE r.id > :ultimoId AND r.id <= :hasta AND p.tipoRespuesta IN :tipos " +
+                    "AND r.valorNumerico IS NULL AND r.valorFecha IS NULL AND r.valorOpcion IS NULL " +
+                    "ORDER BY r.id", Object[].class)
+                    .setParameter("ultimoId", ultimoId)
+                    .setParameter("hasta", hasta)
+                    .setParameter("tipos", TIPOS)
+                    .setMaxResults(TAMANIO_LOTE)
+                    .getResultList();
+                if (lote.isEmpty()) break;
+
+                EntityTransaction tx = em.getTransaction();
+                try {
+                    tx.begin();
+                    for (Object[] fila : lote) {
+                        ultimoId = (Long) fila[0];
+                        Tipados tipados = Tipados.interpretar((String) fila[1], (TipoRespuesta) fila[2]);
+                        if (tipados != null) {
+                            actualizadas += tipados.actualizar(em, "r.id = :id").setParameter("id", ultimoId).executeUpdate();
+                        }
+                    }
+                    tx.commit();
+                } catch (RuntimeException e) {
+                    if (tx.isActive()) tx.rollback();
+                    throw e;
+                }
+                em.clear();
+            } while (lote.size() == TAMANIO_LOTE);
+            guardarRevisadasHasta(em, hasta);
+        } finally {
+            em.close();
+        }
+
+        if (actualizadas > 0) {
+            versionDatos.incrementarRespuestas();
+        }
+        return actualizadas;
+    }
+
+    /**
+     * Recalcula las columnas tipadas de todas las respuestas de la pregunta según su tipo
+     * actual, en la transacción activa de em: un UPDATE para vaciarlas y, por cada resultado
+     * distinto de interpretar los valores, uno por lote de ids.
+     * @return cantidad de respuestas con algún valor tipado
+     */
+    public static int retipar(EntityManager em, PreguntaEncuesta pregunta) {
+        em.createQuery(
+            "UPDATE RespuestaEncuesta r SET r.valorNumerico = null, r.valorFecha = null, r.valorOpcion = null " +
+            "WHERE r.preguntaEncuesta = :pregunta")
+            .setParameter("pregunta", pregunta)
+            .executeUpdate();
+        if (!TIPOS.contains(pregunta.getTipoRespuesta())) {
+            return 0;
+        }
+
+        // Se interpreta cada valor en Java: comparar r.valor en la base dependería de la collation
+        Map<Tipados, List<Long>> idsPorTipados = new HashMap<>();
+        long ultimoId = 0;
+        List<Object[]> lote;
+        do {
+            lote = em.createQuery(
+                "SELECT r.id, r.valor FROM RespuestaEncuesta r WHERE r.preguntaEncuesta = :pregunta " +
+                "AND r.id > :ultimoId ORDER BY r.id", Object[].class)
+                .setParameter("pregunta", pregunta)
+                .setParameter("ultimoId", ultimoId)
+                .setMaxResults(TAMANIO_LOTE)
+                .getResultList();
+            for (Object[] fila : lote) {
+                ultimoId = (Long) fila[0];
+                Tipados tipados = Tipados.interpretar((String) fila[1], pregunta.getTipoRespuesta());
+                if (tipados != null) {
+                    idsPorTipados.computeIfAbsent(tipados, t -> new ArrayList<>()).add(ultimoId);
+                }
+            }
+        } while (lote.size() == TAMANIO_LOTE);
+
+        int actualizadas = 0;
+        for (Map.Entry<Tipados, List<Long>> grupo : idsPorTipados.entrySet()) {
+            List<Long> ids = grupo.getValue();
+            for (int i = 0; i < ids.size(); i += TAMANIO_LOTE) {
+                actualizadas += grupo.getKey().actualizar(em, "r.id IN :ids")
+                    .setParameter("ids", ids.subList(i, Math.min(ids.size(), i + TAMANIO_LOTE)))
+                    .executeUpdate();
+            }
+        }
+        return actualizadas;
+    }
+
+    private static long revisadasHasta(EntityManager em) {
+        EstadoMigracion estado = em.find(EstadoMigracion.class, MIGRACION);
+        return estado != null ? estado.getValor() : 0;
+    }
+
+    private static void guardarRevisadasHasta(EntityManager em, long hasta) {
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            em.merge(new EstadoMigracion(MIGRACION, hasta));
+            tx.commit();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Valores tipados de una respuesta, según el tipo de su pregunta.
+     */
+    private record Tipados(Double numero, LocalDate fecha, String opcion) {
+
+        /**
+         * @return null si el valor no se puede interpretar
+         */
+        static Tipados interpretar(String valor, TipoRespuesta tipo) {
+            Double numero = tipo == TipoRespuesta.NUMERO ? RespuestaEncuesta.aNumero(valor) : null;
+            LocalDate fecha = tipo == TipoRespuesta.FECHA ? RespuestaEncuesta.aFecha(valor) : null;
+            String opcion = tipo == TipoRespuesta.OPCION_MULTIPLE ? RespuestaEncuesta.aOpcion(valor) : null;
+            return numero == null && fecha == null && opcion == null ? null : new Tipados(numero, fecha, opcion);
+        }
+
+        /**
+         * @param condicion condición del WHERE sobre r; sus parámetros los completa quien ejecuta
+         */
+        Query actualizar(EntityManager em, String condicion) {
+            // UPDATE directo: no dispara @PreUpdate, así que no altera fecha_editado
+            return em.createQuery(
+                "UPDATE RespuestaEncuesta r SET r.valorNumerico = :numero, r.valorFecha = :fecha, r.valorOpcion = :opcion " +
+                "WHERE " + condicion)
+                .setParameter("numero", numero)
+                .setParameter("fecha", fecha)
+                .setParameter("opcion", opcion);
+        }
+    }
+}
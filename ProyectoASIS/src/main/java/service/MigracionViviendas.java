@@ -0,0 +1,138 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import config.JPAProducer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import model.Encuesta;
+import model.RespuestaEncuesta;
+import model.Vivienda;
+
+/**
+ * Completa las {@link Vivienda} de las encuestas importadas antes de que existiera la
+ * tabla: crea una por cada prefijo de idExterno ("vivienda_persona_n"), con las
+ * coordenadas del formulario si las tiene, y asigna la vivienda a cada encuesta. Las
+ * importaciones nuevas ya lo hace {@link ImportCsvService}.
+ *
+ * Corre una vez al iniciar la aplicación, en segundo plano, con un EntityManager propio.
+ */
+@ApplicationScoped
+public class MigracionViviendas {
+
+    private static final int TAMANIO_LOTE = 500;
+
+    @Inject
+    private JPAProducer jpaProducer;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    public void alIniciar(@Observes @Initialized(ApplicationScoped.class) Object evento) {
+        CompletableFuture.runAsync(this::completar).exceptionally(e -> {
+            System.out.println("Error completando viviendas: " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * @return cantidad de encuestas vinculadas a su vivienda
+     */
+    public int completar() {
+        EntityManager em = jpaProducer.createEntityManager();
+        int vinculadas = 0;
+        try {
+            // Encuestas sin vivienda, agrupadas por el prefijo de su idExterno
+            Map<String, List<Long>> sinVivienda = new LinkedHashMap<>();
+            for (Object[] fila : em.createQuery(
+                    "SELECT e.id, e.idExterno FROM Encuesta e WHERE e.vivienda IS NULL AND e.idExterno IS NOT NULL ORDER BY e.id",
+                    Object[].class).getResultList()) {
+                sinVivienda.computeIfAbsent(SnapshotRespuestas.idVivienda((String) fila[1]), k -> new ArrayList<>()).add((Long) fila[0]);
+            }
+            if (sinVivienda.isEmpty()) {
+                return 0;
+            }
+
+            Map<String, Long> existentes = new HashMap<>();
+            for (Object[] fila : em.createQuery("SELECT v.idExterno, v.id FROM Vivienda v", Object[].class).getResultList()) {
+                existentes.put((String) fila[0], (Long) fila[1]);
+            }
+            Map<Long, String[]> coordenadas = coordenadasPorEncuesta(em);
+
+            EntityTransaction tx = em.getTransaction();
+            try {
+                tx.begin();
+                int enLote = 0;
+                for (Map.Entry<String, List<Long>> entrada : sinVivienda.entrySet()) {
+                    Long viviendaId = existentes.get(entrada.getKey());
+                    if (viviendaId == null) {
+                        viviendaId = crear(em, entrada.getKey(), entrada.getValue(), coordenadas);
+                    }
+                    vinculadas += em.createQuery("UPDATE Encuesta e SET e.vivienda = :vivienda WHERE e.id IN :encuestas")
+                        .setParameter("vivienda", em.getReference(Vivienda.class, viviendaId))
+                        .setParameter("encuestas", entrada.getValue())
+                        .executeUpdate();
+                    if (++enLote % TAMANIO_LOTE == 0) {
+                        tx.commit();
+                        em.clear();
+                        tx.begin();
+                    }
+                }
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (tx.isActive()) tx.rollback();
+                throw e;
+            }
+        } finally {
+            em.close();
+        }
+
+        if (vinculadas > 0) {
+            versionDatos.incrementarRespuestas();
+        }
+        return vinculadas;
+    }
+
+    /**
+     * Crea la vivienda con las coordenadas de la primera de sus encuestas que las tenga.
+     */
+    private static Long crear(EntityManager em, String idVivienda, List<Long> encuestas, Map<Long, String[]> coordenadas) {
+        Vivienda vivienda = new Vivienda(idVivienda);
+        for (Long encuestaId : encuestas) {
+            String[] par = coordenadas.get(encuestaId);
+            if (par != null) {
+                vivienda.setEncuestaHogar(em.getReference(Encuesta.class, encuestaId));
+                vivienda.setUbicacion(RespuestaEncuesta.aNumero(par[0]), RespuestaEncuesta.aNumero(par[1]));
+                break;
+            }
+        }
+        em.persist(vivienda);
+        em.flush();
+        return vivienda.getId();
+    }
+
+    // Primera latitud y longitud (texto) respondidas en cada encuesta
+    private static Map<Long, String[]> coordenadasPorEncuesta(EntityManager em) {
+        Map<Long, String[]> coordenadas = new HashMap<>();
+        for (Object[] fila : em.createQuery(
+                "SELECT e.id, p.preguntaCsv, r.valor FROM RespuestaEncuesta r " +
+                "INNER JOIN r.preguntaEncuesta p INNER JOIN r.encuesta e " +
+                "WHERE p.preguntaCsv IN :preguntas AND r.fechaEliminacion IS NULL ORDER BY r.id", Object[].class)
+                .setParameter("preguntas", List.of(ImportCsvService.PREGUNTA_CSV_LATITUD, ImportCsvService.PREGUNTA_CSV_LONGITUD))
+                .getResultList()) {
+            String[] par = coordenadas.computeIfAbsent((Long) fila[0], k -> new String[2]);
+            int posicion = ImportCsvService.PREGUNTA_CSV_LATITUD.equals(fila[1]) ? 0 : 1;
+            if (par[posicion] == null) par[posicion] = (String) fila[2];
+        }
+        return coordenadas;
+    }
+}
@@ -0,0 +1,255 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Polígono (o multipolígono) en coordenadas geográficas, leído del texto libre de
+ * Zona.geolocalizacion / Barrio.geolocalizacion.
+ *
+ * Formatos aceptados:
+ * - WKT: "POLYGON((lng lat, ...), (hueco...))" y "MULTIPOLYGON(((...)), ((...)))"
+ * - GeoJSON: geometría Polygon / MultiPolygon, o Feature que la contenga ([lng, lat])
+ * - Lista de pares "lat, lng; lat, lng; ..." (mismo orden que el selector de la web),
+ *   separados por ';', '|' o saltos de línea, con al menos 3 vértices
+ *
+ * Un único par "lat, lng" es un punto, no un polígono: {@link #parsear(String)} devuelve null.
+ */
+final class Poligono {
+
+    private static final Pattern TIPO_GEOJSON = Pattern.compile("\"type\"\\s*:\\s*\"(Polygon|MultiPolygon)\"", Pattern.CASE_INSENSITIVE);
+
+    // Cada parte es un polígono simple: anillos[0] es el exterior, el resto son huecos.
+    // Cada anillo es {longitudes, latitudes}
+    private final List<double[][][]> partes;
+    private final double oeste, sur, este, norte;
+    private final double area;
+
+    private Poligono(List<double[][][]> partes) {
+        this.partes = partes;
+        double o = Double.POSITIVE_INFINITY, s = Double.POSITIVE_INFINITY;
+        double e = Double.NEGATIVE_INFINITY, n = Double.NEGATIVE_INFINITY;
+        double a = 0;
+        for (double[][][] anillos : partes) {
+            double[] lng = anillos[0][0], lat = anillos[0][1];
+            for (int i = 0; i < lng.length; i++) {
+                o = Math.min(o, lng[i]);
+                e = Math.max(e, lng[i]);
+                s = Math.min(s, lat[i]);
+                n = Math.max(n, lat[i]);
+            }
+            a += areaAnillo(anillos[0]);
+            for (int h = 1; h < anillos.length; h++) {
+                a -= areaAnillo(anillos[h]);
+            }
+        }
+        this.oeste = o;
+        this.sur = s;
+        this.este = e;
+        this.norte = n;
+        this.area = Math.max(0, a);
+    }
+
+    double oeste() { return oeste; }
+    double sur() { return sur; }
+    double este() { return este; }
+    double norte() { return norte; }
+
+    /**
+     * Área en grados cuadrados: solo sirve para comparar polígonos cercanos entre sí.
+     */
+    double area() { return area; }
+
+    /**
+     * Regla par-impar por parte: un punto dentro de un hueco queda afuera. Los bordes
+     * pueden quedar de cualquier lado.
+     */
+    boolean contiene(double latitud, double longitud) {
+        if (longitud < oeste || longitud > este || latitud < sur || latitud > norte) {
+            return false;
+        }
+        for (double[][][] anillos : partes) {
+            boolean dentro = false;
+            for (double[][] anillo : anillos) {
+                if (dentroAnillo(anillo[0], anillo[1], longitud, latitud)) dentro = !dentro;
+            }
+            if (dentro) return true;
+        }
+        return false;
+    }
+
+    private static boolean dentroAnillo(double[] xs, double[] ys, double x, double y) {
+        boolean dentro = false;
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+            if ((ys[i] > y) != (ys[j] > y) && x < (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i]) {
+                dentro = !dentro;
+            }
+        }
+        return dentro;
+    }
+
+    // Fórmula del área de Gauss (valor absoluto)
+    private static double areaAnillo(double[][] anillo) {
+        double[] xs = anillo[0], ys = anillo[1];
+        double suma = 0;
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+            suma += (xs[j] + xs[i]) * (ys[j] - ys[i]);
+        }
+        return Math.abs(suma) / 2;
+    }
+
+    /**
+     * @return el polígono, o null si el texto está vacío, es un punto o no se reconoce
+     */
+    static Poligono parsear(String texto) {
+        if (texto == null || texto.isBlank()) return null;
+        String t = texto.trim();
+        String mayusculas = t.toUpperCase(Locale.ROOT);
+        try {
+            List<List<List<double[]>>> partes;
+            if (t.startsWith("{")) {
+                partes = desdeGeoJson(t);
+            } else if (mayusculas.startsWith("MULTIPOLYGON")) {
+                partes = multipoligono(new Lector(t, t.indexOf('('), '(', ')').leer());
+            } else if (mayusculas.startsWith("POLYGON")) {
+                partes = List.of(poligono(new Lector(t, t.indexOf('('), '(', ')').leer()));
+            } else {
+                partes = desdePares(t);
+            }
+            return crear(partes);
+        } catch (RuntimeException e) {
+            // Texto mal formado: la zona queda sin polígono
+            return null;
+        }
+    }
+
+    private static List<List<List<double[]>>> desdeGeoJson(String t) {
+        Matcher tipo = TIPO_GEOJSON.matcher(t);
+        int coordenadas = t.indexOf("\"coordinates\"");
+        if (!tipo.find() || coordenadas < 0) return null;
+        Object nodo = new Lector(t, t.indexOf('[', coordenadas), '[', ']').leer();
+        return "multipolygon".equalsIgnoreCase(tipo.group(1)) ? multipoligono(nodo) : List.of(poligono(nodo));
+    }
+
+    private static List<List<List<double[]>>> desdePares(String t) {
+        List<double[]> anillo = new ArrayList<>();
+        for (String par : t.split("[;|\\n]")) {
+            if (par.isBlank()) continue;
+            String[] latLng = par.split(",");
+            if (latLng.length != 2) return null;
+            // El par viene como "lat, lng": se guarda como (lng, lat) igual que WKT y GeoJSON
+            anillo.add(new double[] { Double.parseDouble(latLng[1].trim()), Double.parseDouble(latLng[0].trim()) });
+        }
+        return List.of(List.of(anillo));
+    }
+
+    private static List<List<List<double[]>>> multipoligono(Object nodo) {
+        List<List<List<double[]>>> partes = new ArrayList<>();
+        for (Object parte : lista(nodo)) {
+            partes.add(poligono(parte));
+        }
+        return partes;
+    }
+
+    private static List<List<double[]>> poligono(Object nodo) {
+        List<List<double[]>> anillos = new ArrayList<>();
+        for (Object anillo : lista(nodo)) {
+            List<double[]> puntos = new ArrayList<>();
+            for (Object punto : lista(anillo)) {
+                puntos.add(punto(punto));
+            }
+            anillos.add(puntos);
+        }
+        return anillos;
+    }
+
+    private static List<?> lista(Object nodo) {
+        if (!(nodo instanceof List<?> l)) throw new IllegalArgumentException("Se esperaba una lista");
+        return l;
+    }
+
+    // WKT deja cada punto como "x y" y GeoJSON como [x, y]
+    private static double[] punto(Object nodo) {
+        if (nodo instanceof String texto) {
+            String[] xy = texto.trim().split("\\s+");
+            return new double[] { Double.parseDouble(xy[0]), Double.parseDouble(xy[1]) };
+        }
+        List<?> xy = lista(nodo);
+        return new double[] { Double.parseDouble((String) xy.get(0)), Double.parseDouble((String) xy.get(1)) };
+    }
+
+    private static Poligono crear(List<List<List<double[]>>> partes) {
+        if (partes == null || partes.isEmpty()) return null;
+        List<double[][][]> convertidas = new ArrayList<>(partes.size());
+        for (List<List<double[]>> anillos : partes) {
+            if (anillos.isEmpty()) return null;
+            double[][][] parte = new double[anillos.size()][][];
+            for (int a = 0; a < anillos.size(); a++) {
+                parte[a] = anillo(anillos.get(a));
+                if (parte[a] == null) return null;
+            }
+            convertidas.add(parte);
+        }
+        return new Poligono(convertidas);
+    }
+
+    /**
+     * Anillo como {longitudes, latitudes}, sin el vértice de cierre repetido.
+     * @return null si tiene menos de 3 vértices o alguna coordenada está fuera de rango
+     */
+    private static double[][] anillo(List<double[]> puntos) {
+        int n = puntos.size();
+        if (n > 1 && puntos.get(0)[0] == puntos.get(n - 1)[0] && puntos.get(0)[1] == puntos.get(n - 1)[1]) n--;
+        if (n < 3) return null;
+        double[] lng = new double[n], lat = new double[n];
+        for (int i = 0; i < n; i++) {
+            lng[i] = puntos.get(i)[0];
+            lat[i] = puntos.get(i)[1];
+            if (!(lng[i] >= -180 && lng[i] <= 180 && lat[i] >= -90 && lat[i] <= 90)) return null;
+        }
+        return new double[][] { lng, lat };
+    }
+
+    /**
+     * Lee listas anidadas delimitadas por abre/cierra y separadas por comas. Las hojas
+     * quedan como texto sin convertir.
+     */
+    private static final class Lector {
+        private final String texto;
+        private final char abre, cierra;
+        private int pos;
+
+        Lector(String texto, int inicio, char abre, char cierra) {
+            if (inicio < 0) throw new IllegalArgumentException("Falta '" + abre + "'");
+            this.texto = texto;
+            this.pos = inicio;
+            this.abre = abre;
+            this.cierra = cierra;
+        }
+
+        Object leer() {
+            saltarEspacios();
+            if (texto.charAt(pos) != abre) {
+                int inicio = pos;
+                while (pos < texto.length() && texto.charAt(pos) != ',' && texto.charAt(pos) != cierra) pos++;
+                return texto.substring(inicio, pos).trim();
+            }
+            pos++;
+            List<Object> elementos = new ArrayList<>();
+            while (true) {
+                elementos.add(leer());
+                saltarEspacios();
+                char c = texto.charAt(pos++);
+                if (c == cierra) return elementos;
+                if (c != ',') throw new IllegalArgumentException("Separador inesperado: " + c);
+            }
+        }
+
+        private void saltarEspacios() {
+            while (Character.isWhitespace(texto.charAt(pos))) pos++;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resumen de una pasada sobre valores numéricos: cantidad, mínimo, máximo, media y
+ * varianza (Welford), cuantiles aproximados ({@link SketchCuantiles}) y, si se pide un
+ * ancho fijo, el histograma exacto. Todo es combinable, de modo que cada partición se
+ * resume por separado y los parciales se unen con {@link #combinar(ResumenNumerico)}.
+ */
+public class ResumenNumerico {
+
+    // Ancho y origen del histograma exacto; null = sin histograma en la pasada
+    private final Double ancho;
+    private final double origen;
+
+    private long cantidad;
+    private double minimo = Double.POSITIVE_INFINITY;
+    private double maximo = Double.NEGATIVE_INFINITY;
+    private double media;
+    // Suma de cuadrados de las diferencias con la media
+    private double m2;
+    private final SketchCuantiles sketch = new SketchCuantiles();
+    private final Map<Long, Long> histograma = new HashMap<>();
+
+    public ResumenNumerico(Double ancho, double origen) {
+        this.ancho = ancho;
+        this.origen = origen;
+    }
+
+    public void agregar(double valor) {
+        cantidad++;
+        if (valor < minimo) minimo = valor;
+        if (valor > maximo) maximo = valor;
+        double delta = valor - media;
+        media += delta / cantidad;
+        m2 += delta * (valor - media);
+        sketch.agregar(valor);
+        if (ancho != null) {
+            histograma.merge((long) Math.floor((valor - origen) / ancho), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Une otro resumen (del mismo ancho y origen) a éste y lo devuelve.
+     */
+    public ResumenNumerico combinar(ResumenNumerico otro) {
+        if (otro.cantidad == 0) return this;
+        if (cantidad == 0) {
+            media = otro.media;
+            m2 = otro.m2;
+        } else {
+            // Combinación de varianzas de Chan et al.
+            long total = cantidad + otro.cantidad;
+            double delta = otro.media - media;
+            media += delta * otro.cantidad / total;
+            m2 += otro.m2 + delta * delta * cantidad * otro.cantidad / total;
+        }
+        cantidad += otro.cantidad;
+        minimo = Math.min(minimo, otro.minimo);
+        maximo = Math.max(maximo, otro.maximo);
+        sketch.combinar(otro.sketch);
+        otro.histograma.forEach((bucket, n) -> histograma.merge(bucket, n, Long::sum));
+        return this;
+    }
+
+    public long getCantidad() { return cantidad; }
+    public double getMinimo() { return cantidad == 0 ? Double.NaN : minimo; }
+    public double getMaximo() { return cantidad == 0 ? Double.NaN : maximo; }
+    public double getMedia() { return cantidad == 0 ? Double.NaN : media; }
+    public double getDesvio() { return cantidad < 2 ? Double.NaN : Math.sqrt(m2 / (cantidad - 1)); }
+    public SketchCuantiles getSketch() { return sketch; }
+    public Double getAncho() { return ancho; }
+    public double getOrigen() { return origen; }
+    public Map<Long, Long> getHistograma() { return histograma; }
+
+    /**
+     * Cuantil aproximado, acotado al rango exacto observado.
+     */
+    public double cuantil(double q) {
+        if (cantidad == 0) return Double.NaN;
+        return Math.max(minimo, Math.min(maximo, sketch.cuantil(q)));
+    }
+}
@@ -0,0 +1,163 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * Sketch de cuantiles con error relativo acotado, en la línea de DDSketch.
+ *
+ * Cada valor positivo x cae en el bucket i = ceil(log_gamma(x)), con
+ * gamma = (1 + alfa) / (1 - alfa); los negativos se guardan igual sobre |x| y los
+ * cercanos a cero aparte. Cualquier cuantil devuelto está a menos de alfa (relativo) del
+ * valor exacto. Dos sketches con el mismo alfa se combinan sumando sus buckets, así que
+ * particiones procesadas en paralelo (o resúmenes guardados por separado) se unen sin
+ * perder precisión.
+ */
+public class SketchCuantiles {
+
+    public static final double ALFA_POR_DEFECTO = 0.01;
+
+    // Valores de módulo menor que éste se cuentan como cero
+    private static final double MINIMO_INDEXABLE = 1e-9;
+
+    private final double alfa;
+    private final double gamma;
+    private final double logGamma;
+    private final Buckets positivos = new Buckets();
+    private final Buckets negativos = new Buckets();
+    private long ceros;
+
+    public SketchCuantiles() {
+        this(ALFA_POR_DEFECTO);
+    }
+
+    public SketchCuantiles(double alfa) {
+        if (!(alfa > 0 && alfa < 1)) {
+            throw new IllegalArgumentException("alfa debe estar entre 0 y 1: " + alfa);
+        }
+        this.alfa = alfa;
+        this.gamma = (1 + alfa) / (1 - alfa);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void agregar(double valor) {
+        if (valor > MINIMO_INDEXABLE) {
+            positivos.sumar(indice(valor), 1);
+        } else if (valor < -MINIMO_INDEXABLE) {
+            negativos.sumar(indice(-valor), 1);
+        } else {
+            ceros++;
+        }
+    }
+
+    /**
+     * Suma los buckets de otro sketch a éste.
+     * @throws IllegalArgumentException si los sketches tienen distinta precisión
+     */
+    public void combinar(SketchCuantiles otro) {
+        if (otro.alfa != alfa) {
+            throw new IllegalArgumentException("No se pueden combinar sketches con distinto alfa");
+        }
+        positivos.combinar(otro.positivos);
+        negativos.combinar(otro.negativos);
+        ceros += otro.ceros;
+    }
+
+    public long cantidad() {
+        return positivos.total + negativos.total + ceros;
+    }
+
+    /**
+     * @param q cuantil entre 0 y 1
+     * @return el cuantil aproximado, o NaN si el sketch está vacío
+     */
+    public double cuantil(double q) {
+        long cantidad = cantidad();
+        if (cantidad == 0) {
+            return Double.NaN;
+        }
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("El cuantil debe estar entre 0 y 1: " + q);
+        }
+        long rango = (long) Math.floor(q * (cantidad - 1));
+
+        // Recorrido en orden creciente: negativos de mayor a menor módulo, ceros, positivos
+        long acumulado = 0;
+        for (int i = negativos.conteos.length - 1; i >= 0; i--) {
+            acumulado += negativos.conteos[i];
+            if (acumulado > rango) return -valorDeIndice(negativos.desplazamiento + i);
+        }
+        acumulado += ceros;
+        if (acumulado > rango) return 0;
+        for (int i = 0; i < positivos.conteos.length; i++) {
+            acumulado += positivos.conteos[i];
+            if (acumulado > rango) return valorDeIndice(positivos.desplazamiento + i);
+        }
+        return valorDeIndice(positivos.desplazamiento + positivos.conteos.length - 1);
+    }
+
+    /**
+     * Recorre los buckets no vacíos en orden creciente con su valor representativo.
+     */
+    public void recorrer(VisitanteBucket visitante) {
+        for (int i = negativos.conteos.length - 1; i >= 0; i--) {
+            if (negativos.conteos[i] > 0) visitante.visitar(-valorDeIndice(negativos.desplazamiento + i), negativos.conteos[i]);
+        }
+        if (ceros > 0) visitante.visitar(0, ceros);
+        for (int i = 0; i < positivos.conteos.length; i++) {
+            if (positivos.conteos[i] > 0) visitante.visitar(valorDeIndice(positivos.desplazamiento + i), positivos.conteos[i]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface VisitanteBucket {
+        void visitar(double valor, long cantidad);
+    }
+
+    private int indice(double modulo) {
+        return (int) Math.ceil(Math.log(modulo) / logGamma);
+    }
+
+    // Punto del bucket (gamma^(i-1), gamma^i] con error relativo a lo sumo alfa
+    private double valorDeIndice(int indice) {
+        return 2 * Math.pow(gamma, indice) / (gamma + 1);
+    }
+
+    /**
+     * Conteos por índice de bucket en un arreglo denso que crece hacia ambos lados.
+     */
+    private static final class Buckets {
+        private long[] conteos = new long[0];
+        private int desplazamiento;
+        private long total;
+
+        void sumar(int indice, long cantidad) {
+            asegurar(indice);
+            conteos[indice - desplazamiento] += cantidad;
+            total += cantidad;
+        }
+
+        void combinar(Buckets otro) {
+            if (otro.conteos.length == 0) return;
+            asegurar(otro.desplazamiento);
+            asegurar(otro.desplazamiento + otro.conteos.length - 1);
+            for (int i = 0; i < otro.conteos.length; i++) {
+                conteos[otro.desplazamiento + i - desplazamiento] += otro.conteos[i];
+            }
+            total += otro.total;
+        }
+
+        private void asegurar(int indice) {
+            if (conteos.length == 0) {
+                conteos = new long[1];
+                desplazamiento = indice;
+            } else if (indice < desplazamiento) {
+                long[] nuevos = new long[conteos.length + (desplazamiento - indice)];
+                System.arraycopy(conteos, 0, nuevos, desplazamiento - indice, conteos.length);
+                conteos = nuevos;
+                desplazamiento = indice;
+            } else if (indice >= desplazamiento + conteos.length) {
+                conteos = Arrays.copyOf(conteos, indice - desplazamiento + 1);
+            }
+        }
+    }
+}
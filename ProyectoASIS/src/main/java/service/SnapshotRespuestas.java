@@ -0,0 +1,340 @@
+package service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import config.JPAProducer;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import model.PreguntaEncuesta;
+import model.TipoCategoria;
+import model.TipoRespuesta;
+
+/**
+ * Copia columnar de solo lectura de RESPUESTAS_ENCUESTA para los endpoints de análisis.
+ *
+ * Cada respuesta es una fila de arreglos primitivos: id de encuesta (int), índice de
+ * pregunta (short), código de valor (int) sobre un diccionario de valores distintos y
+ * valor numérico tipado (double, NaN si no hay).
+ * Las preguntas se guardan una sola vez en una tabla aparte. Así los recorridos no
+ * hidratan entidades ni grafos EAGER (Encuesta, Zona, Jornada...).
+ *
+ * Se construye al iniciar la aplicación y se reconstruye en segundo plano cuando cambian
+ * respuestas o encuestas ({@link VersionDatos#incrementarRespuestas()}); los demás ABML no
+ * lo tocan. Mientras se reconstruye se sigue sirviendo la versión anterior, y los cambios
+ * seguidos se juntan en una sola reconstrucción. Al publicar una versión nueva dispara
+ * {@link Actualizado}. Usa su propio EntityManager, por lo que no depende de que haya una
+ * solicitud HTTP activa.
+ */
+@ApplicationScoped
+public class SnapshotRespuestas {
+
+    private static final int TAMANIO_LOTE = 10_000;
+    // Espera desde el primer cambio hasta reconstruir, para juntar los que llegan seguidos
+    private static final long ESPERA_MS = 500;
+
+    @Inject
+    private JPAProducer jpaProducer;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    @Inject
+    private Event<Actualizado> actualizaciones;
+
+    private volatile Columnas columnas;
+
+    private final ScheduledExecutorService ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread hilo = new Thread(r, "snapshot-respuestas");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    // Hay una reconstrucción programada que todavía no empezó
+    private final AtomicBoolean programada = new AtomicBoolean();
+
+    /**
+     * Evento disparado después de publicar una versión nueva del snapshot.
+     * @param version versión de las respuestas con la que se construyó
+     */
+    public record Actualizado(long version) {
+    }
+
+    /**
+     * Datos de una pregunta referenciada desde las filas por su índice.
+     */
+    public record Pregunta(short indice, Long id, String texto, String preguntaCsv,
+                           TipoCategoria categoria, TipoRespuesta tipoRespuesta, boolean ignorada,
+                           boolean deVivienda) {
+    }
+
+    /**
+     * Columnas inmutables de una versión del snapshot.
+     */
+    public static final class Columnas {
+        private final long version;
+        private final int filas;
+        private final int[] encuestaId;
+        private final short[] pregunta;
+        private final int[] valor;
+        private final double[] numero;
+        private final BitSet eliminada;
+        private final String[] diccionario;
+        private final Pregunta[] preguntas;
+        // Vivienda (prefijo del idExterno) de cada encuesta, indexado por id de encuesta; -1 si no tiene
+        private final int[] viviendaPorEncuesta;
+
+        private Columnas(long version, int filas, int[] encuestaId, short[] pregunta, int[] valor,
+                         double[] numero, BitSet eliminada, String[] diccionario, Pregunta[] preguntas,
+                         int[] viviendaPorEncuesta) {
+            this.version = version;
+            this.filas = filas;
+            this.encuestaId = encuestaId;
+            this.pregunta = pregunta;
+            this.valor = valor;
+            this.numero = numero;
+            this.eliminada = eliminada;
+            this.diccionario = diccionario;
+            this.preguntas = preguntas;
+            this.viviendaPorEncuesta = viviendaPorEncuesta;
+        }
+
+        public int filas() {
+            return filas;
+        }
+
+        public int encuestaId(int fila) {
+            return encuestaId[fila];
+        }
+
+        /** @return la pregunta de la fila, o null si la respuesta no tiene pregunta */
+        public Pregunta pregunta(int fila) {
+            short indice = pregunta[fila];
+            return indice < 0 ? null : preguntas[indice];
+        }
+
+        /** @return el código del valor en el diccionario, o -1 si el valor es null */
+        public int codigoValor(int fila) {
+            return valor[fila];
+        }
+
+        public String valor(int fila) {
+            int codigo = valor[fila];
+            return codigo < 0 ? null : diccionario[codigo];
+        }
+
+        /** @return el valor numérico tipado de la fila, o NaN si no tiene */
+        public double numero(int fila) {
+            return numero[fila];
+        }
+
+        public String valorDeCodigo(int codigo) {
+            return codigo < 0 ? null : diccionario[codigo];
+        }
+
+        public int cantidadValores() {
+            return diccionario.length;
+        }
+
+        public boolean eliminada(int fila) {
+            return eliminada.get(fila);
+        }
+
+        public int cantidadNoEliminadas() {
+            return filas - eliminada.cardinality();
+        }
+
+        public List<Pregunta> preguntas() {
+            return Arrays.asList(preguntas);
+        }
+
+        /** @return el número de vivienda de la encuesta, o -1 si no se conoce */
+        public int vivienda(int encuestaId) {
+            return encuestaId >= 0 && encuestaId < viviendaPorEncuesta.length ? viviendaPorEncuesta[encuestaId] : -1;
+        }
+    }
+
+    /**
+     * Construye el snapshot en segundo plano apenas se inicia la aplicación.
+     */
+    public void alIniciar(@Observes @Initialized(ApplicationScoped.class) Object evento) {
+        programarReconstruccion();
+    }
+
+    /**
+     * Reconstruye el snapshot en segundo plano cuando cambian respuestas o encuestas.
+     */
+    public void alCambiarDatos(@Observes VersionDatos.CambioDatos cambio) {
+        if (cambio.respuestas()) {
+            programarReconstruccion();
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Devuelve el snapshot vigente sin esperar a que se reconstruya; solo el primer pedido,
+     * si llega antes que la construcción inicial, espera a que termine.
+     */
+    public Columnas obtener() {
+        Columnas actual = columnas;
+        if (actual != null) {
+            return actual;
+        }
+        synchronized (this) {
+            if (columnas == null) {
+                columnas = construir(versionDatos.respuestas());
+            }
+            return columnas;
+        }
+    }
+
+    /**
+     * Identificador de la vivienda a partir del idExterno de la encuesta ("vivienda_persona_n";
+     * las respuestas de la vivienda quedan guardadas en la persona 1).
+     */
+    public static String idVivienda(String idExterno) {
+        if (idExterno == null) return null;
+        int separador = idExterno.indexOf("_persona_");
+        return separador >= 0 ? idExterno.substring(0, separador) : idExterno;
+    }
+
+    /**
+     * Verifica si una pregunta tiene el patrón "0.[letra]" que debe ser ignorado
+     */
+    public static boolean esPatronIgnorado(String texto) {
+        if (texto == null) return false;
+        // Buscar patrón "0." seguido de una letra minúscula al inicio del texto
+        return texto.matches("^0\\.[a-z]\\..*");
+    }
+
+    private void programarReconstruccion() {
+        // Si ya hay una programada, este cambio entra en ella
+        if (!programada.compareAndSet(false, true)) return;
+        try {
+            ejecutor.schedule(this::reconstruir, ESPERA_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            programada.set(false);
+        }
+    }
+
+    private void reconstruir() {
+        // Un cambio desde acá programa otra reconstrucción, que corre después de esta
+        programada.set(false);
+        try {
+            long version = versionDatos.respuestas();
+            synchronized (this) {
+                if (columnas != null && columnas.version == version) return;
+                columnas = construir(version);
+            }
+            actualizaciones.fire(new Actualizado(version));
+        } catch (RuntimeException e) {
+            System.out.println("Error construyendo el snapshot de respuestas: " + e.getMessage());
+        }
+    }
+
+    private Columnas construir(long versionActual) {
+        // EntityManager propio: el snapshot se construye también fuera de una solicitud HTTP
+        EntityManager em = jpaProducer.createEntityManager();
+        try {
+            List<PreguntaEncuesta> entidades = em.createQuery(
+                "SELECT p FROM PreguntaEncuesta p ORDER BY p.id", PreguntaEncuesta.class).getResultList();
+            if (entidades.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("Demasiadas preguntas para el snapshot: " + entidades.size());
+            }
+            Pregunta[] preguntas = new Pregunta[entidades.size()];
+            Map<Long, Short> indicePorId = new HashMap<>();
+            for (short i = 0; i < preguntas.length; i++) {
+                PreguntaEncuesta p = entidades.get(i);
+                preguntas[i] = new Pregunta(i, p.getId(), p.getTexto(), p.getPreguntaCsv(),
+                    p.getCategoria(), p.getTipoRespuesta(), esPatronIgnorado(p.getTexto()),
+                    ImportCsvService.esPreguntaVivienda(p.getPreguntaCsv()));
+                indicePorId.put(p.getId(), i);
+            }
+
+            int capacidad = 1024;
+            int[] encuestaId = new int[capacidad];
+            short[] pregunta = new short[capacidad];
+            int[] valor = new int[capacidad];
+            double[] numero = new double[capacidad];
+            BitSet eliminada = new BitSet();
+            Map<String, Integer> codigos = new HashMap<>();
+            int filas = 0;
+
+            long ultimoId = 0;
+            List<Object[]> lote;
+            // Recorrido por keyset sobre el id para no materializar toda la tabla de una vez
+            do {
+                lote = em.createQuery(
+                    "SELECT r.id, e.id, p.id, r.valor, r.fechaEliminacion, r.valorNumerico FROM RespuestaEncuesta r " +
+                    "INNER JOIN r.encuesta e LEFT JOIN r.preguntaEncuesta p " +
+                    "WHERE r.id > :ultimoId ORDER BY r.id", Object[].class)
+                    .setParameter("ultimoId", ultimoId)
+                    .setMaxResults(TAMANIO_LOTE)
+                    .getResultList();
+
+                for (Object[] fila : lote) {
+                    if (filas == capacidad) {
+                        capacidad += capacidad >> 1;
+                        encuestaId = Arrays.copyOf(encuestaId, capacidad);
+                        pregunta = Arrays.copyOf(pregunta, capacidad);
+                        valor = Arrays.copyOf(valor, capacidad);
+                        numero = Arrays.copyOf(numero, capacidad);
+                    }
+                    ultimoId = (Long) fila[0];
+                    encuestaId[filas] = Math.toIntExact((Long) fila[1]);
+                    pregunta[filas] = fila[2] != null ? indicePorId.getOrDefault((Long) fila[2], (short) -1) : -1;
+                    String texto = (String) fila[3];
+                    valor[filas] = texto != null ? codigos.computeIfAbsent(texto, t -> codigos.size()) : -1;
+                    numero[filas] = fila[5] != null ? (Double) fila[5] : Double.NaN;
+                    if ((LocalDateTime) fila[4] != null) {
+                        eliminada.set(filas);
+                    }
+                    filas++;
+                }
+                em.clear();
+            } while (lote.size() == TAMANIO_LOTE);
+
+            // Viviendas numeradas por orden de aparición. Se toman de Encuesta.vivienda; el prefijo
+            // del idExterno solo cubre las encuestas que la migración todavía no vinculó
+            List<Object[]> encuestas = em.createQuery(
+                "SELECT e.id, e.idExterno, v.idExterno FROM Encuesta e LEFT JOIN e.vivienda v", Object[].class).getResultList();
+            long maxId = encuestas.stream().mapToLong(e -> (Long) e[0]).max().orElse(-1);
+            int[] viviendaPorEncuesta = new int[Math.toIntExact(maxId + 1)];
+            Arrays.fill(viviendaPorEncuesta, -1);
+            Map<String, Integer> viviendas = new HashMap<>();
+            for (Object[] e : encuestas) {
+                String vivienda = e[2] != null ? (String) e[2] : idVivienda((String) e[1]);
+                if (vivienda != null) {
+                    viviendaPorEncuesta[Math.toIntExact((Long) e[0])] = viviendas.computeIfAbsent(vivienda, v -> viviendas.size());
+                }
+            }
+
+            String[] diccionario = new String[codigos.size()];
+            codigos.forEach((texto, codigo) -> diccionario[codigo] = texto);
+
+            return new Columnas(versionActual, filas,
+                Arrays.copyOf(encuestaId, filas), Arrays.copyOf(pregunta, filas), Arrays.copyOf(valor, filas),
+                Arrays.copyOf(numero, filas), eliminada, diccionario, preguntas,
+                viviendaPorEncuesta);
+        } finally {
+            em.close();
+        }
+    }
+}
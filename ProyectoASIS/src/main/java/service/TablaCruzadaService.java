@@ -0,0 +1,132 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import dto.Filtros;
+import dto.TablaCruzadaDTO;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Tabla de contingencia entre dos preguntas, calculada con una pasada sobre el
+ * {@link SnapshotRespuestas}.
+ *
+ * Las respuestas se unen por encuesta (persona). Si alguna de las dos preguntas es de
+ * la vivienda, se une por vivienda: cada persona toma la respuesta de su vivienda.
+ */
+@RequestScoped
+public class TablaCruzadaService {
+
+    @Inject
+    private SnapshotRespuestas snapshotRespuestas;
+
+    @Inject
+    private AlcanceFiltros alcanceFiltros;
+
+    /**
+     * @param preguntaFilas código CSV de la pregunta de las filas
+     * @param preguntaColumnas código CSV de la pregunta de las columnas
+     * @param filtros alcance opcional (mismos criterios que filtrar-preguntas-respuestas)
+     * @throws IllegalArgumentException si alguna pregunta no existe
+     */
+    public TablaCruzadaDTO calcular(String preguntaFilas, String preguntaColumnas, Filtros filtros) {
+        SnapshotRespuestas.Columnas columnas = snapshotRespuestas.obtener();
+        SnapshotRespuestas.Pregunta pf = buscarPregunta(columnas, preguntaFilas);
+        SnapshotRespuestas.Pregunta pc = buscarPregunta(columnas, preguntaColumnas);
+
+        RoaringBitmap encuestas = alcanceFiltros.encuestas(filtros);
+        // Una vivienda entra si alguna de sus personas cumple los filtros
+        RoaringBitmap viviendas = (pf.deVivienda() || pc.deVivienda()) ? AlcanceFiltros.viviendas(columnas, encuestas) : null;
+
+        // Única pasada: códigos de valor por unidad (encuesta o vivienda) para cada pregunta
+        Map<Integer, List<Integer>> valoresFilas = new HashMap<>();
+        Map<Integer, List<Integer>> valoresColumnas = new HashMap<>();
+        for (int fila = 0; fila < columnas.filas(); fila++) {
+            SnapshotRespuestas.Pregunta p = columnas.pregunta(fila);
+            if ((p != pf && p != pc) || columnas.eliminada(fila)) continue;
+            int codigo = columnas.codigoValor(fila);
+            if (codigo < 0) continue;
+
+            int encuestaId = columnas.encuestaId(fila);
+            int unidad;
+            if (p.deVivienda()) {
+                unidad = columnas.vivienda(encuestaId);
+                if (unidad < 0 || (viviendas != null && !viviendas.contains(unidad))) continue;
+            } else {
+                unidad = encuestaId;
+                if (encuestas != null && !encuestas.contains(unidad)) continue;
+            }
+            if (p == pf) valoresFilas.computeIfAbsent(unidad, u -> new ArrayList<>()).add(codigo);
+            if (p == pc) valoresColumnas.computeIfAbsent(unidad, u -> new ArrayList<>()).add(codigo);
+        }
+
+        Map<Integer, Integer> indiceFilas = new HashMap<>();
+        List<String> etiquetasFilas = etiquetas(columnas, valoresFilas, indiceFilas);
+        Map<Integer, Integer> indiceColumnas = new HashMap<>();
+        List<String> etiquetasColumnas = etiquetas(columnas, valoresColumnas, indiceColumnas);
+        long[][] conteos = new long[etiquetasFilas.size()][etiquetasColumnas.size()];
+        long total = 0;
+
+        // La unidad de conteo es la persona, salvo que ambas preguntas sean de la vivienda
+        boolean mixta = pf.deVivienda() != pc.deVivienda();
+        Map<Integer, List<Integer>> recorrido = (mixta && pf.deVivienda()) ? valoresColumnas : valoresFilas;
+        for (Map.Entry<Integer, List<Integer>> entrada : recorrido.entrySet()) {
+            int unidad = entrada.getKey();
+            List<Integer> deFilas, deColumnas;
+            if (!mixta) {
+                deFilas = entrada.getValue();
+                deColumnas = valoresColumnas.get(unidad);
+            } else if (pc.deVivienda()) {
+                deFilas = entrada.getValue();
+                deColumnas = valoresColumnas.get(columnas.vivienda(unidad));
+            } else {
+                deFilas = valoresFilas.get(columnas.vivienda(unidad));
+                deColumnas = entrada.getValue();
+            }
+            if (deFilas == null || deColumnas == null) continue;
+            for (int f : deFilas) {
+                for (int c : deColumnas) {
+                    conteos[indiceFilas.get(f)][indiceColumnas.get(c)]++;
+                    total++;
+                }
+            }
+        }
+
+        List<List<Long>> matriz = new ArrayList<>(conteos.length);
+        for (long[] fila : conteos) {
+            matriz.add(Arrays.stream(fila).boxed().toList());
+        }
+        return new TablaCruzadaDTO(preguntaFilas, preguntaColumnas, etiquetasFilas, etiquetasColumnas, matriz, total);
+    }
+
+    private static SnapshotRespuestas.Pregunta buscarPregunta(SnapshotRespuestas.Columnas columnas, String preguntaCsv) {
+        return columnas.preguntas().stream()
+            .filter(p -> p.preguntaCsv() != null && p.preguntaCsv().equals(preguntaCsv))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Pregunta inexistente: " + preguntaCsv));
+    }
+
+    /**
+     * Valores distintos ordenados alfabéticamente; completa el índice código -> posición.
+     */
+    private static List<String> etiquetas(SnapshotRespuestas.Columnas columnas, Map<Integer, List<Integer>> valores,
+                                          Map<Integer, Integer> indice) {
+        List<Integer> codigos = valores.values().stream()
+            .flatMap(List::stream)
+            .distinct()
+            .sorted((a, b) -> columnas.valorDeCodigo(a).compareTo(columnas.valorDeCodigo(b)))
+            .toList();
+        List<String> etiquetas = new ArrayList<>(codigos.size());
+        for (int codigo : codigos) {
+            indice.put(codigo, etiquetas.size());
+            etiquetas.add(columnas.valorDeCodigo(codigo));
+        }
+        return etiquetas;
+    }
+}
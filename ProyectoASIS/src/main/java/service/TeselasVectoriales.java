@@ -0,0 +1,247 @@
+package service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Tiles vectoriales (Mapbox Vector Tile) con las viviendas geolocalizadas del
+ * {@link IndiceEspacial}: una capa "viviendas" con un punto por vivienda y sus atributos.
+ *
+ * Cada tile generado se guarda en disco en {@code <directorio>/z/x/y.mvt}. Al importar,
+ * {@link #invalidar(Collection, long, long)} borra solo los tiles de todos los zooms que cubren las
+ * coordenadas tocadas; cualquier otro cambio de la {@link VersionDatos} (ABML, reasignación
+ * de zonas) borra todos los tiles en el próximo pedido. También se borran al arrancar, porque
+ * los tiles de una ejecución anterior pueden no coincidir con la base. Solo se borran archivos
+ * con la forma z/x/y.mvt (y los temporales de esta clase): el resto del directorio no se toca.
+ */
+@ApplicationScoped
+public class TeselasVectoriales {
+
+    public static final String CAPA = "viviendas";
+    public static final int ZOOM_MAXIMO = 22;
+    // Margen alrededor del tile, en unidades del tile, para que los símbolos no se corten en el borde
+    private static final int MARGEN = 64;
+    // Rutas, relativas al directorio, de lo que escribe esta clase
+    private static final Pattern ARCHIVO_PROPIO = Pattern.compile("\\d+/\\d+/(\\d+\\.mvt|tesela[^/]*\\.tmp)");
+    private static final Pattern DIRECTORIO_PROPIO = Pattern.compile("\\d+(/\\d+)?");
+
+    @Inject
+    private IndiceEspacial indiceEspacial;
+
+    @Inject
+    private VersionDatos versionDatos;
+
+    private final Path directorio = Paths.get(System.getProperty("asis.teselas.dir",
+        Paths.get(System.getProperty("java.io.tmpdir"), "asis-teselas").toString()));
+
+    // Tiles presentes en disco ("z/x/y"), para invalidar sin recorrer el directorio
+    private final Set<String> enDisco = ConcurrentHashMap.newKeySet();
+    // Lectura: generar y guardar un tile; escritura: borrar tiles
+    private final ReadWriteLock candado = new ReentrantReadWriteLock();
+    // Versión de los datos con la que coinciden los tiles en disco; -1 = sin vaciar desde el arranque
+    private volatile long versionSincronizada = -1;
+
+    /**
+     * @throws IllegalArgumentException si z, x o y están fuera de rango
+     */
+    public byte[] obtener(int z, int x, int y) throws IOException {
+        if (z < 0 || z > ZOOM_MAXIMO) {
+            throw new IllegalArgumentException("z debe estar entre 0 y " + ZOOM_MAXIMO);
+        }
+        if (x < 0 || y < 0 || x >= (1 << z) || y >= (1 << z)) {
+            throw new IllegalArgumentException("x e y deben estar entre 0 y " + ((1 << z) - 1) + " en zoom " + z);
+        }
+        long version = sincronizar();
+        String clave = clave(z, x, y);
+        Path archivo = archivo(clave);
+        if (enDisco.contains(clave)) {
+            try {
+                return Files.readAllBytes(archivo);
+            } catch (IOException e) {
+                // Borrado en paralelo por una invalidación: se vuelve a generar
+                enDisco.remove(clave);
+            }
+        }
+
+        byte[] tesela = generar(z, x, y);
+        candado.readLock().lock();
+        try {
+            // Si los datos cambiaron mientras se generaba, el tile se devuelve pero no se guarda
+            if (versionDatos.actual() == version && versionSincronizada == version) {
+                Files.createDirectories(archivo.getParent());
+                Path temporal = Files.createTempFile(archivo.getParent(), "tesela", ".tmp");
+                Files.write(temporal, tesela);
+                Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                enDisco.add(clave);
+            }
+        } finally {
+            candado.readLock().unlock();
+        }
+        return tesela;
+    }
+
+    /**
+     * Borra los tiles que cubren las coordenadas (latitud, longitud) en todos los zooms. La
+     * importación lo llama al terminar con las coordenadas anteriores y nuevas de cada
+     * vivienda que tocó: si los tiles estaban al día cuando empezó, los demás siguen vigentes.
+     * @param versionInicial versión de los datos al empezar la importación
+     * @param versionFinal versión después del último incremento de la importación
+     */
+    public void invalidar(Collection<double[]> puntos, long versionInicial, long versionFinal) {
+        Set<String> afectadas = new HashSet<>();
+        for (double[] punto : puntos) {
+            double mx = IndiceEspacial.mercatorX(punto[1]), my = IndiceEspacial.mercatorY(punto[0]);
+            for (int z = 0; z <= ZOOM_MAXIMO; z++) {
+                int n = 1 << z;
+                int[] xs = rango(mx * n, n), ys = rango(my * n, n);
+                for (int x = xs[0]; x <= xs[1]; x++) {
+                    for (int y = ys[0]; y <= ys[1]; y++) {
+                        afectadas.add(clave(z, x, y));
+                    }
+                }
+            }
+        }
+        candado.writeLock().lock();
+        try {
+            if (versionSincronizada < 0) {
+                // Todavía no se generó ningún tile: el primer pedido vacía el directorio
+                return;
+            }
+            for (String clave : afectadas) {
+                if (enDisco.remove(clave)) borrar(archivo(clave));
+            }
+            // Si hubo otro cambio antes de la importación, el próximo pedido vacía todo
+            if (versionSincronizada >= versionInicial && versionSincronizada < versionFinal) {
+                versionSincronizada = versionFinal;
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Columnas (o filas) de tiles cuyo rectángulo con margen contiene la coordenada; el
+     * margen se amplía una unidad para cubrir el redondeo de {@link #generar}.
+     */
+    private static int[] rango(double coordenada, int n) {
+        double margen = (MARGEN + 1.0) / CodificadorMvt.EXTENSION;
+        int desde = (int) Math.floor(coordenada - margen), hasta = (int) Math.floor(coordenada + margen);
+        return new int[] { Math.max(0, desde), Math.min(n - 1, hasta) };
+    }
+
+    private byte[] generar(int z, int x, int y) {
+        int n = 1 << z;
+        double margen = (double) MARGEN / CodificadorMvt.EXTENSION;
+        double oeste = Math.max(-180, (x - margen) / n * 360 - 180);
+        double este = Math.min(180, (x + 1 + margen) / n * 360 - 180);
+        double norte = Math.min(90, latitud((y - margen) / n));
+        double sur = Math.max(-90, latitud((y + 1 + margen) / n));
+
+        CodificadorMvt codificador = new CodificadorMvt(CAPA);
+        for (IndiceEspacial.Vivienda v : indiceEspacial.buscar(oeste, sur, este, norte, z)) {
+            long px = Math.round((IndiceEspacial.mercatorX(v.longitud()) * n - x) * CodificadorMvt.EXTENSION);
+            long py = Math.round((IndiceEspacial.mercatorY(v.latitud()) * n - y) * CodificadorMvt.EXTENSION);
+            if (px < -MARGEN || px > CodificadorMvt.EXTENSION + MARGEN
+                    || py < -MARGEN || py > CodificadorMvt.EXTENSION + MARGEN) continue;
+            Map<String, Object> atributos = new LinkedHashMap<>();
+            atributos.put("vivienda", v.id());
+            atributos.put("encuestas", (long) v.encuestas().length);
+            atributos.put("encuestaHogar", v.encuestaHogar());
+            codificador.agregarPunto((int) px, (int) py, atributos);
+        }
+        return codificador.codificar();
+    }
+
+    // Inversa de IndiceEspacial.mercatorY
+    private static double latitud(double mercatorY) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * mercatorY))));
+    }
+
+    /**
+     * Vacía el directorio si los datos cambiaron por algo que no invalidó sus tiles.
+     * @return la versión con la que coinciden los tiles en disco
+     */
+    private long sincronizar() throws IOException {
+        long version = versionDatos.actual();
+        if (versionSincronizada == version) {
+            return version;
+        }
+        candado.writeLock().lock();
+        try {
+            version = versionDatos.actual();
+            if (versionSincronizada != version) {
+                vaciar();
+                versionSincronizada = version;
+            }
+            return version;
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    private void vaciar() throws IOException {
+        enDisco.clear();
+        if (!Files.isDirectory(directorio)) return;
+        // Orden inverso: primero el contenido de cada directorio z/x, después el directorio
+        try (Stream<Path> archivos = Files.walk(directorio, 3)) {
+            archivos.sorted(Comparator.reverseOrder())
+                .filter(p -> !p.equals(directorio))
+                .forEach(p -> {
+                    String ruta = directorio.relativize(p).toString().replace(p.getFileSystem().getSeparator(), "/");
+                    if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                        if (DIRECTORIO_PROPIO.matcher(ruta).matches()) borrarSiVacio(p);
+                    } else if (ARCHIVO_PROPIO.matcher(ruta).matches()) {
+                        borrar(p);
+                    }
+                });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void borrarSiVacio(Path directorio) {
+        try {
+            Files.deleteIfExists(directorio);
+        } catch (DirectoryNotEmptyException e) {
+            // Tiene archivos que no son tiles: se deja
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path archivo(String clave) {
+        return directorio.resolve(clave + ".mvt");
+    }
+
+    private static String clave(int z, int x, int y) {
+        return z + "/" + x + "/" + y;
+    }
+}
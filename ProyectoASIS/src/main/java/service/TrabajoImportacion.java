@@ -0,0 +1,133 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import dto.TrabajoImportacionDTO;
+
+/**
+ * Estado y avance de una importación de CSV. Lo actualiza la importación mientras corre y
+ * lo leen los pedidos de estado desde otros hilos.
+ *
+ * La cancelación es cooperativa: {@link ImportCsvService} la revisa antes de escribir cada
+ * lote, así que corta a lo sumo después del lote en curso, y la trata como un error (en modo
+ * todo o nada no queda nada; por lotes se conservan los lotes ya confirmados).
+ */
+public class TrabajoImportacion {
+
+    public enum Estado { EN_COLA, EN_CURSO, TERMINADO, CANCELADO, ERROR }
+
+    private final long id;
+    private final String archivo;
+    private final long bytesTotales;
+    private final boolean todoONada;
+
+    private final AtomicLong bytesLeidos = new AtomicLong();
+    private final AtomicLong filasParseadas = new AtomicLong();
+    private final AtomicLong filasProcesadas = new AtomicLong();
+    private final AtomicLong filasSinCambios = new AtomicLong();
+    private final AtomicLong respuestasEscritas = new AtomicLong();
+    private volatile boolean cancelacionPedida;
+    private volatile Estado estado = Estado.EN_COLA;
+    private volatile long inicio;
+    private volatile long fin;
+    private volatile String error;
+
+    /**
+     * @param bytesTotales tamaño del archivo, o -1 si no se conoce (sin estimación de lo que falta)
+     */
+    public TrabajoImportacion(long id, String archivo, long bytesTotales, boolean todoONada) {
+        this.id = id;
+        this.archivo = archivo;
+        this.bytesTotales = bytesTotales;
+        this.todoONada = todoONada;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    public boolean isTodoONada() {
+        return todoONada;
+    }
+
+    boolean cancelacionPedida() {
+        return cancelacionPedida;
+    }
+
+    void filaParseada() {
+        filasParseadas.incrementAndGet();
+    }
+
+    void filasProcesadas(int cantidad) {
+        filasProcesadas.addAndGet(cantidad);
+    }
+
+    void filasSinCambios(int cantidad) {
+        filasSinCambios.addAndGet(cantidad);
+    }
+
+    void respuestasEscritas(int cantidad) {
+        respuestasEscritas.addAndGet(cantidad);
+    }
+
+    void bytesLeidos(long cantidad) {
+        bytesLeidos.addAndGet(cantidad);
+    }
+
+    /**
+     * @return false si se canceló mientras esperaba en la cola
+     */
+    synchronized boolean empezar() {
+        if (cancelacionPedida) return false;
+        estado = Estado.EN_CURSO;
+        inicio = System.currentTimeMillis();
+        return true;
+    }
+
+    synchronized void terminar(Estado estado, String error) {
+        this.estado = estado;
+        this.error = error;
+        this.fin = System.currentTimeMillis();
+    }
+
+    /**
+     * Si todavía no empezó queda cancelado en el momento; si está corriendo, se cancela antes
+     * del próximo lote.
+     */
+    synchronized void pedirCancelacion() {
+        if (terminado()) return;
+        cancelacionPedida = true;
+        if (estado == Estado.EN_COLA) {
+            terminar(Estado.CANCELADO, null);
+        }
+    }
+
+    boolean terminado() {
+        Estado e = estado;
+        return e == Estado.TERMINADO || e == Estado.CANCELADO || e == Estado.ERROR;
+    }
+
+    public TrabajoImportacionDTO aDTO() {
+        long desde = inicio;
+        long hasta = fin != 0 ? fin : System.currentTimeMillis();
+        double segundos = desde == 0 ? 0 : (hasta - desde) / 1000.0;
+        long parseadas = filasParseadas.get();
+        long procesadas = filasProcesadas.get();
+        long bytes = bytesLeidos.get();
+        double filasPorSegundo = segundos > 0 ? procesadas / segundos : 0;
+
+        // El lector va adelantado a la base, así que lo que falta no sale de los bytes leídos:
+        // se estima el total de filas por los bytes por fila parseada, al ritmo de las procesadas
+        Long restantes = null;
+        if (estado == Estado.EN_CURSO && bytesTotales > 0 && parseadas > 0 && filasPorSegundo > 0) {
+            double filasEstimadas = Math.max(parseadas, (double) bytesTotales * parseadas / bytes);
+            restantes = Math.round((filasEstimadas - procesadas) / filasPorSegundo);
+        }
+        return new TrabajoImportacionDTO(id, archivo, estado.name(), todoONada, parseadas, procesadas,
+            filasSinCambios.get(), respuestasEscritas.get(), bytes, bytesTotales, segundos, filasPorSegundo, restantes, error);
+    }
+}
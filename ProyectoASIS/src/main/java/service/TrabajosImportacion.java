@@ -0,0 +1,171 @@
+package service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dto.TrabajoImportacionDTO;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.control.RequestContextController;
+import jakarta.inject.Inject;
+
+/**
+ * Importaciones de CSV en segundo plano: el pedido HTTP solo recibe el archivo y lo deja
+ * en la cola, y el avance se consulta por el id del trabajo.
+ *
+ * Corren de a una, en un hilo propio: dos importaciones a la vez competirían por las
+ * mismas viviendas y encuestas y por las conexiones de la base. Las demás esperan en una
+ * cola acotada; con la cola llena se rechazan. Cada trabajo corre en un contexto de
+ * pedido propio, con su EntityManager, como si fuera un pedido HTTP.
+ */
+@ApplicationScoped
+public class TrabajosImportacion {
+
+    private static final int COLA_MAXIMA = 20;
+    // Trabajos terminados que se siguen pudiendo consultar
+    private static final int TERMINADOS_GUARDADOS = 100;
+
+    @Inject
+    private ImportCsvService importCsvService;
+
+    // Se usa siempre desde el único hilo del ejecutor
+    @Inject
+    private RequestContextController contextoPedido;
+
+    private final ThreadPoolExecutor ejecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(COLA_MAXIMA), r -> {
+            Thread hilo = new Thread(r, "importacion-csv");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+    private final AtomicLong ids = new AtomicLong();
+    // En orden de creación, para descartar primero los terminados más viejos
+    private final Map<Long, TrabajoImportacion> trabajos = new LinkedHashMap<>();
+
+    /**
+     * Deja el archivo en la cola. El archivo pasa a ser del trabajo, que lo borra al terminar.
+     * @throws RejectedExecutionException si la cola está llena (el archivo se borra)
+     */
+    public TrabajoImportacionDTO encolar(Path archivo, String nombre, Charset charset, boolean todoONada) throws IOException {
+        TrabajoImportacion trabajo = new TrabajoImportacion(ids.incrementAndGet(), nombre, Files.size(archivo), todoONada);
+        synchronized (trabajos) {
+            trabajos.put(trabajo.getId(), trabajo);
+            descartarTerminados();
+        }
+        try {
+            ejecutor.execute(() -> ejecutar(trabajo, archivo, charset));
+        } catch (RejectedExecutionException e) {
+            synchronized (trabajos) {
+                trabajos.remove(trabajo.getId());
+            }
+            Files.deleteIfExists(archivo);
+            throw e;
+        }
+        return trabajo.aDTO();
+    }
+
+    /**
+     * @return el estado del trabajo, o null si no existe (o ya se descartó)
+     */
+    public TrabajoImportacionDTO consultar(long id) {
+        TrabajoImportacion trabajo = buscar(id);
+        return trabajo != null ? trabajo.aDTO() : null;
+    }
+
+    /**
+     * Pide la cancelación; un trabajo ya terminado no cambia.
+     * @return el estado del trabajo después del pedido, o null si no existe
+     */
+    public TrabajoImportacionDTO cancelar(long id) {
+        TrabajoImportacion trabajo = buscar(id);
+        if (trabajo == null) return null;
+        trabajo.pedirCancelacion();
+        return trabajo.aDTO();
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    private void ejecutar(TrabajoImportacion trabajo, Path archivo, Charset charset) {
+        try {
+            if (!trabajo.empezar()) return;
+            contextoPedido.activate();
+            try (InputStream entrada = new EntradaContada(Files.newInputStream(archivo), trabajo)) {
+                importCsvService.importar(entrada, charset, trabajo.isTodoONada(), trabajo);
+                trabajo.terminar(TrabajoImportacion.Estado.TERMINADO, null);
+            } finally {
+                contextoPedido.deactivate();
+            }
+        } catch (CancellationException e) {
+            trabajo.terminar(TrabajoImportacion.Estado.CANCELADO, null);
+        } catch (Exception e) {
+            System.out.println("Error en la importación " + trabajo.getId() + ": " + e.getMessage());
+            trabajo.terminar(TrabajoImportacion.Estado.ERROR, e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(archivo);
+            } catch (IOException e) {
+                System.out.println("No se pudo borrar " + archivo + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private TrabajoImportacion buscar(long id) {
+        synchronized (trabajos) {
+            return trabajos.get(id);
+        }
+    }
+
+    private void descartarTerminados() {
+        long terminados = trabajos.values().stream().filter(TrabajoImportacion::terminado).count();
+        Iterator<TrabajoImportacion> it = trabajos.values().iterator();
+        while (terminados > TERMINADOS_GUARDADOS && it.hasNext()) {
+            if (it.next().terminado()) {
+                it.remove();
+                terminados--;
+            }
+        }
+    }
+
+    /**
+     * Cuenta los bytes que lee la importación, para estimar cuánto falta.
+     */
+    private static final class EntradaContada extends FilterInputStream {
+        private final TrabajoImportacion trabajo;
+
+        EntradaContada(InputStream entrada, TrabajoImportacion trabajo) {
+            super(entrada);
+            this.trabajo = trabajo;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) trabajo.bytesLeidos(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int desde, int cantidad) throws IOException {
+            int leidos = super.read(b, desde, cantidad);
+            if (leidos > 0) trabajo.bytesLeidos(leidos);
+            return leidos;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+
+/**
+ * Contador global de versión de los datos de encuestas.
+ *
+ * Se incrementa cada vez que cambian los datos (importación CSV, ABML) y los
+ * componentes derivados (índices, caché de resultados) lo comparan con la
+ * versión con la que fueron calculados para saber si quedaron desactualizados.
+ *
+ * Aparte se lleva la versión de las respuestas y encuestas, que solo cambia con
+ * {@link #incrementarRespuestas()}: es la que sigue el {@link SnapshotRespuestas}, así
+ * editar una zona o un encuestador no obliga a reconstruirlo.
+ */
+@ApplicationScoped
+public class VersionDatos {
+
+    /**
+     * Evento disparado después de cada incremento de versión.
+     * @param respuestas true si cambiaron respuestas o encuestas
+     */
+    public record CambioDatos(long version, boolean respuestas) {
+    }
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong versionRespuestas = new AtomicLong();
+
+    @Inject
+    private Event<CambioDatos> cambios;
+
+    public long actual() {
+        return version.get();
+    }
+
+    public long respuestas() {
+        return versionRespuestas.get();
+    }
+
+    /**
+     * Marca los datos como modificados y notifica a los observadores de {@link CambioDatos}.
+     * Para cambios que no tocan respuestas ni encuestas (zonas, barrios, encuestadores...).
+     * @return la nueva versión
+     */
+    public long incrementar() {
+        long nueva = version.incrementAndGet();
+        cambios.fire(new CambioDatos(nueva, false));
+        return nueva;
+    }
+
+    /**
+     * Igual que {@link #incrementar()}, cuando cambiaron respuestas o encuestas.
+     * @return la nueva versión
+     */
+    public long incrementarRespuestas() {
+        versionRespuestas.incrementAndGet();
+        long nueva = version.incrementAndGet();
+        cambios.fire(new CambioDatos(nueva, true));
+        return nueva;
+    }
+}